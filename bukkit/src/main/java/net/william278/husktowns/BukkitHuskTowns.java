@@ -1,5 +1,6 @@
 package net.william278.husktowns;
 
+import com.google.gson.Gson;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
 import net.william278.desertwell.Version;
 import net.william278.husktowns.claim.ClaimWorld;
@@ -10,6 +11,7 @@ import net.william278.husktowns.command.BukkitCommand;
 import net.william278.husktowns.command.HuskTownsCommand;
 import net.william278.husktowns.command.TownCommand;
 import net.william278.husktowns.config.*;
+import net.william278.husktowns.database.AsyncDatabase;
 import net.william278.husktowns.database.Database;
 import net.william278.husktowns.events.BukkitEventDispatcher;
 import net.william278.husktowns.hook.*;
@@ -20,11 +22,13 @@ import net.william278.husktowns.network.Broker;
 import net.william278.husktowns.network.PluginMessageBroker;
 import net.william278.husktowns.town.Invite;
 import net.william278.husktowns.town.Town;
+import net.william278.husktowns.town.TownRegistry;
 import net.william278.husktowns.user.BukkitUser;
 import net.william278.husktowns.user.ConsoleUser;
 import net.william278.husktowns.user.OnlineUser;
 import net.william278.husktowns.user.Preferences;
 import net.william278.husktowns.util.BukkitTaskRunner;
+import net.william278.husktowns.util.BukkitWorlds;
 import net.william278.husktowns.util.Validator;
 import net.william278.husktowns.visualizer.Visualizer;
 import org.bstats.bukkit.Metrics;
@@ -55,6 +59,7 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
     private Levels levels;
     private Server server;
     private Database database;
+    private AsyncDatabase asyncDatabase;
     private Manager manager;
     @Nullable
     private Broker broker;
@@ -64,10 +69,11 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
     private Map<UUID, Deque<Invite>> invites = new HashMap<>();
     private Map<UUID, Preferences> userPreferences = new HashMap<>();
     private Map<UUID, Visualizer> visualizers = new HashMap<>();
-    private List<Town> towns = new ArrayList<>();
+    private final TownRegistry towns = new TownRegistry();
     private Map<String, ClaimWorld> claimWorlds = new HashMap<>();
     private List<Hook> hooks = new ArrayList<>();
     private boolean loaded = false;
+    private final Gson gson = createGson();
 
     @SuppressWarnings("unused")
     public BukkitHuskTowns() {
@@ -113,6 +119,7 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
             Bukkit.getPluginManager().disablePlugin(this);
             return;
         }
+        this.asyncDatabase = AsyncDatabase.of(this, database);
 
         // Load manager and broker
         this.manager = new Manager(this);
@@ -161,6 +168,10 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
 
     @Override
     public void onDisable() {
+        setLoaded(false);
+        if (asyncDatabase != null) {
+            asyncDatabase.close();
+        }
         if (database != null) {
             getDatabase().close();
         }
@@ -243,6 +254,12 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
         return database;
     }
 
+    @Override
+    @NotNull
+    public AsyncDatabase getAsyncDatabase() {
+        return asyncDatabase;
+    }
+
     @Override
     @NotNull
     public Manager getManager() {
@@ -267,6 +284,12 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
         return operationHandler;
     }
 
+    @Override
+    @NotNull
+    public Gson getGson() {
+        return gson;
+    }
+
     @Override
     @NotNull
     public SpecialTypes getSpecialTypes() {
@@ -292,13 +315,13 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
 
     @Override
     @NotNull
-    public List<Town> getTowns() {
+    public TownRegistry getTowns() {
         return towns;
     }
 
     @Override
     public void setTowns(@NotNull List<Town> towns) {
-        this.towns = towns;
+        this.towns.setAll(towns);
     }
 
     @Override
@@ -316,7 +339,7 @@ public final class BukkitHuskTowns extends JavaPlugin implements HuskTowns, Plug
     @NotNull
     public List<World> getWorlds() {
         return Bukkit.getWorlds().stream()
-                .map(world -> World.of(world.getUID(), world.getName(), world.getEnvironment().name().toLowerCase()))
+                .map(BukkitWorlds::adapt)
                 .toList();
     }
 
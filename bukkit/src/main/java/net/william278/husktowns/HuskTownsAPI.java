@@ -27,6 +27,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -422,11 +423,7 @@ public class HuskTownsAPI {
             return new HashSet<>();
         }
         final Town town = optionalTown.get();
-        final HashSet<String> usernames = new HashSet<>();
-        for (final UUID uuid : town.getMembers().keySet()) {
-            plugin.getDatabase().getUser(uuid).ifPresent(user -> usernames.add(user.user().getUsername()));
-        }
-        return usernames;
+        return new HashSet<>(plugin.getDatabase().getUsernames(town.getMembers().keySet()).values());
     }
 
     /**
@@ -448,10 +445,11 @@ public class HuskTownsAPI {
         }
         final Town town = optionalTown.get();
         final HashMap<String, TownRole> roles = new HashMap<>();
+        final Map<UUID, String> usernames = plugin.getDatabase().getUsernames(town.getMembers().keySet());
         for (final UUID uuid : town.getMembers().keySet()) {
             plugin.getRoles().fromWeight(town.getMembers().get(uuid)).map(TownRole::fromRole)
-                    .ifPresent(role -> plugin.getDatabase().getUser(uuid)
-                            .ifPresent(user -> roles.put(user.user().getUsername(), role)));
+                    .ifPresent(role -> Optional.ofNullable(usernames.get(uuid))
+                            .ifPresent(username -> roles.put(username, role)));
         }
         return roles;
     }
@@ -489,10 +487,13 @@ public class HuskTownsAPI {
         plugin.runAsync(() -> plugin.getTowns().stream()
                 .filter(town -> town.getName().equalsIgnoreCase(townName)).findFirst()
                 .ifPresent(town -> {
-                    town.setBonusClaims(town.getBonusClaims() + Math.max(bonusClaims, 0));
-                    town.setBonusMembers(town.getBonusMembers() + Math.max(bonusMembers, 0));
+                    final Consumer<Town> editor = (edited -> {
+                        edited.setBonusClaims(edited.getBonusClaims() + Math.max(bonusClaims, 0));
+                        edited.setBonusMembers(edited.getBonusMembers() + Math.max(bonusMembers, 0));
+                    });
+                    editor.accept(town);
                     plugin.getOnlineUsers().stream().findAny().ifPresentOrElse(
-                            updater -> plugin.getManager().updateTownData(updater, town),
+                            updater -> plugin.getManager().updateTownData(updater, town, editor),
                             () -> {
                                 plugin.getTowns().replaceAll(t -> t.getName()
                                         .equalsIgnoreCase(town.getName()) ? town : t);
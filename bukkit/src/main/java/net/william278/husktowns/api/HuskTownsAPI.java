@@ -8,6 +8,7 @@ import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.BukkitUser;
 import net.william278.husktowns.user.OnlineUser;
 import net.william278.husktowns.user.Preferences;
+import net.william278.husktowns.util.BukkitWorlds;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -337,7 +338,7 @@ public class HuskTownsAPI implements IHuskTownsAPI {
      */
     @NotNull
     public World getWorld(@NotNull org.bukkit.World world) {
-        return World.of(world.getUID(), world.getName(), world.getEnvironment().name().toLowerCase());
+        return BukkitWorlds.adapt(world);
     }
 
     /**
@@ -57,10 +57,13 @@ public class LuckPermsHook extends Hook {
         @Override
         public void calculate(@NotNull Player target, @NotNull ContextConsumer consumer) {
             final Location location = target.getLocation();
-            final Optional<TownClaim> claim = plugin.getClaimAt(Position.at(
+            final Position position = Position.at(
                     location.getBlockX(), location.getBlockY(), location.getBlockZ(),
                     World.of(target.getWorld().getUID(), target.getWorld().getName(),
-                            target.getWorld().getEnvironment().name().toLowerCase())));
+                            target.getWorld().getEnvironment().name().toLowerCase()));
+            final Optional<TownClaim> claim = target.isOnline()
+                    ? plugin.getOperationHandler().getCurrentClaim(target.getUniqueId(), position)
+                    : plugin.getClaimAt(position);
             if (claim.isEmpty()) {
                 final Rules wilderness = plugin.getRulePresets().getWildernessRules();
                 setContextsFromRules(consumer, wilderness);
@@ -111,8 +114,8 @@ public class LuckPermsHook extends Hook {
                 plugin.getClaimWorld(world).ifPresent(claimWorld -> claimedTowns.addAll(claimWorld.getClaims().keySet()));
             }
             for (int town : claimedTowns) {
-                builder.add(ContextKey.CLAIM_TOWN_KEY.getKey(plugin), plugin.getTowns().stream()
-                        .filter(t -> t.getId() == town).findFirst().map(Town::getName).orElse("unknown"));
+                builder.add(ContextKey.CLAIM_TOWN_KEY.getKey(plugin), plugin.findTown(town)
+                        .map(Town::getName).orElse("unknown"));
             }
             builder.add(ContextKey.CLAIM_TOWN_KEY.getKey(plugin), plugin.getSettings().getAdminTownName());
             return builder.build();
@@ -33,9 +33,13 @@ public class RedisEconomyHook extends EconomyHook {
     }
 
     @Override
-    public void takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount) {
+    public boolean takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount) {
         final BigDecimal changeBy = getBalance(user).subtract(amount);
+        if (changeBy.compareTo(BigDecimal.ZERO) < 0) {
+            return false;
+        }
         api.getDefaultCurrency().setPlayerBalance(user.getUuid(), user.getUsername(), changeBy.doubleValue());
+        return true;
     }
 
     @Override
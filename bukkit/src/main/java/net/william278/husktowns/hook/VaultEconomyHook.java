@@ -42,8 +42,8 @@ public class VaultEconomyHook extends EconomyHook {
     }
 
     @Override
-    public void takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount) {
-        economy.withdrawPlayer(((BukkitUser) user).getPlayer(), amount.doubleValue());
+    public boolean takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount) {
+        return economy.withdrawPlayer(((BukkitUser) user).getPlayer(), amount.doubleValue()).transactionSuccess();
     }
 
     @Override
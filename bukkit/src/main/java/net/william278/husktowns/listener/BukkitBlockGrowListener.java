@@ -1,7 +1,7 @@
 package net.william278.husktowns.listener;
 
 import net.william278.husktowns.claim.Claim;
-import net.william278.husktowns.claim.Position;
+import org.bukkit.block.Block;
 import org.bukkit.block.data.Ageable;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.block.BlockGrowEvent;
@@ -16,8 +16,8 @@ public interface BukkitBlockGrowListener extends BukkitListener {
             return;
         }
 
-        final Position position = getPosition(e.getBlock().getLocation());
-        getPlugin().getClaimAt(position).ifPresent(claim -> {
+        final Block block = e.getBlock();
+        getPlugin().getClaimAt(getWorld(block.getWorld()), block.getX(), block.getZ()).ifPresent(claim -> {
             if (claim.claim().getType() != Claim.Type.FARM) {
                 return;
             }
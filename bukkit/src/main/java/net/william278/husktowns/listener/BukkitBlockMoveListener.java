@@ -1,6 +1,5 @@
 package net.william278.husktowns.listener;
 
-import net.william278.husktowns.claim.Position;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
@@ -9,17 +8,21 @@ import org.bukkit.event.block.BlockPistonExtendEvent;
 import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public interface BukkitBlockMoveListener extends BukkitListener {
 
     // Stop fluids from entering claims
     @EventHandler(ignoreCancelled = true)
     default void onBlockFromTo(@NotNull BlockFromToEvent e) {
+        // Most fluid flows stay within a chunk and can never cross a claim border
+        if (getChunkKey(e.getBlock()) == getChunkKey(e.getToBlock())) {
+            return;
+        }
         final Material material = e.getBlock().getType();
         if (material == Material.LAVA || material == Material.WATER) {
-            final Position blockPosition = getPosition(e.getBlock().getLocation());
-            if (getListener().handler().cancelNature(blockPosition.getChunk(),
-                    getPosition(e.getToBlock().getLocation()).getChunk(),
-                    blockPosition.getWorld())) {
+            if (getListener().handler().cancelNature(getChunk(e.getBlock()), getChunk(e.getToBlock()),
+                    getWorld(e.getBlock().getWorld()))) {
                 e.setCancelled(true);
             }
         }
@@ -28,14 +31,8 @@ public interface BukkitBlockMoveListener extends BukkitListener {
     // Stop people from pushing blocks into claims
     @EventHandler(ignoreCancelled = true)
     default void onPistonPush(@NotNull BlockPistonExtendEvent e) {
-        final Position pistonLocation = getPosition(e.getBlock().getLocation());
-        for (final Block pushedBlock : e.getBlocks()) {
-            if (getListener().handler().cancelNature(pistonLocation.getChunk(),
-                    getPosition(pushedBlock.getLocation()).getChunk(),
-                    pistonLocation.getWorld())) {
-                e.setCancelled(true);
-                return;
-            }
+        if (cancelBlockMove(e.getBlock(), e.getBlocks())) {
+            e.setCancelled(true);
         }
     }
 
@@ -43,15 +40,18 @@ public interface BukkitBlockMoveListener extends BukkitListener {
     // Stop people from pulling blocks from claims
     @EventHandler(ignoreCancelled = true)
     default void onPistonPull(@NotNull BlockPistonRetractEvent e) {
-        final Position pistonLocation = getPosition(e.getBlock().getLocation());
-        for (final Block pushedBlock : e.getBlocks()) {
-            if (getListener().handler().cancelNature(pistonLocation.getChunk(),
-                    getPosition(pushedBlock.getLocation()).getChunk(),
-                    pistonLocation.getWorld())) {
-                e.setCancelled(true);
-                return;
-            }
+        if (cancelBlockMove(e.getBlock(), e.getBlocks())) {
+            e.setCancelled(true);
+        }
+    }
+
+    // Returns whether to cancel a piston moving blocks, checking each chunk the blocks are in once
+    private boolean cancelBlockMove(@NotNull Block piston, @NotNull List<Block> movedBlocks) {
+        final long[] destinations = new long[movedBlocks.size()];
+        for (int i = 0; i < destinations.length; i++) {
+            destinations[i] = getChunkKey(movedBlocks.get(i));
         }
+        return getListener().handler().cancelNature(getChunk(piston), destinations, getWorld(piston.getWorld()));
     }
 
 }
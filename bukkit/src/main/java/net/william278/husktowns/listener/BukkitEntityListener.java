@@ -2,7 +2,6 @@ package net.william278.husktowns.listener;
 
 import net.william278.husktowns.claim.Claim;
 import net.william278.husktowns.claim.Position;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Monster;
 import org.bukkit.event.EventHandler;
@@ -12,47 +11,22 @@ import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
-
 public interface BukkitEntityListener extends BukkitListener {
 
     @EventHandler(ignoreCancelled = true)
     default void onBlockExplosion(@NotNull BlockExplodeEvent e) {
-        final HashSet<Block> blocksToRemove = new HashSet<>();
-        for (Block block : e.blockList()) {
-            if (getListener().handler().cancelOperation(Operation.of(
-                    Operation.Type.EXPLOSION_DAMAGE_TERRAIN,
-                    getPosition(block.getLocation())))) {
-                blocksToRemove.add(block);
-            }
-        }
-        for (Block block : blocksToRemove) {
-            e.blockList().remove(block);
-        }
+        filterBlocks(Operation.Type.EXPLOSION_DAMAGE_TERRAIN, e.blockList());
     }
 
     @EventHandler(ignoreCancelled = true)
     default void onEntityExplode(@NotNull EntityExplodeEvent e) {
-        final HashSet<Block> blocksToRemove = new HashSet<>();
-        for (Block block : e.blockList()) {
-            if (getListener().handler().cancelOperation(Operation.of(
-                    Operation.Type.MONSTER_DAMAGE_TERRAIN,
-                    getPosition(block.getLocation())))) {
-                blocksToRemove.add(block);
-            }
-        }
-        for (Block block : blocksToRemove) {
-            e.blockList().remove(block);
-        }
+        filterBlocks(Operation.Type.MONSTER_DAMAGE_TERRAIN, e.blockList());
     }
 
     @EventHandler(ignoreCancelled = true)
     default void onEntityChangeBlock(@NotNull EntityChangeBlockEvent e) {
         if (getPlugin().getSpecialTypes().isGriefingMob(e.getEntity().getType().getKey().toString())) {
-            final Block block = e.getBlock();
-            if (getListener().handler().cancelOperation(Operation.of(
-                    Operation.Type.MONSTER_DAMAGE_TERRAIN,
-                    getPosition(block.getLocation())))) {
+            if (cancelOperation(Operation.Type.MONSTER_DAMAGE_TERRAIN, e.getBlock())) {
                 e.setCancelled(true);
             }
         }
@@ -11,9 +11,7 @@ public interface BukkitFireListener extends BukkitListener {
     @EventHandler(ignoreCancelled = true)
     default void onBlockSpread(@NotNull BlockSpreadEvent e) {
         if (e.getSource().getType() == Material.FIRE) {
-            if (getListener().handler().cancelOperation(Operation.of(
-                    Operation.Type.FIRE_SPREAD,
-                    getPosition(e.getBlock().getLocation())))) {
+            if (cancelOperation(Operation.Type.FIRE_SPREAD, e.getBlock())) {
                 e.setCancelled(true);
             }
         }
@@ -21,9 +19,7 @@ public interface BukkitFireListener extends BukkitListener {
 
     @EventHandler(ignoreCancelled = true)
     default void onBlockBurn(@NotNull BlockBurnEvent e) {
-        if (getListener().handler().cancelOperation(Operation.of(
-                Operation.Type.FIRE_BURN,
-                getPosition(e.getBlock().getLocation())))) {
+        if (cancelOperation(Operation.Type.FIRE_BURN, e.getBlock())) {
             e.setCancelled(true);
         }
     }
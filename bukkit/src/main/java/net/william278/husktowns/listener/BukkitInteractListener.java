@@ -1,7 +1,6 @@
 package net.william278.husktowns.listener;
 
 import net.william278.husktowns.claim.Position;
-import net.william278.husktowns.claim.World;
 import net.william278.husktowns.user.BukkitUser;
 import org.bukkit.FluidCollisionMode;
 import org.bukkit.Material;
@@ -102,9 +101,8 @@ public interface BukkitInteractListener extends BukkitListener {
             final int maxInspectionDistance = getPlugin().getSettings().getMaxInspectionDistance();
             final Block location = e.getPlayer().getTargetBlockExact(maxInspectionDistance, FluidCollisionMode.NEVER);
             if (location != null) {
-                final World world = World.of(location.getWorld().getUID(), location.getWorld().getName(),
-                        location.getWorld().getEnvironment().name().toLowerCase());
-                final Position position = Position.at(location.getX(), location.getY(), location.getZ(), world);
+                final Position position = Position.at(location.getX(), location.getY(), location.getZ(),
+                        getWorld(location.getWorld()));
                 getListener().onPlayerInspect(BukkitUser.adapt(e.getPlayer()), position);
             }
             return true;
@@ -3,6 +3,7 @@ package net.william278.husktowns.listener;
 import net.william278.husktowns.user.BukkitUser;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 
 public interface BukkitJoinListener extends BukkitListener {
@@ -12,4 +13,9 @@ public interface BukkitJoinListener extends BukkitListener {
         getListener().onPlayerJoin(BukkitUser.adapt(e.getPlayer()));
     }
 
+    @EventHandler
+    default void onPlayerQuit(@NotNull PlayerQuitEvent e) {
+        getListener().onPlayerQuit(BukkitUser.adapt(e.getPlayer()));
+    }
+
 }
@@ -1,9 +1,12 @@
 package net.william278.husktowns.listener;
 
 import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.claim.Chunk;
 import net.william278.husktowns.claim.Position;
 import net.william278.husktowns.claim.World;
+import net.william278.husktowns.util.BukkitWorlds;
 import org.bukkit.Location;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
@@ -11,6 +14,8 @@ import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
@@ -24,10 +29,54 @@ public interface BukkitListener extends Listener {
 
     @NotNull
     default Position getPosition(@NotNull Location location) {
-        final World world = World.of(Objects.requireNonNull(location.getWorld()).getUID(),
-                location.getWorld().getName(),
-                location.getWorld().getEnvironment().name().toLowerCase());
-        return Position.at(location.getX(), location.getY(), location.getZ(), world);
+        return Position.at(location.getX(), location.getY(), location.getZ(),
+                getWorld(Objects.requireNonNull(location.getWorld())));
+    }
+
+    @NotNull
+    default World getWorld(@NotNull org.bukkit.World world) {
+        return BukkitWorlds.adapt(world);
+    }
+
+    // Returns whether to cancel an operation with no acting user at a block, without allocating a Position
+    default boolean cancelOperation(@NotNull Operation.Type type, @NotNull Block block) {
+        return getListener().handler().cancelOperation(type, getWorld(block.getWorld()), block.getX(), block.getZ());
+    }
+
+    // Remove the blocks whose operation should be cancelled from a block list, such as that of an explosion
+    default void filterBlocks(@NotNull Operation.Type type, @NotNull List<Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        final int[] blockXs = new int[blocks.size()];
+        final int[] blockZs = new int[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            blockXs[i] = blocks.get(i).getX();
+            blockZs[i] = blocks.get(i).getZ();
+        }
+        final BitSet cancelled = getListener().handler().cancelOperations(type,
+                getWorld(blocks.get(0).getWorld()), blockXs, blockZs);
+        if (cancelled.isEmpty()) {
+            return;
+        }
+
+        // Compact the retained blocks to the front of the list in a single pass, then truncate it
+        int retained = 0;
+        for (int i = 0; i < blockXs.length; i++) {
+            if (!cancelled.get(i)) {
+                blocks.set(retained++, blocks.get(i));
+            }
+        }
+        blocks.subList(retained, blocks.size()).clear();
+    }
+
+    @NotNull
+    default Chunk getChunk(@NotNull Block block) {
+        return Chunk.at(block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    default long getChunkKey(@NotNull Block block) {
+        return Chunk.key(block.getX() >> 4, block.getZ() >> 4);
     }
 
     default Optional<Player> getPlayerSource(@Nullable Entity e) {
@@ -6,6 +6,8 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Objects;
+
 public interface BukkitMoveListener extends BukkitListener {
 
     @EventHandler(ignoreCancelled = true)
@@ -16,7 +18,10 @@ public interface BukkitMoveListener extends BukkitListener {
             return;
         }
 
-        if (fromLocation.getChunk().equals(toLocation.getChunk())) {
+        // Compare chunk coordinates directly, rather than loading the chunks
+        if ((fromLocation.getBlockX() >> 4) == (toLocation.getBlockX() >> 4)
+            && (fromLocation.getBlockZ() >> 4) == (toLocation.getBlockZ() >> 4)
+            && Objects.equals(fromLocation.getWorld(), toLocation.getWorld())) {
             return;
         }
         if (getListener().handler().cancelChunkChange(BukkitUser.adapt(e.getPlayer()),
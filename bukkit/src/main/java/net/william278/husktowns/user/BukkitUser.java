@@ -6,6 +6,7 @@ import net.william278.husktowns.BukkitHuskTowns;
 import net.william278.husktowns.claim.Chunk;
 import net.william278.husktowns.claim.Position;
 import net.william278.husktowns.claim.World;
+import net.william278.husktowns.util.BukkitWorlds;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Particle;
@@ -32,7 +33,8 @@ public final class BukkitUser extends OnlineUser {
     @Override
     @NotNull
     public Chunk getChunk() {
-        return Chunk.at(player.getLocation().getChunk().getX(), player.getLocation().getChunk().getZ());
+        final Location location = player.getLocation();
+        return Chunk.at(location.getBlockX() >> 4, location.getBlockZ() >> 4);
     }
 
     @Override
@@ -45,8 +47,7 @@ public final class BukkitUser extends OnlineUser {
     @Override
     @NotNull
     public World getWorld() {
-        return World.of(player.getWorld().getUID(), player.getWorld().getName(),
-                player.getWorld().getEnvironment().name().toLowerCase());
+        return BukkitWorlds.adapt(player.getWorld());
     }
 
     @Override
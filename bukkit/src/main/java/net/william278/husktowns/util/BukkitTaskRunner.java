@@ -26,6 +26,11 @@ public interface BukkitTaskRunner extends TaskRunner {
         Bukkit.getScheduler().cancelTask(taskId);
     }
 
+    @Override
+    default boolean isPrimaryThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
     @NotNull
     BukkitHuskTowns getPlugin();
 
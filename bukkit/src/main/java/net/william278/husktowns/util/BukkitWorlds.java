@@ -0,0 +1,40 @@
+package net.william278.husktowns.util;
+
+import net.william278.husktowns.claim.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of interned {@link World}s, keyed by Bukkit world UID, so that adapting a Bukkit world in a hot path (such
+ * as once per block in an explosion) does not allocate a new {@link World} and environment string every time.
+ */
+public final class BukkitWorlds {
+
+    private static final Map<UUID, World> WORLDS = new ConcurrentHashMap<>();
+
+    private BukkitWorlds() {
+    }
+
+    /**
+     * Get the interned {@link World} for a Bukkit world
+     *
+     * @param world the Bukkit world
+     * @return the {@link World}
+     */
+    @NotNull
+    public static World adapt(@NotNull org.bukkit.World world) {
+        final World adapted = WORLDS.get(world.getUID());
+        if (adapted != null && adapted.getName().equals(world.getName())) {
+            return adapted;
+        }
+
+        // Worlds are re-adapted if a UID is reused by a differently named world
+        final World created = World.of(world.getUID(), world.getName(), world.getEnvironment().name().toLowerCase());
+        WORLDS.put(world.getUID(), created);
+        return created;
+    }
+
+}
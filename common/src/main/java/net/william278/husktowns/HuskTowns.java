@@ -9,9 +9,12 @@ import net.william278.desertwell.UpdateChecker;
 import net.william278.desertwell.Version;
 import net.william278.husktowns.claim.*;
 import net.william278.husktowns.config.*;
+import net.william278.husktowns.database.AsyncDatabase;
+import net.william278.husktowns.database.CachingDatabase;
 import net.william278.husktowns.database.Database;
 import net.william278.husktowns.database.MySqlDatabase;
 import net.william278.husktowns.database.SqLiteDatabase;
+import net.william278.husktowns.database.WriteBehindDatabase;
 import net.william278.husktowns.events.EventDispatcher;
 import net.william278.husktowns.hook.EconomyHook;
 import net.william278.husktowns.hook.Hook;
@@ -25,6 +28,7 @@ import net.william278.husktowns.network.RedisBroker;
 import net.william278.husktowns.town.Invite;
 import net.william278.husktowns.town.Member;
 import net.william278.husktowns.town.Town;
+import net.william278.husktowns.town.TownRegistry;
 import net.william278.husktowns.user.ConsoleUser;
 import net.william278.husktowns.user.OnlineUser;
 import net.william278.husktowns.user.Preferences;
@@ -42,6 +46,7 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -83,6 +88,9 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
     @NotNull
     Database getDatabase();
 
+    @NotNull
+    AsyncDatabase getAsyncDatabase();
+
     @NotNull
     Manager getManager();
 
@@ -156,19 +164,18 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
 
     void setLoaded(boolean loaded);
 
+    /**
+     * Get the registry of loaded towns, ordered by when they were loaded or created
+     *
+     * @return the {@link TownRegistry}
+     */
     @NotNull
-    List<Town> getTowns();
+    TownRegistry getTowns();
 
     default Optional<Member> getUserTown(@NotNull User user) {
-        for (int i = 0; i < getTowns().size(); i++) {
-            final Town town = getTowns().get(i);
-            if (town.getMembers().containsKey(user.getUuid())) {
-                final int weight = town.getMembers().get(user.getUuid());
-                return getRoles().fromWeight(weight)
-                        .map(role -> new Member(user, town, role));
-            }
-        }
-        return Optional.empty();
+        return getTowns().getMembership(user.getUuid())
+                .flatMap(membership -> getRoles().fromWeight(membership.roleWeight())
+                        .map(role -> new Member(user, membership.town(), role)));
     }
 
     @NotNull
@@ -182,10 +189,25 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
         final LocalTime startTime = LocalTime.now();
         log(Level.INFO, "Loading data...");
         runAsync(() -> {
-            loadClaimWorlds();
+            // Claim worlds and towns don't depend on each other, so are loaded at the same time
+            final CompletableFuture<LocalTime> claimWorldsLoaded = new CompletableFuture<>();
+            runAsync(() -> {
+                try {
+                    loadClaimWorlds();
+                    claimWorldsLoaded.complete(LocalTime.now());
+                } catch (Throwable e) {
+                    claimWorldsLoaded.completeExceptionally(e);
+                }
+            });
             loadTowns();
+            final LocalTime townsTime = LocalTime.now().minusNanos(startTime.toNanoOfDay());
+            final LocalTime claimsTime = claimWorldsLoaded.join().minusNanos(startTime.toNanoOfDay());
+
+            final LocalTime pruneStartTime = LocalTime.now();
             pruneClaimWorlds();
-            log(Level.INFO, "Loaded data in " + LocalTime.now().minusNanos(startTime.toNanoOfDay()) + "!");
+            final LocalTime pruneTime = LocalTime.now().minusNanos(pruneStartTime.toNanoOfDay());
+            log(Level.INFO, "Loaded data in " + LocalTime.now().minusNanos(startTime.toNanoOfDay())
+                            + "! (claims: " + claimsTime + ", towns: " + townsTime + ", pruning: " + pruneTime + ")");
             setLoaded(true);
             loadHooks();
         });
@@ -219,6 +241,12 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
         log(Level.INFO, "Loading towns from the database...");
         LocalTime startTime = LocalTime.now();
         setTowns(getDatabase().getAllTowns());
+        getOperationHandler().invalidateDecisions();
+
+        // Archive the older actions of towns saved with a long audit log
+        getTowns().stream()
+                .filter(town -> town.getLog().trim())
+                .forEach(town -> getDatabase().updateTown(town));
 
         final int townCount = getTowns().size();
         final int memberCount = getTowns().stream().mapToInt(town -> town.getMembers().size()).sum();
@@ -229,18 +257,33 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
     default void pruneClaimWorlds() {
         log(Level.INFO, "Validating and pruning claims...");
         LocalTime startTime = LocalTime.now();
-        getClaimWorlds().values().forEach(world -> {
-            world.getClaims().keySet().removeIf(claim -> getTowns().stream().noneMatch(town -> town.getId() == claim));
-            getDatabase().updateClaimWorld(world);
-        });
+        final Set<Integer> townIds = getTowns().stream().map(Town::getId).collect(Collectors.toSet());
+        final Set<Integer> prunedTowns = new HashSet<>();
+        int prunedClaims = 0;
+        for (final Map.Entry<String, ClaimWorld> world : getClaimWorlds().entrySet()) {
+            final ClaimWorld claimWorld = world.getValue();
+            final List<Integer> orphanedTowns = claimWorld.getClaims().keySet().stream()
+                    .filter(townId -> !townIds.contains(townId))
+                    .toList();
+            if (orphanedTowns.isEmpty()) {
+                continue;
+            }
+
+            final int pruned = orphanedTowns.stream().mapToInt(claimWorld::removeTownClaims).sum();
+            log(Level.INFO, "Pruned " + pruned + " orphaned claim(s) by " + orphanedTowns.size()
+                            + " deleted town(s) in " + world.getKey());
+            prunedTowns.addAll(orphanedTowns);
+            prunedClaims += pruned;
+        }
+
+        // Only the claims of deleted towns are deleted, so claims made meanwhile by other servers are kept
+        prunedTowns.forEach(townId -> getDatabase().deleteTownClaims(townId));
         final LocalTime pruneTime = LocalTime.now().minusNanos(startTime.toNanoOfDay());
-        log(Level.INFO, "Successfully validated and pruned claims in " + pruneTime);
+        log(Level.INFO, "Successfully validated claims and pruned " + prunedClaims + " orphaned claim(s) in " + pruneTime);
     }
 
     default Optional<Town> findTown(int id) {
-        return getTowns().stream()
-                .filter(town -> town.getId() == id)
-                .findFirst();
+        return getTowns().find(id);
     }
 
     default Optional<Town> findTown(@NotNull String name) {
@@ -258,8 +301,27 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
     }
 
     default Optional<TownClaim> getClaimAt(@NotNull Position position) {
-        return Optional.ofNullable(getClaimWorlds().get(position.getWorld().getName()))
-                .flatMap(claimWorld -> claimWorld.getClaimAt(position.getChunk(), this));
+        final ClaimWorld claimWorld = getClaimWorlds().get(position.getWorld().getName());
+        if (claimWorld == null || !claimWorld.isClaimed(position.getChunkX(), position.getChunkZ())) {
+            return Optional.empty();
+        }
+        return claimWorld.getClaimAt(position.getChunk(), this);
+    }
+
+    /**
+     * Get the claim at a block position, without allocating a {@link Position} or {@link Chunk}
+     *
+     * @param world  the world the block is in
+     * @param blockX the block x coordinate
+     * @param blockZ the block z coordinate
+     * @return the {@link TownClaim} at the block, if any
+     */
+    default Optional<TownClaim> getClaimAt(@NotNull World world, int blockX, int blockZ) {
+        final ClaimWorld claimWorld = getClaimWorlds().get(world.getName());
+        if (claimWorld == null) {
+            return Optional.empty();
+        }
+        return claimWorld.getClaimAt(blockX >> 4, blockZ >> 4, this);
     }
 
     default Optional<ClaimWorld> getClaimWorld(@NotNull World world) {
@@ -313,16 +375,29 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
 
     default void reload() {
         setLoaded(false);
-        loadConfig();
-        loadData();
+
+        // Buffered updates are written before the data is reloaded, off the server thread
+        runAsync(() -> {
+            getDatabase().flush();
+            runSync(() -> {
+                loadConfig();
+                loadData();
+            });
+        });
     }
 
     @NotNull
     default Database loadDatabase() throws RuntimeException {
-        final Database database = switch (getSettings().getDatabaseType()) {
+        Database database = switch (getSettings().getDatabaseType()) {
             case MYSQL -> new MySqlDatabase(this);
             case SQLITE -> new SqLiteDatabase(this);
         };
+        if (getSettings().getWriteBehindMaxLatency() > 0) {
+            database = new WriteBehindDatabase(this, database);
+        }
+        if (getSettings().getUserCacheSize() > 0 && getSettings().getUserCacheExpiry() > 0) {
+            database = new CachingDatabase(this, database);
+        }
         database.initialize();
         log(Level.INFO, "Successfully initialized the " + getSettings().getDatabaseType().getDisplayName() + " database");
         return database;
@@ -415,8 +490,16 @@ public interface HuskTowns extends TaskRunner, EventDispatcher {
         return Key.key("husktowns", joined);
     }
 
+    /**
+     * Get the plugin's {@link Gson} instance, which should be created once with {@link #createGson()} and reused
+     *
+     * @return the Gson instance
+     */
+    @NotNull
+    Gson getGson();
+
     @NotNull
-    default Gson getGson() {
+    default Gson createGson() {
         return Converters.registerOffsetDateTime(new GsonBuilder().excludeFieldsWithoutExposeAnnotation()).create();
     }
 
@@ -150,6 +150,50 @@ public interface IHuskTownsAPI {
                 .orElse(List.of());
     }
 
+    /**
+     * Get a list of {@link TownClaim}s within a rectangle of {@link Chunk}s in a {@link World}, inclusive of its bounds
+     *
+     * @param corner1 A corner of the rectangle
+     * @param corner2 The opposite corner of the rectangle
+     * @param world   The {@link World} to get claims in
+     * @return A list of {@link TownClaim}s within the rectangle
+     * @since 2.0
+     */
+    default List<TownClaim> getClaimsWithin(@NotNull Chunk corner1, @NotNull Chunk corner2, @NotNull World world) {
+        return getClaimWorld(world)
+                .map(claimWorld -> claimWorld.getClaimsWithin(corner1, corner2, getPlugin()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Get a list of {@link TownClaim}s within a radius of a {@link Chunk} in a {@link World}
+     *
+     * @param center The {@link Chunk} at the center of the radius
+     * @param radius The radius, in chunks
+     * @param world  The {@link World} to get claims in
+     * @return A list of {@link TownClaim}s within the radius
+     * @since 2.0
+     */
+    default List<TownClaim> getClaimsWithin(@NotNull Chunk center, int radius, @NotNull World world) {
+        return getClaimWorld(world)
+                .map(claimWorld -> claimWorld.getClaimsWithin(center, radius, getPlugin()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Get a list of {@link TownClaim}s made by a {@link Town} in a {@link World}
+     *
+     * @param town  The {@link Town} to get claims for
+     * @param world The {@link World} to get claims in
+     * @return A list of the town's {@link TownClaim}s in the world
+     * @since 2.0
+     */
+    default List<TownClaim> getClaims(@NotNull Town town, @NotNull World world) {
+        return getClaimWorld(world)
+                .map(claimWorld -> claimWorld.getTownClaims(town.getId(), getPlugin()))
+                .orElse(List.of());
+    }
+
     /**
      * Get a {@link TownClaim} at a {@link Chunk} in a {@link World}, if it exists.
      *
@@ -292,9 +336,8 @@ public interface IHuskTownsAPI {
                 return;
             }
 
-            claimWorld.getClaims().getOrDefault(claim.town().getId(), List.of())
-                    .replaceAll(c -> c.getChunk().equals(claim.claim().getChunk()) ? claim.claim() : c);
-            getPlugin().getDatabase().updateClaimWorld(claimWorld);
+            claimWorld.updateClaim(claim);
+            getPlugin().getDatabase().updateClaim(claimWorld, claim);
         });
     }
 
@@ -349,7 +392,7 @@ public interface IHuskTownsAPI {
      * @since 2.0
      */
     default Optional<Town> getTown(int id) {
-        return getPlugin().getTowns().stream().filter(t -> t.getId() == id).findFirst();
+        return getPlugin().findTown(id);
     }
 
     /**
@@ -395,7 +438,8 @@ public interface IHuskTownsAPI {
     }
 
     /**
-     * Update a {@link Town}
+     * Update a {@link Town}. If another server updated the town since it was read, the update is discarded and the
+     * town is reloaded; use {@link #editTown(OnlineUser, int, Consumer)} to have the edit reapplied instead
      *
      * @param user the {@link OnlineUser} to act as the executor of the update.
      *             In most cases this should be the user relevant to the update operation (i.e. the trigger).
@@ -404,6 +448,11 @@ public interface IHuskTownsAPI {
      * @since 2.0
      */
     default void updateTown(@NotNull OnlineUser user, @NotNull Town town) throws IllegalArgumentException {
+        validateTown(town);
+        getPlugin().runAsync(() -> getPlugin().getManager().updateTownData(user, town));
+    }
+
+    private void validateTown(@NotNull Town town) throws IllegalArgumentException {
         final Validator validator = getPlugin().getValidator();
         if (!validator.isLegalTownName(town.getName())) {
             throw new IllegalArgumentException("Invalid town name: " + town.getName());
@@ -417,13 +466,11 @@ public interface IHuskTownsAPI {
         if (!town.getFarewell().map(validator::isValidTownMetadata).orElse(true)) {
             throw new IllegalArgumentException("Invalid farewell message: " + town.getGreeting().orElse(""));
         }
-
-        getPlugin().runAsync(() -> getPlugin().getManager().updateTownData(user, town));
     }
 
     /**
      * Gets the {@link Town} by name, and, if it exists, edits it through the {@link Consumer} provided, then saves the
-     * changes.
+     * changes. If another server updated the town first, the edit is reapplied to the town as it was updated.
      *
      * @param actor    An actor to edit the town. Note that they do not necessarily need to be a member of or have privileges
      *                 in the town being edited
@@ -435,13 +482,14 @@ public interface IHuskTownsAPI {
     default void editTown(@NotNull OnlineUser actor, @NotNull String townName, @NotNull Consumer<Town> editor) throws IllegalArgumentException {
         getTown(townName).ifPresent(town -> {
             editor.accept(town);
-            updateTown(actor, town);
+            validateTown(town);
+            getPlugin().runAsync(() -> getPlugin().getManager().updateTownData(actor, town, editor));
         });
     }
 
     /**
      * Gets the {@link Town} by ID, and, if it exists, edits it through the {@link Consumer} provided, then saves the
-     * changes.
+     * changes. If another server updated the town first, the edit is reapplied to the town as it was updated.
      *
      * @param actor  An actor to edit the town. Note that they do not necessarily need to be a member of or have privileges
      *               in the town being edited
@@ -453,7 +501,8 @@ public interface IHuskTownsAPI {
     default void editTown(@NotNull OnlineUser actor, int townId, @NotNull Consumer<Town> editor) throws IllegalArgumentException {
         getTown(townId).ifPresent(town -> {
             editor.accept(town);
-            updateTown(actor, town);
+            validateTown(town);
+            getPlugin().runAsync(() -> getPlugin().getManager().updateTownData(actor, town, editor));
         });
     }
 
@@ -488,9 +537,7 @@ public interface IHuskTownsAPI {
      * @since 2.0
      */
     default CompletableFuture<Optional<User>> getUser(@NotNull UUID user) {
-        final CompletableFuture<Optional<User>> userFuture = new CompletableFuture<>();
-        getPlugin().runAsync(() -> userFuture.complete(getPlugin().getDatabase().getUser(user).map(SavedUser::user)));
-        return userFuture;
+        return getPlugin().getAsyncDatabase().getUser(user).thenApply(saved -> saved.map(SavedUser::user));
     }
 
     /**
@@ -501,9 +548,7 @@ public interface IHuskTownsAPI {
      * @since 2.0
      */
     default CompletableFuture<Optional<User>> getUser(@NotNull String username) {
-        final CompletableFuture<Optional<User>> userFuture = new CompletableFuture<>();
-        getPlugin().runAsync(() -> userFuture.complete(getPlugin().getDatabase().getUser(username).map(SavedUser::user)));
-        return userFuture;
+        return getPlugin().getAsyncDatabase().getUser(username).thenApply(saved -> saved.map(SavedUser::user));
     }
 
     /**
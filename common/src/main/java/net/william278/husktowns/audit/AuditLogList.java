@@ -0,0 +1,81 @@
+package net.william278.husktowns.audit;
+
+import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.town.Town;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.OffsetDateTime;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of the complete audit {@link Log} of a town, ordered from newest to oldest
+ * <p>
+ * The recent actions kept with the town are listed first, followed by the actions archived to the database, which are
+ * only read a page at a time as they are accessed.
+ */
+public final class AuditLogList extends AbstractList<Map.Entry<OffsetDateTime, Action>> implements RandomAccess {
+
+    private final HuskTowns plugin;
+    private final int townId;
+    private final int pageSize;
+    private final List<Map.Entry<OffsetDateTime, Action>> recent;
+    private final OffsetDateTime before;
+    private final int archived;
+    private List<Map.Entry<OffsetDateTime, Action>> page = List.of();
+    private int pageOffset;
+
+    private AuditLogList(@NotNull HuskTowns plugin, @NotNull Town town, int pageSize) {
+        this.plugin = plugin;
+        this.townId = town.getId();
+        this.pageSize = Math.max(1, pageSize);
+        this.recent = town.getLog().getRecentActions();
+
+        // Only archived actions older than the recent actions are listed, so none are listed twice
+        this.before = recent.isEmpty() ? OffsetDateTime.now() : recent.get(recent.size() - 1).getKey();
+        this.archived = plugin.getDatabase().getArchivedActionCount(townId, before);
+    }
+
+    /**
+     * Create a view of the audit log of a town
+     *
+     * @param plugin   the plugin instance
+     * @param town     the town
+     * @param pageSize the number of archived actions to read from the database at a time
+     * @return the audit log view
+     * @apiNote This counts the town's archived actions, so should not be called on the main thread
+     */
+    @NotNull
+    public static AuditLogList of(@NotNull HuskTowns plugin, @NotNull Town town, int pageSize) {
+        return new AuditLogList(plugin, town, pageSize);
+    }
+
+    @Override
+    public Map.Entry<OffsetDateTime, Action> get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for audit log of size " + size());
+        }
+        if (index < recent.size()) {
+            return recent.get(index);
+        }
+
+        // Read the page of archived actions containing the index, if it is not the current page
+        final int archivedIndex = index - recent.size();
+        if (archivedIndex < pageOffset || archivedIndex >= pageOffset + page.size()) {
+            this.pageOffset = archivedIndex - archivedIndex % pageSize;
+            this.page = plugin.getDatabase().getArchivedActions(townId, before, pageOffset, pageSize);
+            if (archivedIndex >= pageOffset + page.size()) {
+                throw new IndexOutOfBoundsException("Archived action " + archivedIndex + " is no longer in the database");
+            }
+        }
+        return page.get(archivedIndex - pageOffset);
+    }
+
+    @Override
+    public int size() {
+        return recent.size() + archived;
+    }
+
+}
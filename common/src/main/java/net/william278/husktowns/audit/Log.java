@@ -1,20 +1,42 @@
 package net.william278.husktowns.audit;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
 import net.william278.husktowns.user.User;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.OffsetDateTime;
-import java.util.Map;
-import java.util.TreeMap;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 /**
  * Represents the audit log of actions taken in a {@link net.william278.husktowns.town.Town}
+ * <p>
+ * Only the most recent actions are kept with the town; older actions are archived to the town audit table of the
+ * database when the town is next saved.
  */
 public class Log {
 
+    /**
+     * The maximum number of recent actions kept with the town
+     */
+    public static final int RECENT_ACTIONS = 50;
+
     @Expose
     private Map<OffsetDateTime, Action> actions;
+    @Expose
+    @Nullable
+    @SerializedName("founded")
+    private OffsetDateTime founded;
+    // Actions trimmed from the recent actions that have not been archived yet
+    private final List<Map.Entry<OffsetDateTime, Action>> archivable = new ArrayList<>();
+    // Times of actions logged or trimmed since changes were last taken, and whether the founded time was set
+    private final Set<OffsetDateTime> changedActions = new HashSet<>();
+    private boolean foundedChanged;
 
     private Log(@NotNull Map<OffsetDateTime, Action> actions) {
         this.actions = actions;
@@ -36,6 +58,7 @@ public class Log {
     public static Log newTownLog(@NotNull User creator) {
         final Log log = new Log(new TreeMap<>());
         log.log(Action.of(creator, Action.Type.CREATE_TOWN));
+        log.founded = log.getFoundedTime();
         return log;
     }
 
@@ -63,6 +86,7 @@ public class Log {
         final Log log = new Log(new TreeMap<>());
         log.actions.put(foundedTime, Action.of(Action.Type.CREATE_TOWN));
         log.log(Action.of(Action.Type.TOWN_DATA_MIGRATED));
+        log.founded = foundedTime;
         return log;
     }
 
@@ -72,20 +96,121 @@ public class Log {
      * @param action the action to add to the log.
      * @apiNote The action will be logged as having occurred just now
      */
-    public void log(@NotNull Action action) {
-        this.actions.put(OffsetDateTime.now(), action);
+    public synchronized void log(@NotNull Action action) {
+        // Actions are keyed by when they occurred, so those logged in the same microsecond are nudged apart
+        OffsetDateTime time = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        while (actions.containsKey(time)) {
+            time = time.plus(1, ChronoUnit.MICROS);
+        }
+        this.actions.put(time, action);
+        changedActions.add(time);
+        trim();
     }
 
     /**
-     * Get the map of {@link OffsetDateTime}s to their respective {@link Action}s
+     * Get the map of {@link OffsetDateTime}s to their respective {@link Action}s, for the most recent actions
      *
-     * @return the map of actions to when they occurred
+     * @return the map of recent actions to when they occurred
+     * @apiNote Older actions are archived to the database, and may be read with
+     * {@link net.william278.husktowns.database.Database#getArchivedActions(int, OffsetDateTime, int, int)}
      */
     @NotNull
     public Map<OffsetDateTime, Action> getActions() {
         return actions;
     }
 
+    /**
+     * Get the recent actions, including those trimmed but not yet archived, ordered from newest to oldest
+     *
+     * @return the recent actions
+     */
+    @NotNull
+    public synchronized List<Map.Entry<OffsetDateTime, Action>> getRecentActions() {
+        final List<Map.Entry<OffsetDateTime, Action>> recent = new ArrayList<>(actions.entrySet());
+        recent.addAll(archivable);
+        recent.sort(Map.Entry.<OffsetDateTime, Action>comparingByKey().reversed());
+        return recent;
+    }
+
+    /**
+     * Trim the recent actions down to the {@link #RECENT_ACTIONS most recent}, marking the rest to be archived
+     *
+     * @return {@code true} if any actions were trimmed
+     */
+    public synchronized boolean trim() {
+        if (actions.size() <= RECENT_ACTIONS) {
+            return false;
+        }
+        if (founded == null) {
+            founded = getFoundedTime();
+            foundedChanged = true;
+        }
+        final TreeMap<OffsetDateTime, Action> sorted = new TreeMap<>(actions);
+        while (sorted.size() > RECENT_ACTIONS) {
+            final Map.Entry<OffsetDateTime, Action> trimmed = sorted.pollFirstEntry();
+            archivable.add(trimmed);
+            changedActions.add(trimmed.getKey());
+        }
+        this.actions = sorted;
+        return true;
+    }
+
+    /**
+     * Take the actions that have been trimmed from the recent actions, to archive them
+     *
+     * @return the actions to archive
+     */
+    @NotNull
+    public synchronized List<Map.Entry<OffsetDateTime, Action>> takeArchivableActions() {
+        final List<Map.Entry<OffsetDateTime, Action>> taken = new ArrayList<>(archivable);
+        archivable.clear();
+        return taken;
+    }
+
+    /**
+     * Return actions taken to archive that were not archived, so they are archived with the next update
+     *
+     * @param actions the actions that were not archived
+     */
+    public synchronized void restoreArchivableActions(@NotNull List<Map.Entry<OffsetDateTime, Action>> actions) {
+        archivable.addAll(0, actions);
+    }
+
+    /**
+     * Take the changes made to the log since they were last taken, as a JSON merge patch of its serialized form, in
+     * which trimmed actions are removed
+     *
+     * @param gson the Gson instance to serialize actions with
+     * @return the changes, wrapped in an {@link Optional}; empty if the log has not changed
+     */
+    public synchronized Optional<JsonObject> takeChanges(@NotNull Gson gson) {
+        if (changedActions.isEmpty() && !foundedChanged) {
+            return Optional.empty();
+        }
+
+        // Actions are keyed by the string form of their time, as Gson writes map keys
+        final JsonObject changes = new JsonObject();
+        final JsonObject actionChanges = new JsonObject();
+        for (final OffsetDateTime time : changedActions) {
+            final Action action = actions.get(time);
+            actionChanges.add(time.toString(), action == null ? JsonNull.INSTANCE : gson.toJsonTree(action));
+        }
+        changes.add("actions", actionChanges);
+        if (foundedChanged && founded != null) {
+            changes.add("founded", gson.toJsonTree(founded, OffsetDateTime.class));
+        }
+        clearChanges();
+        return Optional.of(changes);
+    }
+
+    /**
+     * Forget the changes made to the log, once it has been read from or written in full to the database
+     */
+    public synchronized void clearChanges() {
+        changedActions.clear();
+        foundedChanged = false;
+    }
+
     /**
      * Returns when the town was founded
      *
@@ -93,6 +218,9 @@ public class Log {
      */
     @NotNull
     public OffsetDateTime getFoundedTime() {
+        if (founded != null) {
+            return founded;
+        }
         return actions.entrySet().stream()
                 .filter(entry -> entry.getValue().getType() == Action.Type.CREATE_TOWN)
                 .findFirst()
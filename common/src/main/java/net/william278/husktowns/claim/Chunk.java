@@ -1,8 +1,15 @@
 package net.william278.husktowns.claim;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+
+@JsonAdapter(Chunk.Adapter.class)
 public class Chunk {
 
     @Expose
@@ -32,6 +39,27 @@ public class Chunk {
         return z;
     }
 
+    /**
+     * Pack chunk coordinates into a single {@code long} key, for use in primitive indexes
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the packed chunk key
+     */
+    public static long key(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the packed {@code long} key of this chunk
+     *
+     * @return the packed chunk key
+     * @see #key(int, int)
+     */
+    public long getKey() {
+        return key(x, z);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -40,6 +68,11 @@ public class Chunk {
         return x == chunk.x && z == chunk.z;
     }
 
+    @Override
+    public int hashCode() {
+        return Long.hashCode(getKey());
+    }
+
     @Override
     public String toString() {
         return "(x: " + x + ", z: " + z + ")";
@@ -53,4 +86,37 @@ public class Chunk {
         return position.getX() >= x * 16 && position.getX() < (x + 1) * 16
                && position.getZ() >= z * 16 && position.getZ() < (z + 1) * 16;
     }
+
+    /**
+     * Streaming Gson adapter for chunks, which are serialized in bulk with claims
+     */
+    static final class Adapter extends TypeAdapter<Chunk> {
+
+        static final Adapter INSTANCE = new Adapter();
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Chunk chunk) throws IOException {
+            out.beginObject();
+            out.name("x").value(chunk.x);
+            out.name("z").value(chunk.z);
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Chunk read(@NotNull JsonReader in) throws IOException {
+            final Chunk chunk = new Chunk();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "x" -> chunk.x = in.nextInt();
+                    case "z" -> chunk.z = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return chunk;
+        }
+    }
+
 }
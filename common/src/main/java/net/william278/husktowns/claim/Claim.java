@@ -1,12 +1,19 @@
 package net.william278.husktowns.claim;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
 
+@JsonAdapter(Claim.Adapter.class)
 public class Claim {
 
     @Expose
@@ -34,6 +41,19 @@ public class Claim {
         return new Claim(chunk, Type.CLAIM, null);
     }
 
+    /**
+     * Create a claim with a type and plot members, such as when loading it from the database
+     *
+     * @param chunk       the chunk claimed
+     * @param type        the type of claim
+     * @param plotMembers map of plot member UUIDs to whether they are a plot manager; ignored if not a plot
+     * @return the claim
+     */
+    @NotNull
+    public static Claim of(@NotNull Chunk chunk, @NotNull Type type, @Nullable Map<UUID, Boolean> plotMembers) {
+        return new Claim(chunk, type, plotMembers == null || plotMembers.isEmpty() ? null : new HashMap<>(plotMembers));
+    }
+
     public void setType(@NotNull Type type) {
         if (getType() == Type.PLOT && type != Type.PLOT) {
             plotMembers = null;
@@ -111,6 +131,16 @@ public class Claim {
         return plotMembers == null ? Set.of() : plotMembers.keySet();
     }
 
+    /**
+     * Get the plot members of this claim and whether each is a plot manager
+     *
+     * @return map of plot member UUIDs to whether they are a plot manager; empty if this claim is not a plot
+     */
+    @NotNull
+    public Map<UUID, Boolean> getPlotMemberMap() {
+        return plotMembers == null ? Map.of() : Collections.unmodifiableMap(plotMembers);
+    }
+
     public enum Type {
 
         CLAIM,
@@ -121,4 +151,67 @@ public class Claim {
             return Arrays.stream(values()).filter(type -> type.name().equalsIgnoreCase(id)).findFirst();
         }
     }
+
+    /**
+     * Streaming Gson adapter for claims, which are serialized in bulk with claim worlds
+     */
+    static final class Adapter extends TypeAdapter<Claim> {
+
+        static final Adapter INSTANCE = new Adapter();
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Claim claim) throws IOException {
+            out.beginObject();
+            if (claim.chunk != null) {
+                out.name("chunk");
+                Chunk.Adapter.INSTANCE.write(out, claim.chunk);
+            }
+            if (claim.type != null) {
+                out.name("type").value(claim.type.name());
+            }
+            if (claim.plotMembers != null) {
+                out.name("plot_members").beginObject();
+                for (final Map.Entry<UUID, Boolean> member : claim.plotMembers.entrySet()) {
+                    out.name(member.getKey().toString()).value(member.getValue());
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Claim read(@NotNull JsonReader in) throws IOException {
+            final Claim claim = new Claim();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "chunk" -> claim.chunk = Chunk.Adapter.INSTANCE.read(in);
+                    case "type" -> claim.type = Type.fromId(in.nextString()).orElse(null);
+                    case "plot_members" -> {
+                        claim.plotMembers = new LinkedHashMap<>();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            final UUID uuid = UUID.fromString(in.nextName());
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                                continue;
+                            }
+                            claim.plotMembers.put(uuid, in.nextBoolean());
+                        }
+                        in.endObject();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return claim;
+        }
+    }
+
 }
@@ -0,0 +1,269 @@
+package net.william278.husktowns.claim;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressed hash index of packed chunk coordinates to the {@link Claim} made there and the ID of the town
+ * that owns it. Used by {@link ClaimWorld} to resolve claims in constant time without allocating.
+ * <p>
+ * A {@link RegionBitmap} of claimed chunks is maintained alongside the table, so that negative lookups in the
+ * wilderness can be answered without probing it.
+ * <p>
+ * Writes take an exclusive lock and change the table in place. Reads are optimistic: they take no lock, and are
+ * retried under a read lock if a write was made while they were reading, so never see a half-moved entry.
+ */
+final class ClaimIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long HASH_SEED = 0x9E3779B97F4A7C15L;
+
+    private final RegionBitmap regions = new RegionBitmap();
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(MIN_CAPACITY);
+    private volatile int size;
+
+    /**
+     * Returns whether the chunk at the given coordinates is claimed, using only the region bitmap
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return {@code true} if the chunk is claimed
+     */
+    boolean isClaimed(int chunkX, int chunkZ) {
+        return regions.isSet(chunkX, chunkZ);
+    }
+
+    /**
+     * Get the entry at the packed chunk key, if any
+     *
+     * @param key the packed chunk key, as returned by {@link Chunk#key(int, int)}
+     * @return the indexed entry, or {@code null} if the chunk is not claimed
+     */
+    @Nullable
+    Entry get(long key) {
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final Entry entry = find(table, key);
+            if (lock.validate(stamp)) {
+                return entry;
+            }
+        }
+        final long readStamp = lock.readLock();
+        try {
+            return find(table, key);
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    @Nullable
+    private static Entry find(@NotNull Table table, long key) {
+        final int slot = table.find(key);
+        return slot < 0 ? null : table.entries[slot];
+    }
+
+    /**
+     * Visit every entry whose chunk lies within a rectangle of chunk coordinates, inclusive of its bounds.
+     * <p>
+     * Small rectangles are walked region by region, skipping regions with no claims; rectangles larger than the
+     * table are answered by a single scan of the table instead. Entries are collected under a read lock, and the
+     * consumer is called once it has been released.
+     *
+     * @param minX     the minimum chunk x coordinate
+     * @param minZ     the minimum chunk z coordinate
+     * @param maxX     the maximum chunk x coordinate
+     * @param maxZ     the maximum chunk z coordinate
+     * @param consumer the consumer to accept each entry
+     */
+    void forEachWithin(int minX, int minZ, int maxX, int maxZ, @NotNull Consumer<Entry> consumer) {
+        if (minX > maxX || minZ > maxZ) {
+            return;
+        }
+        final List<Entry> within = new ArrayList<>();
+        final long stamp = lock.readLock();
+        try {
+            collectWithin(minX, minZ, maxX, maxZ, within);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        within.forEach(consumer);
+    }
+
+    private void collectWithin(int minX, int minZ, int maxX, int maxZ, @NotNull List<Entry> within) {
+        final Table table = this.table;
+        final long area = ((long) maxX - minX + 1) * ((long) maxZ - minZ + 1);
+        if (area >= table.keys.length) {
+            for (int i = 0; i < table.entries.length; i++) {
+                final Entry entry = table.entries[i];
+                if (entry == null) {
+                    continue;
+                }
+                final int x = (int) (table.keys[i] >> 32);
+                final int z = (int) table.keys[i];
+                if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                    within.add(entry);
+                }
+            }
+            return;
+        }
+
+        for (int regionZ = minZ >> 5; regionZ <= maxZ >> 5; regionZ++) {
+            for (int regionX = minX >> 5; regionX <= maxX >> 5; regionX++) {
+                if (!regions.hasRegion(regionX, regionZ)) {
+                    continue;
+                }
+                final int fromZ = Math.max(minZ, regionZ << 5);
+                final int toZ = Math.min(maxZ, (regionZ << 5) + 31);
+                final int fromX = Math.max(minX, regionX << 5);
+                final int toX = Math.min(maxX, (regionX << 5) + 31);
+                for (int z = fromZ; z <= toZ; z++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        if (!regions.isSet(x, z)) {
+                            continue;
+                        }
+                        final int slot = table.find(Chunk.key(x, z));
+                        if (slot >= 0) {
+                            within.add(table.entries[slot]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    void put(long key, int townId, @NotNull Claim claim) {
+        final long stamp = lock.writeLock();
+        try {
+            Table table = this.table;
+            if ((size + 1) * 4L > table.keys.length * 3L) {
+                table = table.resize(table.keys.length << 1);
+            }
+            if (table.put(key, new Entry(townId, claim))) {
+                size++;
+            }
+            this.table = table;
+            regions.set((int) (key >> 32), (int) key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(long key) {
+        final long stamp = lock.writeLock();
+        try {
+            if (table.remove(key)) {
+                regions.clear((int) (key >> 32), (int) key);
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        final long stamp = lock.writeLock();
+        try {
+            this.table = new Table(MIN_CAPACITY);
+            this.size = 0;
+            regions.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int hash(long key, int mask) {
+        final long mixed = key * HASH_SEED;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    /**
+     * An indexed claim
+     *
+     * @param townId the ID of the town owning the claim, or {@code 0} if it is an admin claim
+     * @param claim  the claim
+     */
+    record Entry(int townId, @NotNull Claim claim) {
+    }
+
+    // Parallel arrays holding one generation of the index; replaced wholesale on resize
+    private static final class Table {
+        private final long[] keys;
+        private final Entry[] entries;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.entries = new Entry[capacity];
+            this.mask = capacity - 1;
+        }
+
+        // Probes at most the whole table, as an optimistic read racing a write may not meet an empty slot
+        private int find(long key) {
+            int slot = hash(key, mask);
+            for (int probes = 0; probes < entries.length && entries[slot] != null; probes++) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Returns true if a new key was inserted, false if an existing mapping was replaced
+        private boolean put(long key, @NotNull Entry entry) {
+            int slot = hash(key, mask);
+            while (entries[slot] != null) {
+                if (keys[slot] == key) {
+                    entries[slot] = entry;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            entries[slot] = entry;
+            return true;
+        }
+
+        // Linear probing removal with backward shifting, so no tombstones are left behind
+        private boolean remove(long key) {
+            int slot = find(key);
+            if (slot < 0) {
+                return false;
+            }
+            int next = (slot + 1) & mask;
+            while (entries[next] != null) {
+                final int ideal = hash(keys[next], mask);
+                if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    entries[slot] = entries[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            entries[slot] = null;
+            return true;
+        }
+
+        @NotNull
+        private Table resize(int capacity) {
+            final Table resized = new Table(capacity);
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != null) {
+                    resized.put(keys[i], entries[i]);
+                }
+            }
+            return resized;
+        }
+    }
+
+}
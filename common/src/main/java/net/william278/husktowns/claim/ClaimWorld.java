@@ -1,16 +1,25 @@
 package net.william278.husktowns.claim;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.town.Town;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+@JsonAdapter(ClaimWorld.Adapter.class)
 public class ClaimWorld {
 
     private int id;
@@ -21,6 +30,11 @@ public class ClaimWorld {
     @SerializedName("admin_claims")
     private List<Claim> adminClaims;
 
+    // Chunk-keyed index of claims; built lazily, as Gson deserialization bypasses the constructor
+    private volatile ClaimIndex index;
+    // Incremented whenever a claim in this world is added, removed or replaced
+    private volatile int revision;
+
     private ClaimWorld(int id, @NotNull Map<Integer, List<Claim>> claims, @NotNull List<Claim> adminClaims) {
         this.id = id;
         this.claims = claims;
@@ -36,19 +50,157 @@ public class ClaimWorld {
     private ClaimWorld() {
     }
 
+    /**
+     * Get the claim at a chunk in this world, if one has been made
+     *
+     * @param chunk  the chunk to check
+     * @param plugin the HuskTowns plugin instance
+     * @return the {@link TownClaim} at the chunk, if any
+     */
     public Optional<TownClaim> getClaimAt(@NotNull Chunk chunk, @NotNull HuskTowns plugin) {
-        return claims.entrySet().stream()
-                .filter(entry -> entry.getValue().stream().anyMatch(claim -> claim.getChunk().equals(chunk)))
-                .findFirst()
-                .flatMap(entry -> entry.getValue().stream()
-                        .filter(claim -> claim.getChunk().equals(chunk))
-                        .findFirst()
-                        .flatMap(claim -> plugin.findTown(entry.getKey())
-                                .map(town1 -> new TownClaim(town1, claim))))
-                .or(() -> adminClaims.stream()
-                        .filter(claim -> claim.getChunk().equals(chunk))
-                        .findFirst()
-                        .map(claim -> new TownClaim(plugin.getAdminTown(), claim)));
+        return getClaimAt(chunk.getX(), chunk.getZ(), plugin);
+    }
+
+    /**
+     * Get the claim at a chunk in this world, if one has been made, without allocating a {@link Chunk}
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param plugin the HuskTowns plugin instance
+     * @return the {@link TownClaim} at the chunk, if any
+     */
+    public Optional<TownClaim> getClaimAt(int chunkX, int chunkZ, @NotNull HuskTowns plugin) {
+        final ClaimIndex index = getIndex();
+        if (!index.isClaimed(chunkX, chunkZ)) {
+            return Optional.empty();
+        }
+        final ClaimIndex.Entry entry = index.get(Chunk.key(chunkX, chunkZ));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.townId() == 0) {
+            return Optional.of(new TownClaim(plugin.getAdminTown(), entry.claim()));
+        }
+        return plugin.findTown(entry.townId()).map(town -> new TownClaim(town, entry.claim()));
+    }
+
+    /**
+     * Returns whether a chunk in this world has been claimed, either by a town or an administrator.
+     * <p>
+     * This only tests the region occupancy bitmap and is cheap enough to call before every claim lookup.
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return {@code true} if the chunk is claimed
+     */
+    public boolean isClaimed(int chunkX, int chunkZ) {
+        return getIndex().isClaimed(chunkX, chunkZ);
+    }
+
+    /**
+     * Get all claims in this world within a rectangle of chunks, inclusive of its bounds
+     *
+     * @param corner1 a corner of the rectangle
+     * @param corner2 the opposite corner of the rectangle
+     * @param plugin  the HuskTowns plugin instance
+     * @return the {@link TownClaim}s within the rectangle
+     */
+    @NotNull
+    public List<TownClaim> getClaimsWithin(@NotNull Chunk corner1, @NotNull Chunk corner2, @NotNull HuskTowns plugin) {
+        final List<TownClaim> townClaims = new ArrayList<>();
+        final TownResolver resolver = new TownResolver(plugin);
+        getIndex().forEachWithin(Math.min(corner1.getX(), corner2.getX()), Math.min(corner1.getZ(), corner2.getZ()),
+                Math.max(corner1.getX(), corner2.getX()), Math.max(corner1.getZ(), corner2.getZ()),
+                entry -> resolver.resolve(entry.townId())
+                        .ifPresent(town -> townClaims.add(new TownClaim(town, entry.claim()))));
+        return townClaims;
+    }
+
+    /**
+     * Get all claims in this world within a radius of a chunk, measured between chunk coordinates
+     *
+     * @param center the chunk at the center of the radius
+     * @param radius the radius, in chunks
+     * @param plugin the HuskTowns plugin instance
+     * @return the {@link TownClaim}s within the radius
+     */
+    @NotNull
+    public List<TownClaim> getClaimsWithin(@NotNull Chunk center, int radius, @NotNull HuskTowns plugin) {
+        if (radius < 0) {
+            return List.of();
+        }
+        final long radiusSquared = (long) radius * radius;
+        final List<TownClaim> townClaims = getClaimsWithin(
+                Chunk.at(center.getX() - radius, center.getZ() - radius),
+                Chunk.at(center.getX() + radius, center.getZ() + radius), plugin);
+        townClaims.removeIf(townClaim -> {
+            final long dx = townClaim.claim().getChunk().getX() - center.getX();
+            final long dz = townClaim.claim().getChunk().getZ() - center.getZ();
+            return dx * dx + dz * dz > radiusSquared;
+        });
+        return townClaims;
+    }
+
+    /**
+     * Get all claims made by a town in this world
+     *
+     * @param townId the ID of the town; {@code 0} for admin claims
+     * @param plugin the HuskTowns plugin instance
+     * @return the town's {@link TownClaim}s in this world
+     */
+    @NotNull
+    public List<TownClaim> getTownClaims(int townId, @NotNull HuskTowns plugin) {
+        final List<Claim> townClaims = townId == 0 ? adminClaims : claims.get(townId);
+        if (townClaims == null || townClaims.isEmpty()) {
+            return List.of();
+        }
+        return new TownResolver(plugin).resolve(townId)
+                .map(town -> townClaims.stream().map(claim -> new TownClaim(town, claim)).toList())
+                .orElse(List.of());
+    }
+
+    @NotNull
+    private ClaimIndex getIndex() {
+        ClaimIndex index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = new ClaimIndex();
+                    indexClaims(index);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private void indexClaims(@NotNull ClaimIndex index) {
+        claims.forEach((townId, townClaims) -> townClaims
+                .forEach(claim -> index.put(claim.getChunk().getKey(), townId, claim)));
+        adminClaims.forEach(claim -> index.put(claim.getChunk().getKey(), 0, claim));
+    }
+
+    /**
+     * Rebuild the chunk index of this world's claims. Must be called if the map returned by {@link #getClaims()}
+     * is modified directly.
+     */
+    public void rebuildIndex() {
+        final ClaimIndex index = new ClaimIndex();
+        indexClaims(index);
+        this.index = index;
+        revision++;
+    }
+
+    /**
+     * Get the revision of this world's claims, which changes whenever a claim is added, removed or replaced.
+     * <p>
+     * Lookups cached against a revision remain valid for as long as the revision is unchanged.
+     *
+     * @return the current claim revision
+     */
+    public int getRevision() {
+        return revision;
     }
 
     /**
@@ -94,33 +246,63 @@ public class ClaimWorld {
      * @return the number of claims removed
      */
     public int removeTownClaims(int townId) {
-        if (claims.containsKey(townId)) {
-            int claimCount = claims.get(townId).size();
-            claims.remove(townId);
-            return claimCount;
+        final List<Claim> removed = claims.remove(townId);
+        if (removed == null) {
+            return 0;
         }
-        return 0;
+        final ClaimIndex index = getIndex();
+        removed.forEach(claim -> index.remove(claim.getChunk().getKey()));
+        revision++;
+        return removed.size();
     }
 
     public void addClaim(@NotNull TownClaim townClaim) {
-        if (!claims.containsKey(townClaim.town().getId())) {
-            claims.put(townClaim.town().getId(), new ArrayList<>());
-        }
-        claims.get(townClaim.town().getId()).add(townClaim.claim());
+        final int townId = townClaim.town().getId();
+        claims.computeIfAbsent(townId, id -> new ArrayList<>()).add(townClaim.claim());
+        getIndex().put(townClaim.claim().getChunk().getKey(), townId, townClaim.claim());
+        revision++;
     }
 
     public void addAdminClaim(@NotNull Claim claim) {
         adminClaims.add(claim);
+        getIndex().put(claim.getChunk().getKey(), 0, claim);
+        revision++;
+    }
+
+    /**
+     * Replace a town's claim with an updated copy, matched by chunk
+     *
+     * @param townClaim the updated claim
+     */
+    public void updateClaim(@NotNull TownClaim townClaim) {
+        final Claim updated = townClaim.claim();
+        final List<Claim> townClaims = claims.get(townClaim.town().getId());
+        if (townClaims == null) {
+            return;
+        }
+        for (int i = 0; i < townClaims.size(); i++) {
+            if (townClaims.get(i).getChunk().equals(updated.getChunk())) {
+                townClaims.set(i, updated);
+                getIndex().put(updated.getChunk().getKey(), townClaim.town().getId(), updated);
+                revision++;
+                return;
+            }
+        }
     }
 
     public void removeClaim(@NotNull Town town, @NotNull Chunk chunk) {
-        if (claims.containsKey(town.getId())) {
-            claims.get(town.getId()).removeIf(claim -> claim.getChunk().equals(chunk));
+        final List<Claim> townClaims = claims.get(town.getId());
+        if (townClaims != null && townClaims.removeIf(claim -> claim.getChunk().equals(chunk))) {
+            getIndex().remove(chunk.getKey());
+            revision++;
         }
     }
 
     public void removeAdminClaim(@NotNull Chunk chunk) {
-        adminClaims.removeIf(claim -> claim.getChunk().equals(chunk));
+        if (adminClaims.removeIf(claim -> claim.getChunk().equals(chunk))) {
+            getIndex().remove(chunk.getKey());
+            revision++;
+        }
     }
 
     @NotNull
@@ -128,6 +310,11 @@ public class ClaimWorld {
         return claims;
     }
 
+    @NotNull
+    public List<Claim> getAdminClaims() {
+        return adminClaims;
+    }
+
     @NotNull
     public List<TownClaim> getClaims(@NotNull HuskTowns plugin) {
         List<TownClaim> townClaims = new ArrayList<>();
@@ -147,4 +334,91 @@ public class ClaimWorld {
         return id == claimWorld.id;
     }
 
+    // Resolves each town ID at most once over the course of a bulk query
+    private static final class TownResolver {
+        private final HuskTowns plugin;
+        private final Map<Integer, Optional<Town>> resolved = new HashMap<>();
+
+        private TownResolver(@NotNull HuskTowns plugin) {
+            this.plugin = plugin;
+        }
+
+        @NotNull
+        private Optional<Town> resolve(int townId) {
+            return resolved.computeIfAbsent(townId, id -> id == 0
+                    ? Optional.of(plugin.getAdminTown()) : plugin.findTown(id));
+        }
+    }
+
+    /**
+     * Streaming Gson adapter for claim worlds, writing each claim without reflection
+     */
+    static final class Adapter extends TypeAdapter<ClaimWorld> {
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull ClaimWorld world) throws IOException {
+            out.beginObject();
+            if (world.claims != null) {
+                out.name("claims").beginObject();
+                for (final Map.Entry<Integer, List<Claim>> townClaims : world.claims.entrySet()) {
+                    out.name(Integer.toString(townClaims.getKey()));
+                    writeClaims(out, townClaims.getValue());
+                }
+                out.endObject();
+            }
+            if (world.adminClaims != null) {
+                out.name("admin_claims");
+                writeClaims(out, world.adminClaims);
+            }
+            out.endObject();
+        }
+
+        private void writeClaims(@NotNull JsonWriter out, @NotNull List<Claim> claims) throws IOException {
+            out.beginArray();
+            for (final Claim claim : claims) {
+                Claim.Adapter.INSTANCE.write(out, claim);
+            }
+            out.endArray();
+        }
+
+        @Override
+        @NotNull
+        public ClaimWorld read(@NotNull JsonReader in) throws IOException {
+            final ClaimWorld world = new ClaimWorld();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "claims" -> {
+                        world.claims = new LinkedHashMap<>();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            world.claims.put(Integer.parseInt(in.nextName()), readClaims(in));
+                        }
+                        in.endObject();
+                    }
+                    case "admin_claims" -> world.adminClaims = readClaims(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return world;
+        }
+
+        @NotNull
+        private List<Claim> readClaims(@NotNull JsonReader in) throws IOException {
+            final List<Claim> claims = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                claims.add(Claim.Adapter.INSTANCE.read(in));
+            }
+            in.endArray();
+            return claims;
+        }
+    }
+
 }
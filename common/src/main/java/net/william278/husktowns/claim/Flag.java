@@ -64,13 +64,38 @@ public enum Flag {
 
 
     private final Operation.Type[] allowedOperations;
+    private final long operationMask;
 
     Flag(@NotNull Operation.Type... allowedOperations) {
         this.allowedOperations = allowedOperations;
+        this.operationMask = getMask(allowedOperations);
     }
 
     public boolean isOperationAllowed(@NotNull Operation.Type type) {
-        return Arrays.asList(allowedOperations).contains(type);
+        return (operationMask & getMask(type)) != 0;
+    }
+
+    /**
+     * Get the bitmask of {@link Operation.Type#ordinal() operation type ordinals} this flag permits when enabled
+     *
+     * @return the operation bitmask
+     */
+    public long getOperationMask() {
+        return operationMask;
+    }
+
+    /**
+     * Get the bitmask of a set of {@link Operation.Type}s, with one bit set per type ordinal
+     *
+     * @param types the operation types
+     * @return the operation bitmask
+     */
+    public static long getMask(@NotNull Operation.Type... types) {
+        long mask = 0L;
+        for (final Operation.Type type : types) {
+            mask |= 1L << type.ordinal();
+        }
+        return mask;
     }
 
     public static Optional<Flag> fromId(@NotNull String id) {
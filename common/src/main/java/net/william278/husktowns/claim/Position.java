@@ -96,7 +96,15 @@ public class Position {
 
     @NotNull
     public Chunk getChunk() {
-        return Chunk.at((int) Math.floor(x / 16), (int) Math.floor(z / 16));
+        return Chunk.at(getChunkX(), getChunkZ());
+    }
+
+    public int getChunkX() {
+        return (int) Math.floor(x / 16);
+    }
+
+    public int getChunkZ() {
+        return (int) Math.floor(z / 16);
     }
 
     public double distanceBetween(@NotNull Position other) {
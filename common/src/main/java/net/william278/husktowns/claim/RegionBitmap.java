@@ -0,0 +1,135 @@
+package net.william278.husktowns.claim;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy bitmap of claimed chunks in a world, split into tiles of {@code 32x32} chunks (one Minecraft region).
+ * Each tile is a 1024-bit mask, allowing "is this chunk claimed?" to be answered with a single tile probe and a
+ * bit test, without touching the full {@link ClaimIndex}.
+ * <p>
+ * Tiles are never removed once created; writes are synchronized and reads are lock-free. A new tile is added to a
+ * copy of the table of tiles, which is then published, and bits are set through an {@link AtomicLongArray}, so readers
+ * never see a partly written table or tile.
+ */
+final class RegionBitmap {
+
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int TILE_WORDS = (1 << (REGION_SHIFT * 2)) / Long.SIZE;
+    private static final int MIN_CAPACITY = 16;
+    private static final long HASH_SEED = 0x9E3779B97F4A7C15L;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+    private int tileCount;
+
+    /**
+     * Returns whether the chunk at the given coordinates is marked as claimed
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return {@code true} if the chunk is claimed
+     */
+    boolean isSet(int chunkX, int chunkZ) {
+        final AtomicLongArray tile = table.find(Chunk.key(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        if (tile == null) {
+            return false;
+        }
+        final int bit = bit(chunkX, chunkZ);
+        return (tile.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns whether any chunk in the {@code 32x32} region at the given region coordinates has ever been marked
+     *
+     * @param regionX the region x coordinate ({@code chunkX >> 5})
+     * @param regionZ the region z coordinate ({@code chunkZ >> 5})
+     * @return {@code true} if the region has a tile; {@code false} if no chunk in it can be claimed
+     */
+    boolean hasRegion(int regionX, int regionZ) {
+        return table.find(Chunk.key(regionX, regionZ)) != null;
+    }
+
+    synchronized void set(int chunkX, int chunkZ) {
+        final long regionKey = Chunk.key(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        AtomicLongArray tile = table.find(regionKey);
+        if (tile == null) {
+            final int capacity = table.keys.length;
+            final Table table = this.table.copy((tileCount + 1) * 2L > capacity ? capacity << 1 : capacity);
+            tile = new AtomicLongArray(TILE_WORDS);
+            table.put(regionKey, tile);
+            tileCount++;
+            this.table = table;
+        }
+        final int bit = bit(chunkX, chunkZ);
+        tile.set(bit >>> 6, tile.get(bit >>> 6) | (1L << bit));
+    }
+
+    synchronized void clear(int chunkX, int chunkZ) {
+        final AtomicLongArray tile = table.find(Chunk.key(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        if (tile != null) {
+            final int bit = bit(chunkX, chunkZ);
+            tile.set(bit >>> 6, tile.get(bit >>> 6) & ~(1L << bit));
+        }
+    }
+
+    synchronized void clear() {
+        this.table = new Table(MIN_CAPACITY);
+        this.tileCount = 0;
+    }
+
+    // Index of the chunk's bit within its region tile
+    private static int bit(int chunkX, int chunkZ) {
+        return ((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK);
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final AtomicLongArray[] tiles;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.tiles = new AtomicLongArray[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private AtomicLongArray find(long key) {
+            int slot = hash(key);
+            while (tiles[slot] != null) {
+                if (keys[slot] == key) {
+                    return tiles[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private void put(long key, @NotNull AtomicLongArray tile) {
+            int slot = hash(key);
+            while (tiles[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            tiles[slot] = tile;
+        }
+
+        @NotNull
+        private Table copy(int capacity) {
+            final Table copy = new Table(capacity);
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] != null) {
+                    copy.put(keys[i], tiles[i]);
+                }
+            }
+            return copy;
+        }
+
+        private int hash(long key) {
+            final long mixed = key * HASH_SEED;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+    }
+
+}
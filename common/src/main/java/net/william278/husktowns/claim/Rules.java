@@ -1,19 +1,33 @@
 package net.william278.husktowns.claim;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.william278.husktowns.listener.Operation;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Claim rules, defining what players can do in a claim
  */
+@JsonAdapter(Rules.Adapter.class)
 public class Rules {
 
+    private static final long UNCOMPILED = -1L;
+
     @Expose
     private Map<Flag, Boolean> flags;
 
+    // Mask of operations permitted by the enabled flags; computed lazily, as Gson bypasses the constructor
+    private volatile long allowedOperations = UNCOMPILED;
+
     private Rules(@NotNull Map<Flag, Boolean> flags) {
         this.flags = flags;
     }
@@ -45,12 +59,14 @@ public class Rules {
         } else {
             flags.put(flag, value);
         }
+        this.allowedOperations = UNCOMPILED;
     }
 
     /**
      * Get the map of {@link Flag}s to their respective values
      *
      * @return the map of flags to their respective values
+     * @apiNote Use {@link #setFlag(Flag, boolean)} to change flag values, so the compiled rule mask is updated
      */
     @NotNull
     public Map<Flag, Boolean> getFlagMap() {
@@ -66,8 +82,82 @@ public class Rules {
      * {@code true} if no flags have been set to {@code true} that permit the operation; {@code false} otherwise
      */
     public boolean cancelOperation(@NotNull Operation.Type type) {
-        return flags.entrySet().stream()
-                .filter(Map.Entry::getValue)
-                .noneMatch(entry -> entry.getKey().isOperationAllowed(type));
+        return (getAllowedOperations() & Flag.getMask(type)) == 0;
     }
+
+    /**
+     * Get the bitmask of {@link Operation.Type}s permitted by the flags enabled in these rules
+     *
+     * @return the allowed operation bitmask
+     * @see Flag#getMask(Operation.Type...)
+     */
+    public long getAllowedOperations() {
+        long allowed = this.allowedOperations;
+        if (allowed == UNCOMPILED) {
+            allowed = 0L;
+            for (final Map.Entry<Flag, Boolean> entry : flags.entrySet()) {
+                if (entry.getValue()) {
+                    allowed |= entry.getKey().getOperationMask();
+                }
+            }
+            this.allowedOperations = allowed;
+        }
+        return allowed;
+    }
+
+    /**
+     * Streaming Gson adapter for rules, which are serialized for each claim type of every town
+     */
+    static final class Adapter extends TypeAdapter<Rules> {
+
+        private static final Map<String, Flag> FLAGS = new HashMap<>();
+
+        static {
+            for (final Flag flag : Flag.values()) {
+                FLAGS.put(flag.name(), flag);
+            }
+        }
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Rules rules) throws IOException {
+            out.beginObject();
+            if (rules.flags != null) {
+                out.name("flags").beginObject();
+                for (final Map.Entry<Flag, Boolean> flag : rules.flags.entrySet()) {
+                    out.name(flag.getKey().name()).value(flag.getValue());
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Rules read(@NotNull JsonReader in) throws IOException {
+            final Rules rules = new Rules();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("flags") || in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+
+                // Flags that no longer exist are skipped
+                rules.flags = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    final Flag flag = FLAGS.get(in.nextName());
+                    if (flag == null || in.peek() == JsonToken.NULL) {
+                        in.skipValue();
+                        continue;
+                    }
+                    rules.flags.put(flag, in.nextBoolean());
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return rules;
+        }
+    }
+
 }
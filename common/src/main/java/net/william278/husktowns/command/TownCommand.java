@@ -12,6 +12,7 @@ import net.william278.husktowns.town.*;
 import net.william278.husktowns.menu.Overview;
 import net.william278.husktowns.user.CommandUser;
 import net.william278.husktowns.user.OnlineUser;
+import net.william278.husktowns.user.SavedUser;
 import net.william278.husktowns.user.User;
 import net.william278.paginedown.PaginatedList;
 import org.jetbrains.annotations.NotNull;
@@ -163,9 +164,7 @@ public final class TownCommand extends Command {
                         }
 
                         final ClaimWorld claimWorld = optionalClaimWorld.get();
-                        final List<TownClaim> worldClaims = claimWorld.getClaims(plugin).stream()
-                                .filter(townClaim -> townClaim.town().equals(town)).toList();
-                        claims.put(world, worldClaims);
+                        claims.put(world, claimWorld.getTownClaims(town.getId(), plugin));
                     }
 
                     final AtomicInteger column = new AtomicInteger(0);
@@ -190,7 +189,8 @@ public final class TownCommand extends Command {
                 }
                 case CENSUS -> plugin.runAsync(() -> {
                     final TreeMap<Role, List<User>> members = new TreeMap<>(Comparator.comparingInt(Role::getWeight).reversed());
-                    town.getMembers().forEach((uuid, roleWeight) -> plugin.getDatabase().getUser(uuid)
+                    final Map<UUID, SavedUser> savedUsers = plugin.getDatabase().getUsers(town.getMembers().keySet());
+                    town.getMembers().forEach((uuid, roleWeight) -> Optional.ofNullable(savedUsers.get(uuid))
                             .ifPresent(user -> plugin.getRoles().fromWeight(roleWeight)
                                     .ifPresent(role -> members.computeIfAbsent(role, k -> new ArrayList<>()).add(user.user()))));
 
@@ -247,7 +247,7 @@ public final class TownCommand extends Command {
             final SortOption sortOption = parseStringArg(args, 0).flatMap(SortOption::parse).orElse(SortOption.MEMBERS);
             final boolean ascending = parseStringArg(args, 1).map(s -> s.equalsIgnoreCase("ascending")).orElse(false);
             final int page = parseIntArg(args, args.length == 3 ? 2 : 0).orElse(1);
-            final List<Town> towns = sortOption.sort(plugin.getTowns(), ascending);
+            final List<Town> towns = sortOption.sort(new ArrayList<>(plugin.getTowns()), ascending);
             final Locales locales = plugin.getLocales();
             if (towns.isEmpty()) {
                 locales.getLocale("error_no_towns")
@@ -4,6 +4,7 @@ import net.william278.annotaml.YamlFile;
 import net.william278.husktowns.town.Privilege;
 import net.william278.husktowns.town.Role;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -56,6 +57,9 @@ public class Roles {
                     Privilege.SPAWN.id())
     ));
 
+    // Roles compiled from the config maps on first use
+    private transient volatile CompiledRoles compiled;
+
     @SuppressWarnings("unused")
     private Roles() {
     }
@@ -68,13 +72,7 @@ public class Roles {
      */
     @NotNull
     public List<Role> getRoles() throws IllegalStateException {
-        final ArrayList<Role> roleList = new ArrayList<>();
-        for (final Map.Entry<String, List<String>> roleMapping : roles.entrySet()) {
-            final int weight = Integer.parseInt(roleMapping.getKey());
-            final List<Privilege> privileges = roleMapping.getValue().stream().map(Privilege::fromId).toList();
-            roleList.add(Role.of(weight, getName(weight), privileges));
-        }
-        return roleList;
+        return getCompiled().roles();
     }
 
     @NotNull
@@ -87,22 +85,80 @@ public class Roles {
 
     @NotNull
     public Role getMayorRole() {
-        return getRoles().stream()
-                .max(Comparator.comparingInt(Role::getWeight))
-                .orElseThrow();
+        return getCompiled().mayor();
     }
 
     @NotNull
     public Role getDefaultRole() {
-        return getRoles().stream()
-                .min(Comparator.comparingInt(Role::getWeight))
-                .orElseThrow();
+        return getCompiled().defaultRole();
     }
 
     public Optional<Role> fromWeight(int weight) {
-        return getRoles().stream()
-                .filter(role -> role.getWeight() == weight)
-                .findFirst();
+        return Optional.ofNullable(getCompiled().fromWeight(weight));
+    }
+
+    @NotNull
+    private CompiledRoles getCompiled() throws IllegalStateException {
+        CompiledRoles compiled = this.compiled;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = this.compiled;
+                if (compiled == null) {
+                    compiled = compile();
+                    this.compiled = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    // Parse the role maps, resolving each role's inherited privileges from the role one weight below it
+    @NotNull
+    private CompiledRoles compile() throws IllegalStateException {
+        final TreeMap<Integer, List<Privilege>> privileges = new TreeMap<>();
+        for (final Map.Entry<String, List<String>> roleMapping : roles.entrySet()) {
+            privileges.put(Integer.parseInt(roleMapping.getKey()),
+                    roleMapping.getValue().stream().map(Privilege::fromId).toList());
+        }
+        if (privileges.isEmpty()) {
+            throw new IllegalStateException("Invalid roles.yml file: No roles have been defined");
+        }
+
+        final int minWeight = privileges.firstKey();
+        final Role[] byWeight = new Role[privileges.lastKey() - minWeight + 1];
+        privileges.forEach((weight, rolePrivileges) -> byWeight[weight - minWeight] = Role.of(weight,
+                getName(weight), rolePrivileges, weight > minWeight ? byWeight[weight - minWeight - 1] : null));
+
+        final List<Role> roleList = roles.keySet().stream()
+                .map(weight -> byWeight[Integer.parseInt(weight) - minWeight])
+                .toList();
+        return new CompiledRoles(roleList, byWeight, minWeight);
+    }
+
+    /**
+     * Immutable, weight-indexed table of compiled roles
+     *
+     * @param roles     the roles, in config order
+     * @param byWeight  the roles, indexed by weight offset from {@code minWeight}; {@code null} where no role exists
+     * @param minWeight the lowest role weight
+     */
+    private record CompiledRoles(@NotNull List<Role> roles, @NotNull Role[] byWeight, int minWeight) {
+
+        @Nullable
+        private Role fromWeight(int weight) {
+            final int index = weight - minWeight;
+            return index >= 0 && index < byWeight.length ? byWeight[index] : null;
+        }
+
+        @NotNull
+        private Role mayor() {
+            return byWeight[byWeight.length - 1];
+        }
+
+        @NotNull
+        private Role defaultRole() {
+            return byWeight[0];
+        }
     }
 
 }
@@ -68,13 +68,39 @@ public class Settings {
     @YamlKey("database.mysql.connection_pool.timeout")
     private long mySqlConnectionPoolTimeout = 20000;
 
+    @YamlComment("Use the NORMAL SQLite synchronous mode. Faster, but the most recent changes may be lost on a power failure")
+    @YamlKey("database.sqlite.synchronous_normal")
+    private boolean sqLiteSynchronousNormal = false;
+
     @YamlKey("database.table_names")
     private Map<String, String> tableNames = Map.of(
             Database.Table.USER_DATA.name().toLowerCase(), Database.Table.USER_DATA.getDefaultName(),
             Database.Table.TOWN_DATA.name().toLowerCase(), Database.Table.TOWN_DATA.getDefaultName(),
-            Database.Table.CLAIM_DATA.name().toLowerCase(), Database.Table.CLAIM_DATA.getDefaultName()
+            Database.Table.CLAIM_DATA.name().toLowerCase(), Database.Table.CLAIM_DATA.getDefaultName(),
+            Database.Table.CLAIMS.name().toLowerCase(), Database.Table.CLAIMS.getDefaultName(),
+            Database.Table.TOWN_AUDIT.name().toLowerCase(), Database.Table.TOWN_AUDIT.getDefaultName()
     );
 
+    @YamlComment("Buffer town data updates, writing them at most this many milliseconds later. Repeated updates are written once. Set to 0 to write updates immediately")
+    @YamlKey("database.write_behind.max_latency")
+    private long writeBehindMaxLatency = 1000;
+
+    @YamlComment("Journal buffered updates to disk, so they are written on the next startup if the server crashes")
+    @YamlKey("database.write_behind.journal")
+    private boolean writeBehindJournal = true;
+
+    @YamlComment("The maximum number of users to cache in memory, to save looking them up in the database. Set to 0 to disable")
+    @YamlKey("database.user_cache.max_size")
+    private int userCacheSize = 1000;
+
+    @YamlComment("How many seconds to cache users for before reading them from the database again")
+    @YamlKey("database.user_cache.expiry")
+    private long userCacheExpiry = 300;
+
+    @YamlComment("Run database queries on virtual threads, if the server is running on Java 21+")
+    @YamlKey("database.executor.virtual_threads")
+    private boolean databaseVirtualThreads = false;
+
 
     // Cross-server settings
     @YamlComment("Synchronise towns across a proxy network. Requires MySQL. Don't forget to update server.yml")
@@ -241,11 +267,35 @@ public class Settings {
         return mySqlConnectionPoolTimeout;
     }
 
+    public boolean doSqLiteSynchronousNormal() {
+        return sqLiteSynchronousNormal;
+    }
+
     @NotNull
     public String getTableName(@NotNull Database.Table tableName) {
         return Optional.ofNullable(tableNames.get(tableName.name().toLowerCase())).orElse(tableName.getDefaultName());
     }
 
+    public long getWriteBehindMaxLatency() {
+        return writeBehindMaxLatency;
+    }
+
+    public boolean doWriteBehindJournal() {
+        return writeBehindJournal;
+    }
+
+    public int getUserCacheSize() {
+        return userCacheSize;
+    }
+
+    public long getUserCacheExpiry() {
+        return userCacheExpiry;
+    }
+
+    public boolean doDatabaseVirtualThreads() {
+        return databaseVirtualThreads;
+    }
+
     public boolean doCrossServer() {
         return crossServer;
     }
@@ -0,0 +1,183 @@
+package net.william278.husktowns.database;
+
+import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.town.Town;
+import net.william278.husktowns.user.Preferences;
+import net.william278.husktowns.user.SavedUser;
+import net.william278.husktowns.user.User;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Non-blocking access to the {@link Database}, running queries on a dedicated executor and returning
+ * {@link CompletableFuture}s of their results
+ * <p>
+ * The executor has as many threads as the database can serve queries at once, so queries queue here rather than for a
+ * connection. Results complete on the executor; continue on the server thread with
+ * {@code thenAcceptAsync(..., plugin::runSync)} where needed.
+ */
+public final class AsyncDatabase {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final HuskTowns plugin;
+    private final Database database;
+    private final ThreadPoolExecutor executor;
+
+    private AsyncDatabase(@NotNull HuskTowns plugin, @NotNull Database database, int threads, boolean virtualThreads) {
+        this.plugin = plugin;
+        this.database = database;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                getThreadFactory(plugin, virtualThreads));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Create an executor for queries to a database, sized to the number of queries the database can serve at once
+     *
+     * @param plugin   the plugin instance
+     * @param database the database to query
+     * @return the async database
+     */
+    @NotNull
+    public static AsyncDatabase of(@NotNull HuskTowns plugin, @NotNull Database database) {
+        final int threads = switch (plugin.getSettings().getDatabaseType()) {
+            case MYSQL -> Math.max(1, plugin.getSettings().getMySqlConnectionPoolSize());
+            // SQLite has one read connection, plus the writer thread that writes are handed to
+            case SQLITE -> 2;
+        };
+        return new AsyncDatabase(plugin, database, threads, plugin.getSettings().doDatabaseVirtualThreads());
+    }
+
+    /**
+     * Query the database on the executor
+     *
+     * @param query the query to make
+     * @param <T>   the type of the result of the query
+     * @return a future of the result of the query
+     */
+    @NotNull
+    public <T> CompletableFuture<T> supply(@NotNull Function<Database, T> query) {
+        final CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> query.apply(database), executor);
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                plugin.log(Level.SEVERE, "An exception occurred making a database query", throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Update the database on the executor
+     *
+     * @param update the update to make
+     * @return a future completed once the update has been made
+     */
+    @NotNull
+    public CompletableFuture<Void> run(@NotNull Consumer<Database> update) {
+        return supply(database -> {
+            update.accept(database);
+            return null;
+        });
+    }
+
+    @NotNull
+    public CompletableFuture<Optional<SavedUser>> getUser(@NotNull UUID uuid) {
+        return supply(database -> database.getUser(uuid));
+    }
+
+    @NotNull
+    public CompletableFuture<Optional<SavedUser>> getUser(@NotNull String username) {
+        return supply(database -> database.getUser(username));
+    }
+
+    @NotNull
+    public CompletableFuture<Map<UUID, SavedUser>> getUsers(@NotNull Collection<UUID> uuids) {
+        return supply(database -> database.getUsers(uuids));
+    }
+
+    @NotNull
+    public CompletableFuture<Void> updateUser(@NotNull User user, @NotNull Preferences preferences) {
+        return run(database -> database.updateUser(user, preferences));
+    }
+
+    @NotNull
+    public CompletableFuture<Optional<Town>> getTown(int townId) {
+        return supply(database -> database.getTown(townId));
+    }
+
+    /**
+     * Get the number of queries waiting for a thread
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the number of queries currently being made
+     *
+     * @return the number of active queries
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Get the number of queries made since the executor was created
+     *
+     * @return the number of completed queries
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Stop accepting queries, and wait for those already queued to finish
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.log(Level.WARNING, "Timed out waiting for " + (getQueueDepth() + getActiveCount())
+                                          + " database queries to finish");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Virtual threads are only available on Java 21+, so are created reflectively, falling back to platform threads
+    @NotNull
+    private static ThreadFactory getThreadFactory(@NotNull HuskTowns plugin, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderClass.getMethod("name", String.class, long.class).invoke(builder, "HuskTowns-Database-", 1L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                plugin.log(Level.WARNING, "Virtual threads require Java 21+; using platform threads for the database");
+            }
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, "HuskTowns-Database-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,228 @@
+package net.william278.husktowns.database;
+
+import com.google.gson.JsonObject;
+import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.claim.*;
+import net.william278.husktowns.town.Town;
+import net.william278.husktowns.user.Preferences;
+import net.william278.husktowns.user.SavedUser;
+import net.william278.husktowns.user.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Database} that caches users read from and written to another database, so repeated lookups of the same
+ * user by UUID or name don't each query it
+ * <p>
+ * Users who join are always read from the database, as another server may have updated them.
+ */
+public final class CachingDatabase extends Database {
+
+    private final Database database;
+    private final UserCache users;
+
+    public CachingDatabase(@NotNull HuskTowns plugin, @NotNull Database database) {
+        super(plugin);
+        this.database = database;
+        this.users = new UserCache(plugin.getSettings().getUserCacheSize(),
+                plugin.getSettings().getUserCacheExpiry());
+    }
+
+    @Override
+    public void initialize() throws RuntimeException {
+        database.initialize();
+    }
+
+    @Override
+    public Optional<SavedUser> getUser(@NotNull UUID uuid) {
+        final SavedUser cached = users.get(uuid);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final Optional<SavedUser> user = database.getUser(uuid);
+        user.ifPresent(users::put);
+        return user;
+    }
+
+    @Override
+    public Optional<SavedUser> getUser(@NotNull String username) {
+        final SavedUser cached = users.get(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final Optional<SavedUser> user = database.getUser(username);
+        user.ifPresent(users::put);
+        return user;
+    }
+
+    @Override
+    @NotNull
+    public Map<UUID, SavedUser> getUsers(@NotNull Collection<UUID> uuids) {
+        final Map<UUID, SavedUser> found = new HashMap<>();
+        final List<UUID> uncached = new ArrayList<>();
+        for (final UUID uuid : uuids) {
+            final SavedUser cached = users.get(uuid);
+            if (cached != null) {
+                found.put(uuid, cached);
+            } else {
+                uncached.add(uuid);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            final Map<UUID, SavedUser> fetched = database.getUsers(uncached);
+            fetched.values().forEach(users::put);
+            found.putAll(fetched);
+        }
+        return found;
+    }
+
+    // Users are copied before they are cached, as online users hold a reference to their player
+    @Override
+    public void createUser(@NotNull User user, @NotNull Preferences preferences) {
+        database.createUser(user, preferences);
+        users.put(new SavedUser(User.of(user.getUuid(), user.getUsername()), preferences));
+    }
+
+    @Override
+    public void updateUser(@NotNull User user, @NotNull Preferences preferences) {
+        database.updateUser(user, preferences);
+        users.put(new SavedUser(User.of(user.getUuid(), user.getUsername()), preferences));
+    }
+
+    @Override
+    public void invalidateUser(@NotNull UUID uuid) {
+        users.remove(uuid);
+        database.invalidateUser(uuid);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        users.clear();
+        database.deleteAllUsers();
+    }
+
+    @Override
+    public Optional<Town> getTown(int townId) {
+        return database.getTown(townId);
+    }
+
+    @Override
+    @NotNull
+    public List<Town> getAllTowns() {
+        return database.getAllTowns();
+    }
+
+    @Override
+    @NotNull
+    public Town createTown(@NotNull String name, @NotNull User creator) {
+        return database.createTown(name, creator);
+    }
+
+    @Override
+    @NotNull
+    public UpdateResult updateTown(@NotNull Town town, @Nullable JsonObject changes) {
+        return database.updateTown(town, changes);
+    }
+
+    @Override
+    public void updateTown(@NotNull Town town, @Nullable JsonObject changes,
+                           @NotNull BiConsumer<UpdateResult, JsonObject> callback) {
+        database.updateTown(town, changes, callback);
+    }
+
+    @Override
+    public int getArchivedActionCount(int townId, @NotNull OffsetDateTime before) {
+        return database.getArchivedActionCount(townId, before);
+    }
+
+    @Override
+    @NotNull
+    public List<Map.Entry<OffsetDateTime, Action>> getArchivedActions(int townId, @NotNull OffsetDateTime before,
+                                                                       int offset, int limit) {
+        return database.getArchivedActions(townId, before, offset, limit);
+    }
+
+    @Override
+    public void deleteTown(int townId) {
+        database.deleteTown(townId);
+    }
+
+    @Override
+    public void deleteAllTowns() {
+        database.deleteAllTowns();
+    }
+
+    @Override
+    @NotNull
+    public Map<World, ClaimWorld> getClaimWorlds(@NotNull String server) {
+        return database.getClaimWorlds(server);
+    }
+
+    @Override
+    @NotNull
+    public Map<ServerWorld, ClaimWorld> getAllClaimWorlds() {
+        return database.getAllClaimWorlds();
+    }
+
+    @Override
+    @NotNull
+    public ClaimWorld createClaimWorld(@NotNull World world) {
+        return database.createClaimWorld(world);
+    }
+
+    @Override
+    public void updateClaimWorld(@NotNull ClaimWorld claimWorld) {
+        database.updateClaimWorld(claimWorld);
+    }
+
+    @Override
+    public void insertClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        database.insertClaim(claimWorld, claim);
+    }
+
+    @Override
+    public void updateClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        database.updateClaim(claimWorld, claim);
+    }
+
+    @Override
+    public void deleteClaim(@NotNull ClaimWorld claimWorld, @NotNull Chunk chunk) {
+        database.deleteClaim(claimWorld, chunk);
+    }
+
+    @Override
+    public void deleteTownClaims(int townId) {
+        database.deleteTownClaims(townId);
+    }
+
+    @Override
+    public void flush() {
+        database.flush();
+    }
+
+    @Override
+    public void close() {
+        users.clear();
+        database.close();
+    }
+
+    @Override
+    public boolean hasLoaded() {
+        return database.hasLoaded();
+    }
+
+    /**
+     * Get the number of users currently cached
+     *
+     * @return the number of cached users
+     */
+    public int getCachedUserCount() {
+        return users.size();
+    }
+
+}
@@ -1,34 +1,74 @@
 package net.william278.husktowns.database;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.claim.Chunk;
+import net.william278.husktowns.claim.Claim;
 import net.william278.husktowns.claim.ClaimWorld;
 import net.william278.husktowns.claim.ServerWorld;
+import net.william278.husktowns.claim.TownClaim;
 import net.william278.husktowns.claim.World;
 import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.Preferences;
 import net.william278.husktowns.user.SavedUser;
 import net.william278.husktowns.user.User;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class Database {
 
+    private static final java.lang.reflect.Type PLOT_MEMBERS_TYPE = new TypeToken<Map<UUID, Boolean>>() {
+    }.getType();
+    // Users are looked up in chunks of at most this many, to keep queries within bound parameter limits
+    protected static final int USER_BATCH_SIZE = 500;
+    // Towns are parsed in parallel when loading at least this many, on at most this many threads
+    private static final int PARALLEL_PARSE_THRESHOLD = 64;
+    private static final int PARSE_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
     protected final HuskTowns plugin;
     private final String schemaFile;
+    // Whether queries on the server thread are rejected rather than logged, as in tests and on development servers
+    private static final boolean STRICT_THREADING = Boolean.getBoolean("husktowns.strictThreading");
+    private final LongAdder primaryThreadQueries = new LongAdder();
     private boolean loaded;
+    // Whether towns can be updated by patching their stored data with the changed fields
+    private volatile boolean patchTowns = true;
 
     protected Database(@NotNull HuskTowns plugin, @NotNull String schemaFile) {
         this.plugin = plugin;
         this.schemaFile = "database/" + schemaFile;
     }
 
+    // Used by databases that wrap another database, and so have no schema of their own
+    Database(@NotNull HuskTowns plugin) {
+        this.plugin = plugin;
+        this.schemaFile = null;
+    }
+
     /**
      * Get the schema statements from the schema file
      *
@@ -87,6 +127,28 @@ public abstract class Database {
      */
     public abstract Optional<SavedUser> getUser(@NotNull String username);
 
+    /**
+     * Get users by their UUIDs, in as few queries as possible
+     *
+     * @param uuids The UUIDs of the users
+     * @return A map of UUIDs to the users that exist
+     */
+    @NotNull
+    public abstract Map<UUID, SavedUser> getUsers(@NotNull Collection<UUID> uuids);
+
+    /**
+     * Get the names of users by their UUIDs, in as few queries as possible
+     *
+     * @param uuids The UUIDs of the users
+     * @return A map of UUIDs to the names of the users that exist
+     */
+    @NotNull
+    public final Map<UUID, String> getUsernames(@NotNull Collection<UUID> uuids) {
+        final Map<UUID, String> usernames = new HashMap<>();
+        getUsers(uuids).forEach((uuid, user) -> usernames.put(uuid, user.user().getUsername()));
+        return usernames;
+    }
+
     /**
      * Add a user to the database
      *
@@ -103,6 +165,14 @@ public abstract class Database {
      */
     public abstract void updateUser(@NotNull User user, @NotNull Preferences preferences);
 
+    /**
+     * Discard any cached copy of a user, so they are next read from the database
+     *
+     * @param uuid The UUID of the user
+     */
+    public void invalidateUser(@NotNull UUID uuid) {
+    }
+
     /**
      * Delete all users from the database
      */
@@ -134,11 +204,91 @@ public abstract class Database {
     public abstract Town createTown(@NotNull String name, @NotNull User creator);
 
     /**
-     * Update a town's name in the database
+     * Update a town in the database, if it has not been updated since the {@link Town#getVersion() version} of the
+     * town was read. If it is written, the version of the town is incremented
+     * <p>
+     * Only the fields of the town that have {@link Town#takeChanges(Gson) changed} are written, where possible
      *
      * @param town The town to update
+     * @return whether the town was written, or was not as it has since been updated by another server or the update
+     * failed
+     */
+    @NotNull
+    public final UpdateResult updateTown(@NotNull Town town) {
+        return updateTown(town, town.takeChanges(plugin.getGson()).orElse(null));
+    }
+
+    /**
+     * Update a town in the database, if it has not been updated since the {@link Town#getVersion() version} of the
+     * town was read. If it is written, the version of the town is incremented
+     *
+     * @param town    The town to update
+     * @param changes The changes {@link Town#takeChanges(Gson) taken} from the town, as a JSON merge patch of its
+     *                stored data; or {@code null} to write the whole town
+     * @return whether the town was written, or was not as it has since been updated by another server or the update
+     * failed. If the update failed, the town is written in full next time, and its archivable actions are kept
+     */
+    @NotNull
+    public abstract UpdateResult updateTown(@NotNull Town town, @Nullable JsonObject changes);
+
+    /**
+     * Update a town in the database, then run a callback once the update has been written or rejected
+     *
+     * @param town     The town to update
+     * @param changes  The changes taken from the town, or {@code null} to write the whole town
+     * @param callback The callback to run, accepting the result of the update, and the changes that were written; or
+     *                 {@code null} if the whole town was written
+     * @see #updateTown(Town, JsonObject)
+     */
+    public void updateTown(@NotNull Town town, @Nullable JsonObject changes,
+                           @NotNull BiConsumer<UpdateResult, JsonObject> callback) {
+        callback.accept(updateTown(town, changes), changes);
+    }
+
+    /**
+     * Check whether to write the changes taken from a town as a JSON merge patch, rather than writing the whole town
+     *
+     * @param changes The changes taken from the town, if any
+     * @return {@code true} if the changes should be patched into the stored town
+     */
+    protected final boolean canPatchTown(@Nullable JsonObject changes) {
+        return changes != null && patchTowns;
+    }
+
+    /**
+     * Write towns in full from now on, as the database could not apply a JSON merge patch to a stored town
+     *
+     * @param e The exception thrown patching the town
+     */
+    protected final void disableTownPatches(@NotNull SQLException e) {
+        if (patchTowns) {
+            patchTowns = false;
+            plugin.log(Level.WARNING, "The database does not support JSON merge patches, so towns will be written "
+                                      + "in full", e);
+        }
+    }
+
+    /**
+     * Get the number of actions archived to a town's audit log that occurred before a point in time
+     *
+     * @param townId The ID of the town
+     * @param before Only count actions that occurred before this time
+     * @return The number of archived actions
+     */
+    public abstract int getArchivedActionCount(int townId, @NotNull OffsetDateTime before);
+
+    /**
+     * Get a page of the actions archived to a town's audit log, ordered from newest to oldest
+     *
+     * @param townId The ID of the town
+     * @param before Only get actions that occurred before this time
+     * @param offset The number of actions to skip
+     * @param limit  The maximum number of actions to get
+     * @return The archived actions
      */
-    public abstract void updateTown(@NotNull Town town);
+    @NotNull
+    public abstract List<Map.Entry<OffsetDateTime, Action>> getArchivedActions(int townId, @NotNull OffsetDateTime before,
+                                                                                int offset, int limit);
 
     /**
      * Delete a town from the database
@@ -177,12 +327,325 @@ public abstract class Database {
     public abstract ClaimWorld createClaimWorld(@NotNull World world);
 
     /**
-     * Update a claim world in the database
+     * Replace all the claims of a claim world in the database. Prefer {@link #insertClaim}, {@link #updateClaim} and
+     * {@link #deleteClaim} when only individual claims have changed.
      *
      * @param claimWorld The claim world to update
      */
     public abstract void updateClaimWorld(@NotNull ClaimWorld claimWorld);
 
+    /**
+     * Add a claim to a claim world in the database
+     *
+     * @param claimWorld The claim world the claim is in
+     * @param claim      The claim to add
+     */
+    public abstract void insertClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim);
+
+    /**
+     * Update the type and plot members of a claim in the database
+     *
+     * @param claimWorld The claim world the claim is in
+     * @param claim      The claim to update
+     */
+    public abstract void updateClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim);
+
+    /**
+     * Delete the claim at a chunk in a claim world from the database
+     *
+     * @param claimWorld The claim world the claim is in
+     * @param chunk      The chunk of the claim to delete
+     */
+    public abstract void deleteClaim(@NotNull ClaimWorld claimWorld, @NotNull Chunk chunk);
+
+    /**
+     * Delete all claims made by a town, across every claim world, from the database
+     *
+     * @param townId The ID of the town to delete the claims of
+     */
+    public abstract void deleteTownClaims(int townId);
+
+    /**
+     * Split UUIDs into chunks small enough to look up with one {@code IN (...)} query each
+     *
+     * @param uuids The UUIDs to split
+     * @return The distinct UUIDs, in chunks of at most {@link #USER_BATCH_SIZE}
+     */
+    @NotNull
+    protected static List<List<UUID>> getUserBatches(@NotNull Collection<UUID> uuids) {
+        final List<UUID> distinct = List.copyOf(new LinkedHashSet<>(uuids));
+        final List<List<UUID>> batches = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += USER_BATCH_SIZE) {
+            batches.add(distinct.subList(i, Math.min(distinct.size(), i + USER_BATCH_SIZE)));
+        }
+        return batches;
+    }
+
+    /**
+     * Get a list of statement parameter placeholders, for an {@code IN (...)} clause
+     *
+     * @param count The number of placeholders
+     * @return The placeholders, separated by commas
+     */
+    @NotNull
+    protected static String getPlaceholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Read the users in rows of the user data table
+     *
+     * @param userRows Rows of the user data table, with {@code uuid}, {@code username} and {@code preferences} columns
+     * @param users    The map to put the users read into, keyed by UUID
+     * @throws SQLException if a row could not be read
+     */
+    protected final void readUsers(@NotNull ResultSet userRows, @NotNull Map<UUID, SavedUser> users) throws SQLException {
+        while (userRows.next()) {
+            final UUID uuid = UUID.fromString(userRows.getString("uuid"));
+            final String preferences = new String(userRows.getBytes("preferences"), StandardCharsets.UTF_8);
+            users.put(uuid, new SavedUser(User.of(uuid, userRows.getString("username")),
+                    plugin.getGson().fromJson(preferences, Preferences.class)));
+        }
+    }
+
+    /**
+     * Read the raw data of rows of the town data table, so it can be {@link #parseTowns parsed} once the result set
+     * has been closed
+     *
+     * @param townRows Rows of the town data table, with {@code id}, {@code data} and {@code version} columns
+     * @return A map of town IDs to serialized town data, in the order the rows were read
+     * @throws SQLException if a row could not be read
+     */
+    @NotNull
+    protected final Map<Integer, TownData> readTownData(@NotNull ResultSet townRows) throws SQLException {
+        final Map<Integer, TownData> townData = new LinkedHashMap<>();
+        while (townRows.next()) {
+            townData.put(townRows.getInt("id"), new TownData(townRows.getBytes("data"), townRows.getLong("version")));
+        }
+        return townData;
+    }
+
+    /**
+     * Parse serialized town data, in parallel on a bounded pool if there is enough of it
+     *
+     * @param townData A map of town IDs to serialized town data
+     * @return The parsed towns, in the order of the map
+     * @throws JsonParseException if the data of a town could not be parsed
+     */
+    @NotNull
+    protected final List<Town> parseTowns(@NotNull Map<Integer, TownData> townData) throws JsonParseException {
+        final List<Map.Entry<Integer, TownData>> rows = new ArrayList<>(townData.entrySet());
+        if (rows.size() < PARALLEL_PARSE_THRESHOLD || PARSE_PARALLELISM == 1) {
+            return rows.stream().map(this::parseTown).filter(Objects::nonNull).toList();
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(PARSE_PARALLELISM);
+        try {
+            return pool.submit(() -> rows.parallelStream().map(this::parseTown).filter(Objects::nonNull).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonParseException("Interrupted while parsing towns", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JsonParseException parseException) {
+                throw parseException;
+            }
+            throw new JsonParseException("Failed to parse towns", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Streams the town from its raw bytes, rather than copying them to a string first
+    @Nullable
+    private Town parseTown(@NotNull Map.Entry<Integer, TownData> row) {
+        final JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(row.getValue().data()), StandardCharsets.UTF_8));
+        final Town town = plugin.getGson().fromJson(reader, Town.class);
+        if (town != null) {
+            town.setId(row.getKey());
+            town.setVersion(row.getValue().version());
+            town.clearChanges();
+        }
+        return town;
+    }
+
+    /**
+     * The raw data of a row of the town data table
+     *
+     * @param data    The serialized town
+     * @param version The version of the row
+     */
+    protected record TownData(byte[] data, long version) {
+    }
+
+    /**
+     * Read rows of the claims table into the claim worlds they belong to
+     *
+     * @param worldIds  The IDs of the claim worlds to read; rows in other claim worlds are skipped
+     * @param claimRows Rows of the claims table
+     * @return A map of claim world IDs to the claim worlds read
+     * @throws SQLException if a row could not be read
+     */
+    @NotNull
+    protected final Map<Integer, ClaimWorld> readClaimWorlds(@NotNull Collection<Integer> worldIds,
+                                                             @NotNull ResultSet claimRows) throws SQLException {
+        final Map<Integer, Map<Integer, List<Claim>>> townClaims = new HashMap<>();
+        final Map<Integer, List<Claim>> adminClaims = new HashMap<>();
+        worldIds.forEach(id -> {
+            townClaims.put(id, new HashMap<>());
+            adminClaims.put(id, new ArrayList<>());
+        });
+        while (claimRows.next()) {
+            final Map<Integer, List<Claim>> worldClaims = townClaims.get(claimRows.getInt("world_id"));
+            if (worldClaims == null) {
+                continue;
+            }
+            final int townId = claimRows.getInt("town_id");
+            final Claim claim = readClaim(claimRows);
+            if (townId == 0) {
+                adminClaims.get(claimRows.getInt("world_id")).add(claim);
+            } else {
+                worldClaims.computeIfAbsent(townId, id -> new ArrayList<>()).add(claim);
+            }
+        }
+
+        final Map<Integer, ClaimWorld> claimWorlds = new HashMap<>();
+        worldIds.forEach(id -> claimWorlds.put(id, ClaimWorld.of(id, townClaims.get(id), adminClaims.get(id))));
+        return claimWorlds;
+    }
+
+    @NotNull
+    private Claim readClaim(@NotNull ResultSet resultSet) throws SQLException {
+        final Chunk chunk = Chunk.at(resultSet.getInt("chunk_x"), resultSet.getInt("chunk_z"));
+        final Claim.Type type = Claim.Type.fromId(resultSet.getString("type")).orElse(Claim.Type.CLAIM);
+        final byte[] plotMembers = resultSet.getBytes("plot_members");
+        if (plotMembers == null) {
+            return Claim.of(chunk, type, null);
+        }
+        return Claim.of(chunk, type, plugin.getGson().fromJson(
+                new String(plotMembers, StandardCharsets.UTF_8), PLOT_MEMBERS_TYPE));
+    }
+
+    /**
+     * Set the parameters of a statement writing a row of the claims table, in the order {@code world_id, chunk_x,
+     * chunk_z, town_id, type, plot_members}
+     *
+     * @param statement The statement to set the parameters of
+     * @param worldId   The ID of the claim world the claim is in
+     * @param townId    The ID of the town that owns the claim, or {@code 0} for admin claims
+     * @param claim     The claim
+     * @throws SQLException if the parameters could not be set
+     */
+    protected final void setClaimParameters(@NotNull PreparedStatement statement, int worldId, int townId,
+                                            @NotNull Claim claim) throws SQLException {
+        statement.setInt(1, worldId);
+        statement.setInt(2, claim.getChunk().getX());
+        statement.setInt(3, claim.getChunk().getZ());
+        statement.setInt(4, townId);
+        statement.setString(5, claim.getType().name());
+        statement.setBytes(6, getPlotMemberData(claim));
+    }
+
+    /**
+     * Get the serialized plot members of a claim, for the {@code plot_members} column of the claims table
+     *
+     * @param claim The claim
+     * @return The serialized plot members, or {@code null} if the claim has none
+     */
+    protected final byte[] getPlotMemberData(@NotNull Claim claim) {
+        final Map<UUID, Boolean> plotMembers = claim.getPlotMemberMap();
+        if (plotMembers.isEmpty()) {
+            return null;
+        }
+        return plugin.getGson().toJson(plotMembers, PLOT_MEMBERS_TYPE).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the claims of a claim world stored in the legacy {@code claims} blob column of the claim worlds table,
+     * for migration to the claims table
+     *
+     * @param data The contents of the blob column
+     * @return The claims, keyed by town ID; admin claims are keyed by {@code 0}
+     */
+    @NotNull
+    protected final Map<Integer, List<Claim>> readLegacyClaims(byte[] data) {
+        final Map<Integer, List<Claim>> claims = new HashMap<>();
+        // Data that is not JSON was written by versions that encoded it, which only wrote empty claim worlds
+        if (data == null || data.length == 0 || data[0] != '{') {
+            return claims;
+        }
+        final ClaimWorld legacy = plugin.getGson().fromJson(new String(data, StandardCharsets.UTF_8), ClaimWorld.class);
+        if (legacy == null) {
+            return claims;
+        }
+        if (legacy.getClaims() != null) {
+            claims.putAll(legacy.getClaims());
+        }
+        if (legacy.getAdminClaims() != null && !legacy.getAdminClaims().isEmpty()) {
+            claims.put(0, legacy.getAdminClaims());
+        }
+        return claims;
+    }
+
+    /**
+     * Get the contents of the legacy {@code claims} blob column for a claim world; claims are now stored in the
+     * claims table, so this is always an empty claim world
+     *
+     * @return The serialized empty claim world
+     */
+    protected final byte[] getEmptyClaimData() {
+        return plugin.getGson().toJson(ClaimWorld.of(0, new HashMap<>(), new ArrayList<>()))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Set the parameters of a statement inserting an action into the town audit table
+     *
+     * @param statement The statement, with parameters in the order {@code town_id, timestamp, utc_offset, data}
+     * @param townId    The ID of the town the action was taken in
+     * @param action    The action, mapped from when it occurred
+     * @throws SQLException if the parameters could not be set
+     */
+    protected final void setAuditParameters(@NotNull PreparedStatement statement, int townId,
+                                            @NotNull Map.Entry<OffsetDateTime, Action> action) throws SQLException {
+        statement.setInt(1, townId);
+        statement.setLong(2, getAuditTimestamp(action.getKey()));
+        statement.setInt(3, action.getKey().getOffset().getTotalSeconds());
+        statement.setBytes(4, plugin.getGson().toJson(action.getValue()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a row of the town audit table into an action
+     *
+     * @param resultSet The result set, positioned at a row with {@code timestamp}, {@code utc_offset} and {@code data}
+     *                  columns
+     * @return The action, mapped from when it occurred
+     * @throws SQLException if the row could not be read
+     */
+    @NotNull
+    protected final Map.Entry<OffsetDateTime, Action> readAuditAction(@NotNull ResultSet resultSet) throws SQLException {
+        // Actions are read back at the offset they were logged at, as they were shown before being archived
+        final long timestamp = resultSet.getLong("timestamp");
+        final OffsetDateTime time = Instant.ofEpochSecond(Math.floorDiv(timestamp, 1_000_000L),
+                        Math.floorMod(timestamp, 1_000_000L) * 1000L)
+                .atOffset(ZoneOffset.ofTotalSeconds(resultSet.getInt("utc_offset")));
+        final Action action = plugin.getGson().fromJson(new String(resultSet.getBytes("data"),
+                StandardCharsets.UTF_8), Action.class);
+        return Map.entry(time, action);
+    }
+
+    // Audit timestamps are stored as microseconds since the epoch, alongside the offset from UTC in seconds
+    protected static long getAuditTimestamp(@NotNull OffsetDateTime time) {
+        final Instant instant = time.toInstant();
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1000;
+    }
+
+    /**
+     * Write any buffered changes to the database
+     */
+    public void flush() {
+    }
+
     /**
      * Close the database connection
      */
@@ -206,6 +669,35 @@ public abstract class Database {
         this.loaded = loaded;
     }
 
+    /**
+     * Record a query made on the server thread once the plugin has loaded, which should have been made through the
+     * {@link AsyncDatabase} instead. The first such query is logged with its stack trace
+     *
+     * @throws IllegalStateException if the {@code husktowns.strictThreading} system property is set to {@code true}
+     */
+    protected final void checkNotPrimaryThread() throws IllegalStateException {
+        if (!plugin.isLoaded() || !plugin.isPrimaryThread()) {
+            return;
+        }
+        primaryThreadQueries.increment();
+        if (STRICT_THREADING) {
+            throw new IllegalStateException("Database query on the server thread");
+        }
+        if (primaryThreadQueries.sum() == 1) {
+            plugin.log(Level.WARNING, "A database query was made on the server thread, which may cause lag",
+                    new IllegalStateException("Database query on the server thread"));
+        }
+    }
+
+    /**
+     * Get the number of queries made on the server thread once the plugin had loaded
+     *
+     * @return the number of server thread queries
+     */
+    public long getPrimaryThreadQueryCount() {
+        return primaryThreadQueries.sum();
+    }
+
     /**
      * Identifies types of databases
      */
@@ -225,13 +717,33 @@ public abstract class Database {
         }
     }
 
+    /**
+     * The result of updating a town
+     */
+    public enum UpdateResult {
+        /**
+         * The town was written
+         */
+        WRITTEN,
+        /**
+         * The town was not written, as another server updated it since it was read
+         */
+        CONFLICT,
+        /**
+         * The town was not written, as the update failed
+         */
+        FAILED
+    }
+
     /**
      * Represents the names of tables in the database
      */
     public enum Table {
         USER_DATA("husktowns_users"),
         TOWN_DATA("husktowns_town_data"),
-        CLAIM_DATA("husktowns_claim_worlds");
+        CLAIM_DATA("husktowns_claim_worlds"),
+        CLAIMS("husktowns_claims"),
+        TOWN_AUDIT("husktowns_town_audit");
         @NotNull
         private final String defaultName;
 
@@ -1,20 +1,25 @@
 package net.william278.husktowns.database;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.zaxxer.hikari.HikariDataSource;
 import net.william278.husktowns.HuskTowns;
-import net.william278.husktowns.claim.ClaimWorld;
-import net.william278.husktowns.claim.ServerWorld;
-import net.william278.husktowns.claim.World;
+import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.claim.*;
 import net.william278.husktowns.config.Settings;
 import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.Preferences;
 import net.william278.husktowns.user.SavedUser;
 import net.william278.husktowns.user.User;
+import net.william278.husktowns.util.JsonMergePatch;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.logging.Level;
 
@@ -31,6 +36,7 @@ public final class MySqlDatabase extends Database {
     private HikariDataSource dataSource;
 
     private Connection getConnection() throws SQLException {
+        checkNotPrimaryThread();
         return dataSource.getConnection();
     }
 
@@ -91,6 +97,177 @@ public final class MySqlDatabase extends Database {
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to create MySQL database tables");
             setLoaded(false);
+            return;
+        }
+
+        // Migrate claims from the claim world data of older versions
+        try {
+            addClaimsMigratedColumn();
+            migrateLegacyClaims();
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to migrate claims to the claims table", e);
+        }
+        try {
+            createUsernameIndex();
+        } catch (SQLException e) {
+            plugin.log(Level.WARNING, "Failed to index the usernames of the users table", e);
+        }
+        try {
+            addTownVersionColumn();
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to add the version column to the towns table", e);
+        }
+        try {
+            upgradeTownAuditTable();
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to upgrade the town audit table", e);
+        }
+    }
+
+    // Index usernames in user tables created by older versions, which were only indexed by UUID
+    private void createUsernameIndex() throws SQLException {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT COUNT(*)
+                    FROM `information_schema`.`statistics`
+                    WHERE `table_schema` = DATABASE() AND `table_name` = ? AND `index_name` = 'username'""")) {
+                statement.setString(1, format("%user_data%"));
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next() && resultSet.getInt(1) > 0) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(format("CREATE INDEX `username` ON `%user_data%` (`username`)"));
+            }
+        }
+    }
+
+    // Version towns in town tables created by older versions
+    private void addTownVersionColumn() throws SQLException {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT COUNT(*)
+                    FROM `information_schema`.`columns`
+                    WHERE `table_schema` = DATABASE() AND `table_name` = ? AND `column_name` = 'version'""")) {
+                statement.setString(1, format("%town_data%"));
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next() && resultSet.getInt(1) > 0) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(format("ALTER TABLE `%town_data%` ADD COLUMN `version` bigint NOT NULL DEFAULT 0"));
+            }
+        }
+    }
+
+    // Record the offset of actions archived to town audit tables created by older versions, and stop the deletion of
+    // a town from deleting its archived actions
+    private void upgradeTownAuditTable() throws SQLException {
+        try (Connection connection = getConnection()) {
+            final List<String> foreignKeys = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT `constraint_name`
+                    FROM `information_schema`.`referential_constraints`
+                    WHERE `constraint_schema` = DATABASE() AND `table_name` = ?""")) {
+                statement.setString(1, format("%town_audit%"));
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    foreignKeys.add(resultSet.getString(1));
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (final String foreignKey : foreignKeys) {
+                    statement.execute(format("ALTER TABLE `%town_audit%` DROP FOREIGN KEY `" + foreignKey + "`"));
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT COUNT(*)
+                    FROM `information_schema`.`columns`
+                    WHERE `table_schema` = DATABASE() AND `table_name` = ? AND `column_name` = 'utc_offset'""")) {
+                statement.setString(1, format("%town_audit%"));
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next() && resultSet.getInt(1) > 0) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(format("""
+                        ALTER TABLE `%town_audit%`
+                        ADD COLUMN `utc_offset` int NOT NULL DEFAULT 0 AFTER `timestamp`"""));
+            }
+        }
+    }
+
+    // Mark the claim worlds of older versions as not yet having their claims migrated to the claims table
+    private void addClaimsMigratedColumn() throws SQLException {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    SELECT COUNT(*)
+                    FROM `information_schema`.`columns`
+                    WHERE `table_schema` = DATABASE() AND `table_name` = ? AND `column_name` = 'claims_migrated'""")) {
+                statement.setString(1, format("%claim_data%"));
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next() && resultSet.getInt(1) > 0) {
+                    return;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(format("""
+                        ALTER TABLE `%claim_data%`
+                        ADD COLUMN `claims_migrated` boolean NOT NULL DEFAULT FALSE"""));
+            }
+        }
+    }
+
+    // Copy the claims of claim worlds not yet migrated to the claims table. The claim world data is left as it was,
+    // so older versions sharing the database, or the server after a downgrade, still read their claims
+    private void migrateLegacyClaims() throws SQLException {
+        try (Connection connection = getConnection()) {
+            final Map<Integer, Map<Integer, List<Claim>>> legacyWorlds = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    SELECT `id`, `claims`
+                    FROM `%claim_data%`
+                    WHERE NOT `claims_migrated`"""))) {
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    legacyWorlds.put(resultSet.getInt("id"), readLegacyClaims(resultSet.getBytes("claims")));
+                }
+            }
+            if (legacyWorlds.isEmpty()) {
+                return;
+            }
+
+            plugin.log(Level.INFO, "Migrating claims in " + legacyWorlds.size() + " world(s) to the claims table...");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(format("""
+                    INSERT IGNORE INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                    VALUES (?, ?, ?, ?, ?, ?)"""));
+                 PreparedStatement mark = connection.prepareStatement(format("""
+                         UPDATE `%claim_data%`
+                         SET `claims_migrated` = TRUE
+                         WHERE `id` = ?"""))) {
+                for (final Map.Entry<Integer, Map<Integer, List<Claim>>> world : legacyWorlds.entrySet()) {
+                    for (final Map.Entry<Integer, List<Claim>> townClaims : world.getValue().entrySet()) {
+                        for (final Claim claim : townClaims.getValue()) {
+                            setClaimParameters(insert, world.getKey(), townClaims.getKey(), claim);
+                            insert.addBatch();
+                        }
+                    }
+                    mark.setInt(1, world.getKey());
+                    mark.addBatch();
+                }
+                insert.executeBatch();
+                mark.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
     }
 
@@ -115,6 +292,28 @@ public final class MySqlDatabase extends Database {
         return Optional.empty();
     }
 
+    @Override
+    @NotNull
+    public Map<UUID, SavedUser> getUsers(@NotNull Collection<UUID> uuids) {
+        final Map<UUID, SavedUser> users = new HashMap<>();
+        try (Connection connection = getConnection()) {
+            for (final List<UUID> batch : getUserBatches(uuids)) {
+                try (PreparedStatement statement = connection.prepareStatement(format("""
+                        SELECT `uuid`, `username`, `preferences`
+                        FROM `%user_data%`
+                        WHERE `uuid` IN (""" + getPlaceholders(batch.size()) + ")"))) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        statement.setString(i + 1, batch.get(i).toString());
+                    }
+                    readUsers(statement.executeQuery(), users);
+                }
+            }
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch user data from table by UUIDs", e);
+        }
+        return users;
+    }
+
     @Override
     public Optional<SavedUser> getUser(@NotNull String username) {
         try (Connection connection = getConnection()) {
@@ -186,7 +385,7 @@ public final class MySqlDatabase extends Database {
     public Optional<Town> getTown(int townId) {
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    SELECT `id`, `data`
+                    SELECT `id`, `data`, `version`
                     FROM `%town_data%`
                     WHERE `id` = ?"""))) {
                 statement.setInt(1, townId);
@@ -195,6 +394,8 @@ public final class MySqlDatabase extends Database {
                     final String data = new String(resultSet.getBytes("data"), StandardCharsets.UTF_8);
                     final Town town = plugin.getGson().fromJson(data, Town.class);
                     town.setId(resultSet.getInt("id"));
+                    town.setVersion(resultSet.getLong("version"));
+                    town.clearChanges();
                     return Optional.of(town);
                 }
             }
@@ -206,25 +407,25 @@ public final class MySqlDatabase extends Database {
 
     @Override
     public List<Town> getAllTowns() {
-        final List<Town> towns = new ArrayList<>();
+        final Map<Integer, TownData> townData;
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    SELECT `id`, `data`
+                    SELECT `id`, `data`, `version`
                     FROM `%town_data%`"""))) {
-                final ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    final String data = new String(resultSet.getBytes("data"), StandardCharsets.UTF_8);
-                    final Town town = plugin.getGson().fromJson(data, Town.class);
-                    if (town != null) {
-                        town.setId(resultSet.getInt("id"));
-                        towns.add(town);
-                    }
-                }
+                townData = readTownData(statement.executeQuery());
             }
-        } catch (SQLException | JsonSyntaxException e) {
+        } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to fetch list of towns from table", e);
+            return new ArrayList<>();
         }
-        return towns;
+
+        // Towns are parsed after the connection is returned to the pool
+        try {
+            return parseTowns(townData);
+        } catch (JsonParseException e) {
+            plugin.log(Level.SEVERE, "Failed to parse list of towns from table", e);
+        }
+        return new ArrayList<>();
     }
 
     @Override
@@ -244,6 +445,7 @@ public final class MySqlDatabase extends Database {
                 if (insertedRow.next()) {
                     town.setId(insertedRow.getInt(1));
                 }
+                town.clearChanges();
             }
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to create town in table", e);
@@ -252,20 +454,127 @@ public final class MySqlDatabase extends Database {
     }
 
     @Override
-    public void updateTown(@NotNull Town town) {
+    @NotNull
+    public UpdateResult updateTown(@NotNull Town town, @Nullable JsonObject changes) {
+        final List<Map.Entry<OffsetDateTime, Action>> archived = town.getLog().takeArchivableActions();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement archive = connection.prepareStatement(format("""
+                    INSERT IGNORE INTO `%town_audit%` (`town_id`, `timestamp`, `utc_offset`, `data`)
+                    VALUES (?, ?, ?, ?)"""))) {
+                if (!writeTownData(connection, town, changes)) {
+                    connection.rollback();
+                    town.getLog().restoreArchivableActions(archived);
+                    return UpdateResult.CONFLICT;
+                }
+                for (final Map.Entry<OffsetDateTime, Action> action : archived) {
+                    setAuditParameters(archive, town.getId(), action);
+                    archive.addBatch();
+                }
+                archive.executeBatch();
+                connection.commit();
+                town.setVersion(town.getVersion() + 1);
+                return UpdateResult.WRITTEN;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            plugin.log(Level.SEVERE, "Failed to update town in table", e);
+            town.getLog().restoreArchivableActions(archived);
+            town.requireFullWrite();
+            return UpdateResult.FAILED;
+        }
+    }
+
+    // Patch the changed fields into the stored town, or write the whole town if there are no changes to patch. The
+    // patch is applied here, as JSON_MERGE_PATCH would parse the town's money as a double and round it
+    private boolean writeTownData(@NotNull Connection connection, @NotNull Town town,
+                                  @Nullable JsonObject changes) throws SQLException {
+        byte[] data = null;
+        if (canPatchTown(changes)) {
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    SELECT `data`
+                    FROM `%town_data%`
+                    WHERE `id` = ? AND `version` = ?
+                    FOR UPDATE"""))) {
+                statement.setInt(1, town.getId());
+                statement.setLong(2, town.getVersion());
+                final ResultSet resultSet = statement.executeQuery();
+                if (!resultSet.next()) {
+                    return false;
+                }
+                final JsonObject stored = JsonParser.parseString(new String(resultSet.getBytes("data"),
+                        StandardCharsets.UTF_8)).getAsJsonObject();
+                JsonMergePatch.apply(stored, changes);
+                data = stored.toString().getBytes(StandardCharsets.UTF_8);
+            } catch (JsonParseException | IllegalStateException e) {
+                plugin.log(Level.WARNING, "Failed to patch town #" + town.getId() + ", so it will be written in full",
+                        e);
+            }
+        }
+        if (data == null) {
+            data = plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(format("""
+                UPDATE `%town_data%`
+                SET `name` = ?, `data` = ?, `version` = `version` + 1
+                WHERE `id` = ? AND `version` = ?"""))) {
+            statement.setString(1, town.getName());
+            statement.setBytes(2, data);
+            statement.setInt(3, town.getId());
+            statement.setLong(4, town.getVersion());
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public int getArchivedActionCount(int townId, @NotNull OffsetDateTime before) {
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    UPDATE `%town_data%`
-                    SET `name` = ?, `data` = ?
-                    WHERE `id` = ?"""))) {
-                statement.setString(1, town.getName());
-                statement.setBytes(2, plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8));
-                statement.setInt(3, town.getId());
-                statement.executeUpdate();
+                    SELECT COUNT(*)
+                    FROM `%town_audit%`
+                    WHERE `town_id` = ? AND `timestamp` < ?"""))) {
+                statement.setInt(1, townId);
+                statement.setLong(2, getAuditTimestamp(before));
+                final ResultSet resultSet = statement.executeQuery();
+                if (resultSet.next()) {
+                    return resultSet.getInt(1);
+                }
             }
         } catch (SQLException e) {
-            plugin.log(Level.SEVERE, "Failed to update town in table", e);
+            plugin.log(Level.SEVERE, "Failed to count archived town actions in table", e);
+        }
+        return 0;
+    }
+
+    @Override
+    @NotNull
+    public List<Map.Entry<OffsetDateTime, Action>> getArchivedActions(int townId, @NotNull OffsetDateTime before,
+                                                                       int offset, int limit) {
+        final List<Map.Entry<OffsetDateTime, Action>> actions = new ArrayList<>();
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    SELECT `timestamp`, `utc_offset`, `data`
+                    FROM `%town_audit%`
+                    WHERE `town_id` = ? AND `timestamp` < ?
+                    ORDER BY `timestamp` DESC
+                    LIMIT ? OFFSET ?"""))) {
+                statement.setInt(1, townId);
+                statement.setLong(2, getAuditTimestamp(before));
+                statement.setInt(3, limit);
+                statement.setInt(4, offset);
+                final ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    actions.add(readAuditAction(resultSet));
+                }
+            }
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch archived town actions from table", e);
         }
+        return actions;
     }
 
     @Override
@@ -298,24 +607,31 @@ public final class MySqlDatabase extends Database {
     public Map<World, ClaimWorld> getClaimWorlds(@NotNull String server) {
         final Map<World, ClaimWorld> worlds = new HashMap<>();
         try (Connection connection = getConnection()) {
+            final Map<Integer, World> worldIds = new HashMap<>();
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    SELECT `id`, `world_uuid`, `world_name`, `world_environment`, `claims`
+                    SELECT `id`, `world_uuid`, `world_name`, `world_environment`
                     FROM `%claim_data%`
                     WHERE `server_name` = ?"""))) {
                 statement.setString(1, server);
                 final ResultSet resultSet = statement.executeQuery();
                 while (resultSet.next()) {
-                    final String data = new String(resultSet.getBytes("claims"), StandardCharsets.UTF_8);
                     final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
                             resultSet.getString("world_name"),
                             resultSet.getString("world_environment"));
-                    final ClaimWorld claimWorld = plugin.getGson().fromJson(data, ClaimWorld.class);
-                    claimWorld.updateId(resultSet.getInt("id"));
                     if (!plugin.getSettings().isUnclaimableWorld(world)) {
-                        worlds.put(world, claimWorld);
+                        worldIds.put(resultSet.getInt("id"), world);
                     }
                 }
             }
+
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    SELECT `world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`
+                    FROM `%claims%`
+                    WHERE `world_id` IN (SELECT `id` FROM `%claim_data%` WHERE `server_name` = ?)"""))) {
+                statement.setString(1, server);
+                final Map<Integer, ClaimWorld> claimWorlds = readClaimWorlds(worldIds.keySet(), statement.executeQuery());
+                worldIds.forEach((id, world) -> worlds.put(world, claimWorlds.get(id)));
+            }
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to fetch map of server claim worlds from table", e);
         }
@@ -326,20 +642,25 @@ public final class MySqlDatabase extends Database {
     public Map<ServerWorld, ClaimWorld> getAllClaimWorlds() {
         final Map<ServerWorld, ClaimWorld> worlds = new HashMap<>();
         try (Connection connection = getConnection()) {
+            final Map<Integer, ServerWorld> worldIds = new HashMap<>();
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    SELECT `id`, `server_name`, `world_uuid`, `world_name`, `world_environment`, `claims`
+                    SELECT `id`, `server_name`, `world_uuid`, `world_name`, `world_environment`
                     FROM `%claim_data%`"""))) {
                 final ResultSet resultSet = statement.executeQuery();
                 while (resultSet.next()) {
-                    final String data = new String(resultSet.getBytes("claims"), StandardCharsets.UTF_8);
                     final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
                             resultSet.getString("world_name"),
                             resultSet.getString("world_environment"));
-                    final ClaimWorld claimWorld = plugin.getGson().fromJson(data, ClaimWorld.class);
-                    claimWorld.updateId(resultSet.getInt("id"));
-                    worlds.put(new ServerWorld(resultSet.getString("server_name"), world), claimWorld);
+                    worldIds.put(resultSet.getInt("id"), new ServerWorld(resultSet.getString("server_name"), world));
                 }
             }
+
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    SELECT `world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`
+                    FROM `%claims%`"""))) {
+                final Map<Integer, ClaimWorld> claimWorlds = readClaimWorlds(worldIds.keySet(), statement.executeQuery());
+                worldIds.forEach((id, world) -> worlds.put(world, claimWorlds.get(id)));
+            }
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to fetch map of all claim worlds from table", e);
         }
@@ -352,13 +673,14 @@ public final class MySqlDatabase extends Database {
         final ClaimWorld claimWorld = ClaimWorld.of(0, new HashMap<>(), new ArrayList<>());
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    INSERT INTO `%claim_data%` (`world_uuid`, `world_name`, `world_environment`, `server_name`, `claims`)
-                    VALUES (?, ?, ?, ?, ?)"""), Statement.RETURN_GENERATED_KEYS)) {
+                    INSERT INTO `%claim_data%` (`world_uuid`, `world_name`, `world_environment`, `server_name`, `claims`,
+                                                `claims_migrated`)
+                    VALUES (?, ?, ?, ?, ?, TRUE)"""), Statement.RETURN_GENERATED_KEYS)) {
                 statement.setString(1, world.getUuid().toString());
                 statement.setString(2, world.getName());
                 statement.setString(3, world.getEnvironment());
                 statement.setString(4, plugin.getServerName());
-                statement.setBytes(5, plugin.getGson().toJson(claimWorld).getBytes(StandardCharsets.UTF_8));
+                statement.setBytes(5, getEmptyClaimData());
                 statement.executeUpdate();
 
                 final ResultSet insertedRow = statement.getGeneratedKeys();
@@ -374,17 +696,102 @@ public final class MySqlDatabase extends Database {
 
     @Override
     public void updateClaimWorld(@NotNull ClaimWorld claimWorld) {
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(format("""
+                    DELETE FROM `%claims%`
+                    WHERE `world_id` = ?"""));
+                 PreparedStatement insert = connection.prepareStatement(format("""
+                         INSERT INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                         VALUES (?, ?, ?, ?, ?, ?)"""))) {
+                delete.setInt(1, claimWorld.getId());
+                delete.executeUpdate();
+                for (final Map.Entry<Integer, List<Claim>> townClaims : claimWorld.getClaims().entrySet()) {
+                    for (final Claim claim : townClaims.getValue()) {
+                        setClaimParameters(insert, claimWorld.getId(), townClaims.getKey(), claim);
+                        insert.addBatch();
+                    }
+                }
+                for (final Claim claim : claimWorld.getAdminClaims()) {
+                    setClaimParameters(insert, claimWorld.getId(), 0, claim);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to update claim world in table", e);
+        }
+    }
+
+    @Override
+    public void insertClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
         try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(format("""
-                    UPDATE `%claim_data%`
-                    SET `claims` = ?
-                    WHERE `id` = ?"""))) {
-                statement.setBytes(1, plugin.getGson().toJson(claimWorld).getBytes(StandardCharsets.UTF_8));
-                statement.setInt(2, claimWorld.getId());
+                    INSERT INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    ON DUPLICATE KEY UPDATE `town_id` = VALUES(`town_id`), `type` = VALUES(`type`),
+                                            `plot_members` = VALUES(`plot_members`)"""))) {
+                setClaimParameters(statement, claimWorld.getId(), claim.town().getId(), claim.claim());
                 statement.executeUpdate();
             }
         } catch (SQLException e) {
-            plugin.log(Level.SEVERE, "Failed to update claim world in table", e);
+            plugin.log(Level.SEVERE, "Failed to insert claim into table", e);
+        }
+    }
+
+    @Override
+    public void updateClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    UPDATE `%claims%`
+                    SET `town_id` = ?, `type` = ?, `plot_members` = ?
+                    WHERE `world_id` = ? AND `chunk_x` = ? AND `chunk_z` = ?"""))) {
+                statement.setInt(1, claim.town().getId());
+                statement.setString(2, claim.claim().getType().name());
+                statement.setBytes(3, getPlotMemberData(claim.claim()));
+                statement.setInt(4, claimWorld.getId());
+                statement.setInt(5, claim.claim().getChunk().getX());
+                statement.setInt(6, claim.claim().getChunk().getZ());
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to update claim in table", e);
+        }
+    }
+
+    @Override
+    public void deleteClaim(@NotNull ClaimWorld claimWorld, @NotNull Chunk chunk) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    DELETE FROM `%claims%`
+                    WHERE `world_id` = ? AND `chunk_x` = ? AND `chunk_z` = ?"""))) {
+                statement.setInt(1, claimWorld.getId());
+                statement.setInt(2, chunk.getX());
+                statement.setInt(3, chunk.getZ());
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to delete claim from table", e);
+        }
+    }
+
+    @Override
+    public void deleteTownClaims(int townId) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(format("""
+                    DELETE FROM `%claims%`
+                    WHERE `town_id` = ?"""))) {
+                statement.setInt(1, townId);
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to delete town claims from table", e);
         }
     }
 
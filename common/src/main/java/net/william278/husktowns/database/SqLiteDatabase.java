@@ -1,24 +1,37 @@
 package net.william278.husktowns.database;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import net.william278.husktowns.HuskTowns;
-import net.william278.husktowns.claim.ClaimWorld;
-import net.william278.husktowns.claim.ServerWorld;
-import net.william278.husktowns.claim.World;
+import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.claim.*;
 import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.Preferences;
 import net.william278.husktowns.user.SavedUser;
 import net.william278.husktowns.user.User;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 
+/**
+ * A SQLite database, in write-ahead logging mode
+ * <p>
+ * All changes are made by a single writer thread, which groups the changes waiting to be made into one transaction.
+ * Queries are made on a separate read-only connection, so they never wait for changes to be written.
+ */
 public final class SqLiteDatabase extends Database {
 
     /**
@@ -26,26 +39,65 @@ public final class SqLiteDatabase extends Database {
      */
     private static final String DATABASE_FILE_NAME = "HuskTownsData.db";
 
+    /**
+     * The maximum number of changes to group into one transaction
+     */
+    private static final int MAX_WRITE_BATCH = 256;
+
+    /**
+     * How long to wait for the database to be unlocked, in milliseconds
+     */
+    private static final int BUSY_TIMEOUT = 5000;
+
     /**
      * Path to the SQLite HuskTownsData.db file
      */
     private final File databaseFile;
 
     /**
-     * The persistent SQLite database connection
+     * The connection used by the writer thread to make changes
      */
-    private Connection connection;
+    private Connection writeConnection;
+
+    /**
+     * The read-only connection used to query the database
+     */
+    private Connection readConnection;
+
+    private final Map<String, PreparedStatement> writeStatements = new HashMap<>();
+    private final Map<String, PreparedStatement> readStatements = new HashMap<>();
+    private final BlockingQueue<Write<?>> writes = new LinkedBlockingQueue<>();
+    @Nullable
+    private Thread writer;
+    private volatile boolean closed;
+
+    public SqLiteDatabase(@NotNull HuskTowns plugin) {
+        super(plugin, "sqlite_schema.sql");
+        this.databaseFile = new File(plugin.getDataFolder(), DATABASE_FILE_NAME);
+    }
 
-    private Connection getConnection() throws SQLException {
-        if (connection == null) {
-            setConnection();
-        } else if (connection.isClosed()) {
-            setConnection();
+    @NotNull
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        // Set SQLite database properties
+        final SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(BUSY_TIMEOUT);
+        if (readOnly) {
+            config.setReadOnly(true);
+        } else {
+            config.enforceForeignKeys(true);
+            config.setEncoding(SQLiteConfig.Encoding.UTF8);
+            config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            config.setSynchronous(plugin.getSettings().doSqLiteSynchronousNormal()
+                    ? SQLiteConfig.SynchronousMode.NORMAL : SQLiteConfig.SynchronousMode.FULL);
         }
-        return connection;
+
+        // Establish the connection
+        return DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath(), config.toProperties());
     }
 
-    private void setConnection() {
+    @Override
+    public void initialize() throws RuntimeException {
+        // Establish the write connection
         try {
             // Ensure that the database file exists
             if (databaseFile.createNewFile()) {
@@ -54,79 +106,355 @@ public final class SqLiteDatabase extends Database {
 
             // Specify use of the JDBC SQLite driver
             Class.forName("org.sqlite.JDBC");
-
-            // Set SQLite database properties
-            SQLiteConfig config = new SQLiteConfig();
-            config.enforceForeignKeys(true);
-            config.setEncoding(SQLiteConfig.Encoding.UTF8);
-            config.setSynchronous(SQLiteConfig.SynchronousMode.FULL);
-
-            // Establish the connection
-            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath(), config.toProperties());
+            this.writeConnection = openConnection(false);
         } catch (IOException e) {
             plugin.log(Level.SEVERE, "An exception occurred creating the database file", e);
+            return;
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "An SQL exception occurred initializing the SQLite database", e);
+            return;
         } catch (ClassNotFoundException e) {
             plugin.log(Level.SEVERE, "Failed to load the necessary SQLite driver", e);
+            return;
         }
-    }
-
-    public SqLiteDatabase(@NotNull HuskTowns plugin) {
-        super(plugin, "sqlite_schema.sql");
-        this.databaseFile = new File(plugin.getDataFolder(), DATABASE_FILE_NAME);
-    }
-
-    @Override
-    public void initialize() throws RuntimeException {
-        // Establish connection
-        this.setConnection();
 
         // Create tables
-        try (Statement statement = getConnection().createStatement()) {
+        try (Statement statement = writeConnection.createStatement()) {
             for (String tableCreationStatement : getSchema()) {
                 statement.execute(tableCreationStatement);
             }
-            setLoaded(true);
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to create SQLite database tables");
             setLoaded(false);
+            return;
+        }
+
+        // Migrate claims from the claim world data of older versions
+        try {
+            addClaimsMigratedColumn();
+            migrateLegacyClaims();
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to migrate claims to the claims table", e);
+        }
+        try {
+            addTownVersionColumn();
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to add the version column to the towns table", e);
+        }
+        try {
+            addAuditOffsetColumn();
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to add the offset column to the town audit table", e);
+        }
+
+        // Establish the read connection, once the database is in write-ahead logging mode, and start the writer
+        try {
+            this.readConnection = openConnection(true);
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "An SQL exception occurred opening the SQLite read connection", e);
+            setLoaded(false);
+            return;
         }
+        this.writer = new Thread(this::runWriter, "HuskTowns-SQLite-Writer");
+        writer.setDaemon(true);
+        writer.start();
+        setLoaded(true);
+    }
+
+    // Version towns in town tables created by older versions
+    private void addTownVersionColumn() throws SQLException {
+        try (Statement statement = writeConnection.createStatement()) {
+            try (ResultSet columns = statement.executeQuery(format("PRAGMA table_info(`%town_data%`)"))) {
+                while (columns.next()) {
+                    if (columns.getString("name").equalsIgnoreCase("version")) {
+                        return;
+                    }
+                }
+            }
+            statement.execute(format("ALTER TABLE `%town_data%` ADD COLUMN `version` integer NOT NULL DEFAULT 0"));
+        }
+    }
+
+    // Record the offset of actions archived to town audit tables created by older versions
+    private void addAuditOffsetColumn() throws SQLException {
+        try (Statement statement = writeConnection.createStatement()) {
+            try (ResultSet columns = statement.executeQuery(format("PRAGMA table_info(`%town_audit%`)"))) {
+                while (columns.next()) {
+                    if (columns.getString("name").equalsIgnoreCase("utc_offset")) {
+                        return;
+                    }
+                }
+            }
+            statement.execute(format("""
+                    ALTER TABLE `%town_audit%`
+                    ADD COLUMN `utc_offset` integer NOT NULL DEFAULT 0"""));
+        }
+    }
+
+    // Mark the claim worlds of older versions as not yet having their claims migrated to the claims table
+    private void addClaimsMigratedColumn() throws SQLException {
+        try (Statement statement = writeConnection.createStatement()) {
+            try (ResultSet columns = statement.executeQuery(format("PRAGMA table_info(`%claim_data%`)"))) {
+                while (columns.next()) {
+                    if (columns.getString("name").equalsIgnoreCase("claims_migrated")) {
+                        return;
+                    }
+                }
+            }
+            statement.execute(format("""
+                    ALTER TABLE `%claim_data%`
+                    ADD COLUMN `claims_migrated` boolean NOT NULL DEFAULT 0"""));
+        }
+    }
+
+    // Copy the claims of claim worlds not yet migrated to the claims table. The claim world data is left as it was,
+    // so the server still reads its claims after a downgrade
+    private void migrateLegacyClaims() throws SQLException {
+        final Map<Integer, Map<Integer, List<Claim>>> legacyWorlds = new HashMap<>();
+        try (PreparedStatement statement = writeConnection.prepareStatement(format("""
+                SELECT `id`, `claims`
+                FROM `%claim_data%`
+                WHERE NOT `claims_migrated`"""));
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                legacyWorlds.put(resultSet.getInt("id"), readLegacyClaims(resultSet.getBytes("claims")));
+            }
+        }
+        if (legacyWorlds.isEmpty()) {
+            return;
+        }
+
+        plugin.log(Level.INFO, "Migrating claims in " + legacyWorlds.size() + " world(s) to the claims table...");
+        writeConnection.setAutoCommit(false);
+        try (PreparedStatement insert = writeConnection.prepareStatement(format("""
+                INSERT OR IGNORE INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                VALUES (?, ?, ?, ?, ?, ?)"""));
+             PreparedStatement mark = writeConnection.prepareStatement(format("""
+                     UPDATE `%claim_data%`
+                     SET `claims_migrated` = 1
+                     WHERE `id` = ?"""))) {
+            for (final Map.Entry<Integer, Map<Integer, List<Claim>>> world : legacyWorlds.entrySet()) {
+                for (final Map.Entry<Integer, List<Claim>> townClaims : world.getValue().entrySet()) {
+                    for (final Claim claim : townClaims.getValue()) {
+                        setClaimParameters(insert, world.getKey(), townClaims.getKey(), claim);
+                        insert.addBatch();
+                    }
+                }
+                mark.setInt(1, world.getKey());
+                mark.addBatch();
+            }
+            insert.executeBatch();
+            mark.executeBatch();
+            writeConnection.commit();
+        } catch (SQLException e) {
+            writeConnection.rollback();
+            throw e;
+        } finally {
+            writeConnection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Make a change to the database on the writer thread, waiting for it to be committed
+     *
+     * @param task the change to make
+     * @param <T>  the type of the result of the change
+     * @return the result of the change
+     * @throws SQLException if the change could not be made or committed
+     */
+    private <T> T write(@NotNull Task<T> task) throws SQLException {
+        if (Thread.currentThread() == writer) {
+            return task.run();
+        }
+        checkNotPrimaryThread();
+        if (closed) {
+            throw new SQLException("The SQLite database has been closed");
+        }
+        final Write<T> write = new Write<>(task, new CompletableFuture<>());
+        writes.add(write);
+        try {
+            return write.future().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException exception) {
+                throw exception;
+            }
+            if (e.getCause() instanceof RuntimeException exception) {
+                throw exception;
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Query the database on the read-only connection
+     *
+     * @param task the query to make
+     * @param <T>  the type of the result of the query
+     * @return the result of the query
+     * @throws SQLException if the query could not be made
+     */
+    private <T> T read(@NotNull Task<T> task) throws SQLException {
+        checkNotPrimaryThread();
+        synchronized (readStatements) {
+            return task.run();
+        }
+    }
+
+    @NotNull
+    private PreparedStatement prepareWrite(@NotNull String statement) throws SQLException {
+        return prepare(writeConnection, writeStatements, statement, Statement.NO_GENERATED_KEYS);
+    }
+
+    @NotNull
+    private PreparedStatement prepareInsert(@NotNull String statement) throws SQLException {
+        return prepare(writeConnection, writeStatements, statement, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    @NotNull
+    private PreparedStatement prepareRead(@NotNull String statement) throws SQLException {
+        return prepare(readConnection, readStatements, statement, Statement.NO_GENERATED_KEYS);
+    }
+
+    // Get a cached prepared statement, or prepare and cache it
+    @NotNull
+    private PreparedStatement prepare(@NotNull Connection connection, @NotNull Map<String, PreparedStatement> cache,
+                                      @NotNull String statement, int generatedKeys) throws SQLException {
+        final PreparedStatement cached = cache.get(statement);
+        if (cached != null && !cached.isClosed()) {
+            cached.clearBatch();
+            return cached;
+        }
+        final PreparedStatement prepared = connection.prepareStatement(format(statement), generatedKeys);
+        cache.put(statement, prepared);
+        return prepared;
+    }
+
+    // Take changes from the queue and commit them in groups, until the database is closed
+    private void runWriter() {
+        final List<Write<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(writes.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            writes.drainTo(batch, MAX_WRITE_BATCH - 1);
+            commit(batch);
+            if (batch.stream().anyMatch(write -> write.task() == null)) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    // Commit a group of changes in one transaction; each change is isolated in a savepoint, so one failing change
+    // does not roll back the others. Callers are only notified once the transaction has been committed
+    private void commit(@NotNull List<Write<?>> batch) {
+        final List<Runnable> completions = new ArrayList<>(batch.size());
+        try (Statement savepoints = writeConnection.createStatement()) {
+            writeConnection.setAutoCommit(false);
+            try {
+                for (final Write<?> write : batch) {
+                    if (write.task() == null) {
+                        continue;
+                    }
+                    savepoints.execute("SAVEPOINT `husktowns_write`");
+                    try {
+                        completions.add(write.run());
+                        savepoints.execute("RELEASE `husktowns_write`");
+                    } catch (SQLException | RuntimeException e) {
+                        savepoints.execute("ROLLBACK TO `husktowns_write`");
+                        savepoints.execute("RELEASE `husktowns_write`");
+                        completions.add(() -> write.future().completeExceptionally(e));
+                    }
+                }
+                writeConnection.commit();
+            } catch (SQLException e) {
+                writeConnection.rollback();
+                throw e;
+            } finally {
+                writeConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to commit changes to the SQLite database", e);
+            batch.forEach(write -> write.future().completeExceptionally(e));
+            return;
+        }
+        completions.forEach(Runnable::run);
     }
 
     @Override
     public Optional<SavedUser> getUser(@NotNull UUID uuid) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `uuid`, `username`, `preferences`
-                FROM `%user_data%`
-                WHERE uuid = ?"""))) {
-            statement.setString(1, uuid.toString());
-            final ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                final String name = resultSet.getString("username");
-                final String preferences = new String(resultSet.getBytes("preferences"), StandardCharsets.UTF_8);
-                return Optional.of(new SavedUser(User.of(uuid, name), plugin.getGson().fromJson(preferences, Preferences.class)));
-            }
+        try {
+            return read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `uuid`, `username`, `preferences`
+                        FROM `%user_data%`
+                        WHERE uuid = ?""");
+                statement.setString(1, uuid.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        final String name = resultSet.getString("username");
+                        final String preferences = new String(resultSet.getBytes("preferences"), StandardCharsets.UTF_8);
+                        return Optional.of(new SavedUser(User.of(uuid, name), plugin.getGson().fromJson(preferences, Preferences.class)));
+                    }
+                }
+                return Optional.empty();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to fetch user data from table by UUID", e);
         }
         return Optional.empty();
     }
 
+    @Override
+    @NotNull
+    public Map<UUID, SavedUser> getUsers(@NotNull Collection<UUID> uuids) {
+        final Map<UUID, SavedUser> users = new HashMap<>();
+        try {
+            read(() -> {
+                // Not cached, as the statement varies with the number of users
+                for (final List<UUID> batch : getUserBatches(uuids)) {
+                    try (PreparedStatement statement = readConnection.prepareStatement(format("""
+                            SELECT `uuid`, `username`, `preferences`
+                            FROM `%user_data%`
+                            WHERE `uuid` IN (""" + getPlaceholders(batch.size()) + ")"))) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            statement.setString(i + 1, batch.get(i).toString());
+                        }
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            readUsers(resultSet, users);
+                        }
+                    }
+                }
+                return users;
+            });
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch user data from table by UUIDs", e);
+        }
+        return users;
+    }
+
     @Override
     public Optional<SavedUser> getUser(@NotNull String username) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `uuid`, `username`, `preferences`
-                FROM `%user_data%`
-                WHERE `username` = ?"""))) {
-            statement.setString(1, username);
-            final ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                final UUID uuid = UUID.fromString(resultSet.getString("uuid"));
-                final String name = resultSet.getString("username");
-                final String preferences = new String(resultSet.getBytes("preferences"), StandardCharsets.UTF_8);
-                return Optional.of(new SavedUser(User.of(uuid, name), plugin.getGson().fromJson(preferences, Preferences.class)));
-            }
+        try {
+            return read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `uuid`, `username`, `preferences`
+                        FROM `%user_data%`
+                        WHERE `username` = ? COLLATE NOCASE""");
+                statement.setString(1, username);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        final UUID uuid = UUID.fromString(resultSet.getString("uuid"));
+                        final String name = resultSet.getString("username");
+                        final String preferences = new String(resultSet.getBytes("preferences"), StandardCharsets.UTF_8);
+                        return Optional.of(new SavedUser(User.of(uuid, name), plugin.getGson().fromJson(preferences, Preferences.class)));
+                    }
+                }
+                return Optional.empty();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to fetch user data from table by username", e);
         }
@@ -135,13 +463,16 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public void createUser(@NotNull User user, @NotNull Preferences preferences) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                INSERT INTO `%user_data%` (`uuid`, `username`, `preferences`)
-                VALUES (?, ?, ?)"""))) {
-            statement.setString(1, user.getUuid().toString());
-            statement.setString(2, user.getUsername());
-            statement.setBytes(3, plugin.getGson().toJson(preferences).getBytes(StandardCharsets.UTF_8));
-            statement.executeUpdate();
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        INSERT INTO `%user_data%` (`uuid`, `username`, `preferences`)
+                        VALUES (?, ?, ?)""");
+                statement.setString(1, user.getUuid().toString());
+                statement.setString(2, user.getUsername());
+                statement.setBytes(3, plugin.getGson().toJson(preferences).getBytes(StandardCharsets.UTF_8));
+                return statement.executeUpdate();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to create user in table", e);
         }
@@ -149,14 +480,17 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public void updateUser(@NotNull User user, @NotNull Preferences preferences) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                UPDATE `%user_data%`
-                SET `username` = ?, `preferences` = ?
-                WHERE `uuid` = ?"""))) {
-            statement.setString(1, user.getUsername());
-            statement.setBytes(2, plugin.getGson().toJson(preferences).getBytes(StandardCharsets.UTF_8));
-            statement.setString(3, user.getUuid().toString());
-            statement.executeUpdate();
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        UPDATE `%user_data%`
+                        SET `username` = ?, `preferences` = ?
+                        WHERE `uuid` = ?""");
+                statement.setString(1, user.getUsername());
+                statement.setBytes(2, plugin.getGson().toJson(preferences).getBytes(StandardCharsets.UTF_8));
+                statement.setString(3, user.getUuid().toString());
+                return statement.executeUpdate();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to update user in table", e);
         }
@@ -164,8 +498,8 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public void deleteAllUsers() {
-        try (Statement statement = getConnection().createStatement()) {
-            statement.execute(format("DELETE FROM `%user_data%`"));
+        try {
+            write(() -> prepareWrite("DELETE FROM `%user_data%`").executeUpdate());
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to delete all users from table", e);
         }
@@ -173,18 +507,25 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public Optional<Town> getTown(int townId) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `id`, `data`
-                FROM `%town_data%`
-                WHERE `id` = ?"""))) {
-            statement.setInt(1, townId);
-            final ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                final String data = new String(resultSet.getBytes("data"), StandardCharsets.UTF_8);
-                final Town town = plugin.getGson().fromJson(data, Town.class);
-                town.setId(resultSet.getInt("id"));
-                return Optional.of(town);
-            }
+        try {
+            return read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `id`, `data`, `version`
+                        FROM `%town_data%`
+                        WHERE `id` = ?""");
+                statement.setInt(1, townId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        final String data = new String(resultSet.getBytes("data"), StandardCharsets.UTF_8);
+                        final Town town = plugin.getGson().fromJson(data, Town.class);
+                        town.setId(resultSet.getInt("id"));
+                        town.setVersion(resultSet.getLong("version"));
+                        town.clearChanges();
+                        return Optional.of(town);
+                    }
+                }
+                return Optional.empty();
+            });
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to fetch town data from table by ID", e);
         }
@@ -193,35 +534,43 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public List<Town> getAllTowns() {
-        final List<Town> towns = new ArrayList<>();
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `id`, `data`
-                FROM `%town_data%`"""))) {
-            final ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                final String data = new String(resultSet.getBytes("data"), StandardCharsets.UTF_8);
-                final Town town = plugin.getGson().fromJson(data, Town.class);
-                if (town != null) {
-                    town.setId(resultSet.getInt("id"));
-                    towns.add(town);
+        try {
+            // Towns are parsed after the read, so claim worlds can be read in the meantime
+            return parseTowns(read(() -> {
+                try (ResultSet resultSet = prepareRead("""
+                        SELECT `id`, `data`, `version`
+                        FROM `%town_data%`""").executeQuery()) {
+                    return readTownData(resultSet);
                 }
-            }
-        } catch (SQLException | JsonSyntaxException e) {
+            }));
+        } catch (SQLException | JsonParseException e) {
             plugin.log(Level.SEVERE, "Failed to fetch list of towns from table", e);
         }
-        return towns;
+        return new ArrayList<>();
     }
 
     @Override
     public @NotNull Town createTown(@NotNull String name, @NotNull User creator) {
         final Town town = Town.create(name, creator, plugin);
         town.addMember(creator.getUuid(), plugin.getRoles().getMayorRole());
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                INSERT INTO `%town_data%` (`name`, `data`)
-                VALUES (?, ?)"""))) {
-            statement.setString(1, town.getName());
-            statement.setBytes(2, plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8));
-            town.setId(statement.executeUpdate());
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareInsert("""
+                        INSERT INTO `%town_data%` (`name`, `data`)
+                        VALUES (?, ?)""");
+                statement.setString(1, town.getName());
+                statement.setBytes(2, plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8));
+                statement.executeUpdate();
+
+                // Audit log actions reference the town by ID, so it must be the generated key rather than the update count
+                try (ResultSet insertedRow = statement.getGeneratedKeys()) {
+                    if (insertedRow.next()) {
+                        town.setId(insertedRow.getInt(1));
+                    }
+                }
+                town.clearChanges();
+                return town;
+            });
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to create town in table", e);
         }
@@ -229,27 +578,131 @@ public final class SqLiteDatabase extends Database {
     }
 
     @Override
-    public void updateTown(@NotNull Town town) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
+    @NotNull
+    public UpdateResult updateTown(@NotNull Town town, @Nullable JsonObject changes) {
+        final List<Map.Entry<OffsetDateTime, Action>> archived = town.getLog().takeArchivableActions();
+        try {
+            final boolean written = write(() -> {
+                if (!writeTownData(town, changes)) {
+                    return false;
+                }
+
+                final PreparedStatement archive = prepareWrite("""
+                        INSERT OR IGNORE INTO `%town_audit%` (`town_id`, `timestamp`, `utc_offset`, `data`)
+                        VALUES (?, ?, ?, ?)""");
+                for (final Map.Entry<OffsetDateTime, Action> action : archived) {
+                    setAuditParameters(archive, town.getId(), action);
+                    archive.addBatch();
+                }
+                archive.executeBatch();
+                return true;
+            });
+            if (written) {
+                town.setVersion(town.getVersion() + 1);
+                return UpdateResult.WRITTEN;
+            }
+            town.getLog().restoreArchivableActions(archived);
+            return UpdateResult.CONFLICT;
+        } catch (SQLException | RuntimeException e) {
+            plugin.log(Level.SEVERE, "Failed to update town in table", e);
+            town.getLog().restoreArchivableActions(archived);
+            town.requireFullWrite();
+            return UpdateResult.FAILED;
+        }
+    }
+
+    // Patch the changed fields into the stored town, or write the whole town if there are no changes to patch
+    private boolean writeTownData(@NotNull Town town, @Nullable JsonObject changes) throws SQLException {
+        if (canPatchTown(changes)) {
+            try {
+                final PreparedStatement statement = prepareWrite("""
+                        UPDATE `%town_data%`
+                        SET `name` = ?, `data` = json_patch(CAST(`data` AS TEXT), ?), `version` = `version` + 1
+                        WHERE `id` = ? AND `version` = ?""");
+                statement.setString(1, town.getName());
+                statement.setString(2, changes.toString());
+                statement.setInt(3, town.getId());
+                statement.setLong(4, town.getVersion());
+                return statement.executeUpdate() > 0;
+            } catch (SQLException e) {
+                // Only write towns in full from now on if json_patch is unavailable, not if this write failed
+                if (e.getMessage() == null || !e.getMessage().contains("no such function")) {
+                    throw e;
+                }
+                disableTownPatches(e);
+            }
+        }
+        final PreparedStatement statement = prepareWrite("""
                 UPDATE `%town_data%`
-                SET `name` = ?, `data` = ?
-                WHERE `id` = ?"""))) {
-            statement.setString(1, town.getName());
-            statement.setBytes(2, plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8));
-            statement.setInt(3, town.getId());
-            statement.executeUpdate();
+                SET `name` = ?, `data` = ?, `version` = `version` + 1
+                WHERE `id` = ? AND `version` = ?""");
+        statement.setString(1, town.getName());
+        statement.setBytes(2, plugin.getGson().toJson(town).getBytes(StandardCharsets.UTF_8));
+        statement.setInt(3, town.getId());
+        statement.setLong(4, town.getVersion());
+        return statement.executeUpdate() > 0;
+    }
+
+    @Override
+    public int getArchivedActionCount(int townId, @NotNull OffsetDateTime before) {
+        try {
+            return read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT COUNT(*)
+                        FROM `%town_audit%`
+                        WHERE `town_id` = ? AND `timestamp` < ?""");
+                statement.setInt(1, townId);
+                statement.setLong(2, getAuditTimestamp(before));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getInt(1) : 0;
+                }
+            });
         } catch (SQLException e) {
-            plugin.log(Level.SEVERE, "Failed to update town in table", e);
+            plugin.log(Level.SEVERE, "Failed to count archived town actions in table", e);
         }
+        return 0;
+    }
+
+    @Override
+    @NotNull
+    public List<Map.Entry<OffsetDateTime, Action>> getArchivedActions(int townId, @NotNull OffsetDateTime before,
+                                                                       int offset, int limit) {
+        final List<Map.Entry<OffsetDateTime, Action>> actions = new ArrayList<>();
+        try {
+            read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `timestamp`, `utc_offset`, `data`
+                        FROM `%town_audit%`
+                        WHERE `town_id` = ? AND `timestamp` < ?
+                        ORDER BY `timestamp` DESC
+                        LIMIT ? OFFSET ?""");
+                statement.setInt(1, townId);
+                statement.setLong(2, getAuditTimestamp(before));
+                statement.setInt(3, limit);
+                statement.setInt(4, offset);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        actions.add(readAuditAction(resultSet));
+                    }
+                }
+                return actions;
+            });
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch archived town actions from table", e);
+        }
+        return actions;
     }
 
     @Override
     public void deleteTown(int townId) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                DELETE FROM `%town_data%`
-                WHERE `id` = ?"""))) {
-            statement.setInt(1, townId);
-            statement.executeUpdate();
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        DELETE FROM `%town_data%`
+                        WHERE `id` = ?""");
+                statement.setInt(1, townId);
+                return statement.executeUpdate();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to delete town from table", e);
         }
@@ -257,8 +710,8 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public void deleteAllTowns() {
-        try (Statement statement = getConnection().createStatement()) {
-            statement.execute(format("DELETE FROM `%town_data%`"));
+        try {
+            write(() -> prepareWrite("DELETE FROM `%town_data%`").executeUpdate());
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to delete all towns from table", e);
         }
@@ -267,25 +720,45 @@ public final class SqLiteDatabase extends Database {
     @Override
     public Map<World, ClaimWorld> getClaimWorlds(@NotNull String server) {
         final Map<World, ClaimWorld> worlds = new HashMap<>();
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `id`, `world_uuid`, `world_name`, `world_environment`, `claims`
-                FROM `%claim_data%`
-                WHERE `server_name` = ?"""))) {
-            statement.setString(1, server);
-            final ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                final String data = new String(resultSet.getBytes("claims"), StandardCharsets.UTF_8);
-                final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
-                        resultSet.getString("world_name"),
-                        resultSet.getString("world_environment"));
-                final ClaimWorld claimWorld = plugin.getGson().fromJson(data, ClaimWorld.class);
-                claimWorld.updateId(resultSet.getInt("id"));
-                if (!plugin.getSettings().isUnclaimableWorld(world)) {
-                    worlds.put(world, claimWorld);
+        final Map<Integer, World> worldIds = new HashMap<>();
+        try {
+            read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `id`, `world_uuid`, `world_name`, `world_environment`
+                        FROM `%claim_data%`
+                        WHERE `server_name` = ?""");
+                statement.setString(1, server);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
+                                resultSet.getString("world_name"),
+                                resultSet.getString("world_environment"));
+                        if (!plugin.getSettings().isUnclaimableWorld(world)) {
+                            worldIds.put(resultSet.getInt("id"), world);
+                        }
+                    }
                 }
-            }
-        } catch (SQLException | JsonSyntaxException e) {
+                return worldIds;
+            });
+        } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to fetch map of server claim worlds from table", e);
+            return worlds;
+        }
+        try {
+            read(() -> {
+                final PreparedStatement statement = prepareRead("""
+                        SELECT `world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`
+                        FROM `%claims%`
+                        WHERE `world_id` IN (SELECT `id` FROM `%claim_data%` WHERE `server_name` = ?)""");
+                statement.setString(1, server);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    final Map<Integer, ClaimWorld> claimWorlds = readClaimWorlds(worldIds.keySet(), resultSet);
+                    worldIds.forEach((id, world) -> worlds.put(world, claimWorlds.get(id)));
+                }
+                return worlds;
+            });
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch server claims from table", e);
         }
         return worlds;
     }
@@ -293,39 +766,66 @@ public final class SqLiteDatabase extends Database {
     @Override
     public Map<ServerWorld, ClaimWorld> getAllClaimWorlds() {
         final Map<ServerWorld, ClaimWorld> worlds = new HashMap<>();
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                SELECT `id`, `server_name`, `world_uuid`, `world_name`, `world_environment`, `claims`
-                FROM `%claim_data%`"""))) {
-            final ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                final String data = new String(resultSet.getBytes("claims"), StandardCharsets.UTF_8);
-                final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
-                        resultSet.getString("world_name"),
-                        resultSet.getString("world_environment"));
-                final ClaimWorld claimWorld = plugin.getGson().fromJson(data, ClaimWorld.class);
-                claimWorld.updateId(resultSet.getInt("id"));
-                worlds.put(new ServerWorld(resultSet.getString("server_name"), world), claimWorld);
-            }
-        } catch (SQLException | JsonSyntaxException e) {
+        final Map<Integer, ServerWorld> worldIds = new HashMap<>();
+        try {
+            read(() -> {
+                try (ResultSet resultSet = prepareRead("""
+                        SELECT `id`, `server_name`, `world_uuid`, `world_name`, `world_environment`
+                        FROM `%claim_data%`""").executeQuery()) {
+                    while (resultSet.next()) {
+                        final World world = World.of(UUID.fromString(resultSet.getString("world_uuid")),
+                                resultSet.getString("world_name"),
+                                resultSet.getString("world_environment"));
+                        worldIds.put(resultSet.getInt("id"), new ServerWorld(resultSet.getString("server_name"), world));
+                    }
+                }
+                return worldIds;
+            });
+        } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to fetch map of all claim worlds from table", e);
+            return worlds;
+        }
+        try {
+            read(() -> {
+                try (ResultSet resultSet = prepareRead("""
+                        SELECT `world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`
+                        FROM `%claims%`""").executeQuery()) {
+                    final Map<Integer, ClaimWorld> claimWorlds = readClaimWorlds(worldIds.keySet(), resultSet);
+                    worldIds.forEach((id, world) -> worlds.put(world, claimWorlds.get(id)));
+                }
+                return worlds;
+            });
+        } catch (SQLException | JsonSyntaxException e) {
+            plugin.log(Level.SEVERE, "Failed to fetch all claims from table", e);
         }
         return worlds;
     }
 
-
     @Override
     @NotNull
     public ClaimWorld createClaimWorld(@NotNull World world) {
         final ClaimWorld claimWorld = ClaimWorld.of(0, new HashMap<>(), new ArrayList<>());
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                INSERT INTO `%claim_data%` (`world_uuid`, `world_name`, `world_environment`, `server_name`, `claims`)
-                VALUES (?, ?, ?, ?, ?)"""))) {
-            statement.setString(1, world.getUuid().toString());
-            statement.setString(2, world.getName());
-            statement.setString(3, world.getEnvironment());
-            statement.setString(4, plugin.getServerName());
-            statement.setBytes(5, plugin.getGson().toJson(claimWorld).getBytes(StandardCharsets.UTF_8));
-            claimWorld.updateId(statement.executeUpdate());
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareInsert("""
+                        INSERT INTO `%claim_data%` (`world_uuid`, `world_name`, `world_environment`, `server_name`, `claims`,
+                                                    `claims_migrated`)
+                        VALUES (?, ?, ?, ?, ?, 1)""");
+                statement.setString(1, world.getUuid().toString());
+                statement.setString(2, world.getName());
+                statement.setString(3, world.getEnvironment());
+                statement.setString(4, plugin.getServerName());
+                statement.setBytes(5, getEmptyClaimData());
+                statement.executeUpdate();
+
+                // Claims reference the claim world by ID, so it must be the generated key rather than the update count
+                try (ResultSet insertedRow = statement.getGeneratedKeys()) {
+                    if (insertedRow.next()) {
+                        claimWorld.updateId(insertedRow.getInt(1));
+                    }
+                }
+                return claimWorld;
+            });
         } catch (SQLException | JsonSyntaxException e) {
             plugin.log(Level.SEVERE, "Failed to create claim world in table", e);
         }
@@ -334,27 +834,159 @@ public final class SqLiteDatabase extends Database {
 
     @Override
     public void updateClaimWorld(@NotNull ClaimWorld claimWorld) {
-        try (PreparedStatement statement = getConnection().prepareStatement(format("""
-                UPDATE `%claim_data%`
-                SET `claims` = ?
-                WHERE `id` = ?"""))) {
-            statement.setBytes(1, plugin.getGson().toJson(claimWorld).getBytes(StandardCharsets.UTF_8));
-            statement.setInt(2, claimWorld.getId());
-            statement.executeUpdate();
+        try {
+            write(() -> {
+                final PreparedStatement delete = prepareWrite("""
+                        DELETE FROM `%claims%`
+                        WHERE `world_id` = ?""");
+                delete.setInt(1, claimWorld.getId());
+                delete.executeUpdate();
+
+                final PreparedStatement insert = prepareWrite("""
+                        INSERT INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                        VALUES (?, ?, ?, ?, ?, ?)""");
+                for (final Map.Entry<Integer, List<Claim>> townClaims : claimWorld.getClaims().entrySet()) {
+                    for (final Claim claim : townClaims.getValue()) {
+                        setClaimParameters(insert, claimWorld.getId(), townClaims.getKey(), claim);
+                        insert.addBatch();
+                    }
+                }
+                for (final Claim claim : claimWorld.getAdminClaims()) {
+                    setClaimParameters(insert, claimWorld.getId(), 0, claim);
+                    insert.addBatch();
+                }
+                return insert.executeBatch();
+            });
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to update claim world in table", e);
         }
     }
 
+    @Override
+    public void insertClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        INSERT OR REPLACE INTO `%claims%` (`world_id`, `chunk_x`, `chunk_z`, `town_id`, `type`, `plot_members`)
+                        VALUES (?, ?, ?, ?, ?, ?)""");
+                setClaimParameters(statement, claimWorld.getId(), claim.town().getId(), claim.claim());
+                return statement.executeUpdate();
+            });
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to insert claim into table", e);
+        }
+    }
+
+    @Override
+    public void updateClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        UPDATE `%claims%`
+                        SET `town_id` = ?, `type` = ?, `plot_members` = ?
+                        WHERE `world_id` = ? AND `chunk_x` = ? AND `chunk_z` = ?""");
+                statement.setInt(1, claim.town().getId());
+                statement.setString(2, claim.claim().getType().name());
+                statement.setBytes(3, getPlotMemberData(claim.claim()));
+                statement.setInt(4, claimWorld.getId());
+                statement.setInt(5, claim.claim().getChunk().getX());
+                statement.setInt(6, claim.claim().getChunk().getZ());
+                return statement.executeUpdate();
+            });
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to update claim in table", e);
+        }
+    }
+
+    @Override
+    public void deleteClaim(@NotNull ClaimWorld claimWorld, @NotNull Chunk chunk) {
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        DELETE FROM `%claims%`
+                        WHERE `world_id` = ? AND `chunk_x` = ? AND `chunk_z` = ?""");
+                statement.setInt(1, claimWorld.getId());
+                statement.setInt(2, chunk.getX());
+                statement.setInt(3, chunk.getZ());
+                return statement.executeUpdate();
+            });
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to delete claim from table", e);
+        }
+    }
+
+    @Override
+    public void deleteTownClaims(int townId) {
+        try {
+            write(() -> {
+                final PreparedStatement statement = prepareWrite("""
+                        DELETE FROM `%claims%`
+                        WHERE `town_id` = ?""");
+                statement.setInt(1, townId);
+                return statement.executeUpdate();
+            });
+        } catch (SQLException e) {
+            plugin.log(Level.SEVERE, "Failed to delete town claims from table", e);
+        }
+    }
+
     @Override
     public void close() {
+        // Stop accepting changes, then wait for the writer to commit those already queued
+        this.closed = true;
+        if (writer != null) {
+            writes.add(new Write<>(null, new CompletableFuture<>()));
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final SQLException closedException = new SQLException("The SQLite database has been closed");
+        writes.forEach(write -> write.future().completeExceptionally(closedException));
+        writes.clear();
+
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            for (final PreparedStatement statement : writeStatements.values()) {
+                statement.close();
+            }
+            synchronized (readStatements) {
+                for (final PreparedStatement statement : readStatements.values()) {
+                    statement.close();
+                }
+            }
+            if (readConnection != null && !readConnection.isClosed()) {
+                readConnection.close();
+            }
+            if (writeConnection != null && !writeConnection.isClosed()) {
+                writeConnection.close();
             }
         } catch (SQLException e) {
             plugin.log(Level.SEVERE, "Failed to close connection", e);
         }
     }
 
+    /**
+     * A change or query to run against the database
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    private interface Task<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * A change queued for the writer thread; a change without a task tells the writer to stop
+     */
+    private record Write<T>(@Nullable Task<T> task, @NotNull CompletableFuture<T> future) {
+
+        // Run the change, returning how to notify the caller once the change has been committed
+        @NotNull
+        private Runnable run() throws SQLException {
+            final T result = Objects.requireNonNull(task).run();
+            return () -> future.complete(result);
+        }
+    }
+
 }
@@ -0,0 +1,99 @@
+package net.william278.husktowns.database;
+
+import net.william278.husktowns.user.SavedUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A bounded cache of saved users, keyed by UUID and indexed by lower-cased username
+ * <p>
+ * The least recently used user is evicted when the cache is full, and users expire a while after they were cached so
+ * changes made by other servers are eventually picked up.
+ */
+final class UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<UUID, Entry> users;
+    private final Map<String, UUID> usernames = new HashMap<>();
+
+    UserCache(int maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.users = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Nullable
+    synchronized SavedUser get(@NotNull UUID uuid) {
+        final Entry entry = users.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            remove(uuid);
+            return null;
+        }
+        return entry.user();
+    }
+
+    @Nullable
+    synchronized SavedUser get(@NotNull String username) {
+        final UUID uuid = usernames.get(username.toLowerCase(Locale.ENGLISH));
+        return uuid == null ? null : get(uuid);
+    }
+
+    synchronized void put(@NotNull SavedUser user) {
+        final UUID uuid = user.user().getUuid();
+        final String username = user.user().getUsername().toLowerCase(Locale.ENGLISH);
+        final Entry previous = users.put(uuid, new Entry(user, System.nanoTime() + ttlNanos));
+
+        // Drop the previous username of a user who renamed, and any other user who had the username before them
+        if (previous != null) {
+            usernames.remove(previous.username(), uuid);
+        }
+        final UUID previousOwner = usernames.put(username, uuid);
+        if (previousOwner != null && !previousOwner.equals(uuid)) {
+            users.remove(previousOwner);
+        }
+
+        if (users.size() > maxSize) {
+            remove(users.keySet().iterator().next());
+        }
+    }
+
+    synchronized void remove(@NotNull UUID uuid) {
+        final Entry entry = users.remove(uuid);
+        if (entry != null) {
+            usernames.remove(entry.username(), uuid);
+        }
+    }
+
+    synchronized void clear() {
+        users.clear();
+        usernames.clear();
+    }
+
+    synchronized int size() {
+        return users.size();
+    }
+
+    private record Entry(@NotNull SavedUser user, long expiry) {
+
+        @NotNull
+        private String username() {
+            return user.user().getUsername().toLowerCase(Locale.ENGLISH);
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiry > 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,478 @@
+package net.william278.husktowns.database;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.william278.husktowns.HuskTowns;
+import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.claim.*;
+import net.william278.husktowns.town.Town;
+import net.william278.husktowns.user.Preferences;
+import net.william278.husktowns.user.SavedUser;
+import net.william278.husktowns.user.User;
+import net.william278.husktowns.util.JsonMergePatch;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * A {@link Database} that buffers town updates in front of another database, writing them on a short interval.
+ * Repeated updates to the same town before a write are coalesced into one.
+ * <p>
+ * User updates are written immediately, as the user's preferences are read by the server they switch to. Claim world
+ * updates are also written immediately, as they replace every claim in the world, so writing one later would undo
+ * claims inserted, updated or deleted meanwhile.
+ * <p>
+ * Buffered updates are also written when the plugin reloads or shuts down. While the journal is enabled, each
+ * buffered update is appended to a journal file, which is replayed on startup if the server stopped before the update
+ * could be written.
+ */
+public final class WriteBehindDatabase extends Database {
+
+    private static final String JOURNAL_FILE_NAME = "HuskTownsJournal.log";
+    private static final String TOWN = "TOWN";
+    // Claim worlds were journaled before their updates were written immediately
+    private static final String WORLD = "WORLD";
+    private static final String USER = "USER";
+
+    private final Database database;
+    private final File journalFile;
+    private final boolean journal;
+    private final long maxLatency;
+    private final Map<Integer, PendingTown> towns = new ConcurrentHashMap<>();
+    private final Object journalLock = new Object();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    @Nullable
+    private Writer journalWriter;
+    private int flushTask = -1;
+
+    public WriteBehindDatabase(@NotNull HuskTowns plugin, @NotNull Database database) {
+        super(plugin);
+        this.database = database;
+        this.journalFile = new File(plugin.getDataFolder(), JOURNAL_FILE_NAME);
+        this.journal = plugin.getSettings().doWriteBehindJournal();
+        this.maxLatency = plugin.getSettings().getWriteBehindMaxLatency();
+    }
+
+    @Override
+    public void initialize() throws RuntimeException {
+        database.initialize();
+        if (!database.hasLoaded()) {
+            return;
+        }
+
+        // Write updates left over from a server that stopped before they were written
+        replayJournal();
+        if (journal) {
+            // Recovered updates that could not be written are kept in the journal
+            compactJournal();
+        }
+        final long period = Math.max(1, maxLatency / 50);
+        this.flushTask = plugin.runTimedAsync(this::flush, period, period);
+    }
+
+    @Override
+    public Optional<SavedUser> getUser(@NotNull UUID uuid) {
+        return database.getUser(uuid);
+    }
+
+    @Override
+    @NotNull
+    public Map<UUID, SavedUser> getUsers(@NotNull Collection<UUID> uuids) {
+        return database.getUsers(uuids);
+    }
+
+    @Override
+    public Optional<SavedUser> getUser(@NotNull String username) {
+        return database.getUser(username);
+    }
+
+    @Override
+    public void createUser(@NotNull User user, @NotNull Preferences preferences) {
+        database.createUser(user, preferences);
+    }
+
+    @Override
+    public void updateUser(@NotNull User user, @NotNull Preferences preferences) {
+        database.updateUser(user, preferences);
+    }
+
+    @Override
+    public void invalidateUser(@NotNull UUID uuid) {
+        database.invalidateUser(uuid);
+    }
+
+    @Override
+    public void deleteAllUsers() {
+        database.deleteAllUsers();
+    }
+
+    @Override
+    public Optional<Town> getTown(int townId) {
+        final PendingTown pending = towns.get(townId);
+        if (pending != null) {
+            return Optional.of(pending.town());
+        }
+        return database.getTown(townId);
+    }
+
+    @Override
+    @NotNull
+    public List<Town> getAllTowns() {
+        flush();
+        return database.getAllTowns();
+    }
+
+    @Override
+    @NotNull
+    public Town createTown(@NotNull String name, @NotNull User creator) {
+        return database.createTown(name, creator);
+    }
+
+    // The town is written later, so conflicts with updates made by other servers are only detected by callbacks
+    @Override
+    @NotNull
+    public UpdateResult updateTown(@NotNull Town town, @Nullable JsonObject changes) {
+        queueTown(town, changes, null);
+        return UpdateResult.WRITTEN;
+    }
+
+    @Override
+    public void updateTown(@NotNull Town town, @Nullable JsonObject changes,
+                           @NotNull BiConsumer<UpdateResult, JsonObject> callback) {
+        queueTown(town, changes, callback);
+    }
+
+    private void queueTown(@NotNull Town town, @Nullable JsonObject changes,
+                           @Nullable BiConsumer<UpdateResult, JsonObject> callback) {
+        final String line = journal ? String.join("\t", TOWN, Integer.toString(town.getId()),
+                plugin.getGson().toJson(town), Long.toString(town.getVersion())) : null;
+        synchronized (journalLock) {
+            // Callbacks of coalesced updates are kept, so each runs once the latest state is written
+            final PendingTown previous = towns.get(town.getId());
+            queue(towns.put(town.getId(), new PendingTown(town, combineChanges(previous, town, changes),
+                    combine(previous, callback), line)), line);
+        }
+    }
+
+    // Changes of coalesced updates to the same town are combined, so those not yet written are kept; a different copy
+    // of the town supersedes the queued one, so is written in full
+    @Nullable
+    private static JsonObject combineChanges(@Nullable PendingTown previous, @NotNull Town town,
+                                             @Nullable JsonObject changes) {
+        if (previous == null) {
+            return changes;
+        }
+        if (previous.town() != town || previous.changes() == null || changes == null) {
+            return null;
+        }
+        return JsonMergePatch.combine(previous.changes(), changes).orElse(null);
+    }
+
+    @Nullable
+    private static BiConsumer<UpdateResult, JsonObject> combine(@Nullable PendingTown previous,
+                                                                @Nullable BiConsumer<UpdateResult, JsonObject> callback) {
+        if (previous == null || previous.callback() == null) {
+            return callback;
+        }
+        return callback == null ? previous.callback() : previous.callback().andThen(callback);
+    }
+
+    @Override
+    public int getArchivedActionCount(int townId, @NotNull OffsetDateTime before) {
+        return database.getArchivedActionCount(townId, before);
+    }
+
+    @Override
+    @NotNull
+    public List<Map.Entry<OffsetDateTime, Action>> getArchivedActions(int townId, @NotNull OffsetDateTime before,
+                                                                       int offset, int limit) {
+        return database.getArchivedActions(townId, before, offset, limit);
+    }
+
+    @Override
+    public void deleteTown(int townId) {
+        towns.remove(townId);
+        database.deleteTown(townId);
+    }
+
+    @Override
+    public void deleteAllTowns() {
+        towns.clear();
+        database.deleteAllTowns();
+    }
+
+    @Override
+    @NotNull
+    public Map<World, ClaimWorld> getClaimWorlds(@NotNull String server) {
+        return database.getClaimWorlds(server);
+    }
+
+    @Override
+    @NotNull
+    public Map<ServerWorld, ClaimWorld> getAllClaimWorlds() {
+        return database.getAllClaimWorlds();
+    }
+
+    @Override
+    @NotNull
+    public ClaimWorld createClaimWorld(@NotNull World world) {
+        return database.createClaimWorld(world);
+    }
+
+    @Override
+    public void updateClaimWorld(@NotNull ClaimWorld claimWorld) {
+        database.updateClaimWorld(claimWorld);
+    }
+
+    @Override
+    public void insertClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        database.insertClaim(claimWorld, claim);
+    }
+
+    @Override
+    public void updateClaim(@NotNull ClaimWorld claimWorld, @NotNull TownClaim claim) {
+        database.updateClaim(claimWorld, claim);
+    }
+
+    @Override
+    public void deleteClaim(@NotNull ClaimWorld claimWorld, @NotNull Chunk chunk) {
+        database.deleteClaim(claimWorld, chunk);
+    }
+
+    @Override
+    public void deleteTownClaims(int townId) {
+        database.deleteTownClaims(townId);
+    }
+
+    /**
+     * Write all buffered updates to the database
+     */
+    @Override
+    public synchronized void flush() {
+        if (getQueueDepth() == 0) {
+            return;
+        }
+
+        // Entries are removed before they are written, so updates queued meanwhile are written by the next flush. An
+        // entry that fails to be written is queued again, unless a later update to it was queued meanwhile
+        towns.forEach((id, pending) -> {
+            if (towns.remove(id, pending)) {
+                UpdateResult result;
+                try {
+                    result = database.updateTown(pending.town(), pending.changes());
+                } catch (RuntimeException e) {
+                    plugin.log(Level.SEVERE, "Failed to write an update to town #" + id, e);
+                    result = UpdateResult.FAILED;
+                }
+                if (result == UpdateResult.FAILED) {
+                    requeueTown(pending);
+                    return;
+                }
+                BiConsumer<UpdateResult, JsonObject> callback = pending.callback();
+                if (result == UpdateResult.CONFLICT) {
+                    // Updates queued meanwhile were made to the same outdated town, so are rejected along with it
+                    final PendingTown outdated = towns.get(id);
+                    if (outdated != null && outdated.town().getVersion() == pending.town().getVersion()
+                        && towns.remove(id, outdated)) {
+                        callback = combine(pending, outdated.callback());
+                    }
+                    if (callback == null) {
+                        plugin.log(Level.WARNING, "Discarded an update to town #" + id
+                                                  + ", as it was updated by another server");
+                    }
+                }
+                if (callback != null) {
+                    try {
+                        callback.accept(result, pending.changes());
+                    } catch (RuntimeException e) {
+                        plugin.log(Level.WARNING, "Failed to run callback after updating town #" + id, e);
+                    }
+                }
+            }
+        });
+        if (journal) {
+            compactJournal();
+        }
+    }
+
+    // Queue a town update that failed to be written again, so it is retried by the next flush and kept in the journal.
+    // The town is written in full, as changes queued meanwhile were not combined with those that failed
+    private void requeueTown(@NotNull PendingTown failed) {
+        synchronized (journalLock) {
+            towns.compute(failed.town().getId(), (id, queued) -> queued == null
+                    ? new PendingTown(failed.town(), null, failed.callback(), failed.line())
+                    : new PendingTown(queued.town(), null, combine(failed, queued.callback()), queued.line()));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flushTask != -1) {
+            plugin.cancelTask(flushTask);
+        }
+        flush();
+        closeJournal();
+        database.close();
+    }
+
+    @Override
+    public boolean hasLoaded() {
+        return database.hasLoaded();
+    }
+
+    /**
+     * Get the number of towns with updates waiting to be written
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return towns.size();
+    }
+
+    /**
+     * Get the fraction of queued updates that were coalesced into a later update, rather than written separately
+     *
+     * @return the coalescing ratio, from {@code 0} to {@code 1}
+     */
+    public double getCoalescingRatio() {
+        final long total = queued.sum();
+        return total == 0 ? 0 : (double) coalesced.sum() / total;
+    }
+
+    // Count a queued update and append it to the journal; must be called while holding the journal lock
+    private void queue(@Nullable Object replaced, @Nullable String line) {
+        queued.increment();
+        if (replaced != null) {
+            coalesced.increment();
+        }
+        if (line != null && journalWriter != null) {
+            try {
+                journalWriter.write(line);
+                journalWriter.write('\n');
+                journalWriter.flush();
+            } catch (IOException e) {
+                plugin.log(Level.WARNING, "Failed to append an update to the write journal", e);
+            }
+        }
+    }
+
+    private void openJournal() {
+        synchronized (journalLock) {
+            try {
+                this.journalWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                plugin.log(Level.WARNING, "Failed to open the write journal", e);
+            }
+        }
+    }
+
+    // Rewrite the journal so it only holds the updates that are still waiting to be written
+    private void compactJournal() {
+        synchronized (journalLock) {
+            closeJournal();
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(journalFile, false), StandardCharsets.UTF_8))) {
+                for (final PendingTown pending : towns.values()) {
+                    writer.write(pending.line() + '\n');
+                }
+            } catch (IOException e) {
+                plugin.log(Level.WARNING, "Failed to compact the write journal", e);
+            }
+            openJournal();
+        }
+    }
+
+    private void closeJournal() {
+        synchronized (journalLock) {
+            if (journalWriter != null) {
+                try {
+                    journalWriter.close();
+                } catch (IOException e) {
+                    plugin.log(Level.WARNING, "Failed to close the write journal", e);
+                }
+                journalWriter = null;
+            }
+            if (journalFile.exists() && journalFile.length() == 0 && !journalFile.delete()) {
+                plugin.log(Level.WARNING, "Failed to delete the empty write journal");
+            }
+        }
+    }
+
+    private void replayJournal() {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        // Later lines supersede earlier ones for the same town or user
+        final Map<String, String[]> entries = new LinkedHashMap<>();
+        try {
+            for (final String line : Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                final String[] entry = line.split("\t");
+                if (entry.length >= 3) {
+                    entries.remove(entry[0] + entry[1]);
+                    entries.put(entry[0] + entry[1], entry);
+                }
+            }
+        } catch (IOException e) {
+            plugin.log(Level.SEVERE, "Failed to read the write journal", e);
+            return;
+        }
+
+        if (!entries.isEmpty()) {
+            plugin.log(Level.INFO, "Writing " + entries.size() + " updates recovered from the write journal...");
+        }
+        for (final String[] entry : entries.values()) {
+            try {
+                switch (entry[0]) {
+                    case TOWN -> {
+                        final Town town = plugin.getGson().fromJson(entry[2], Town.class);
+                        town.setId(Integer.parseInt(entry[1]));
+
+                        // Towns were journaled without their version before they were versioned
+                        town.setVersion(entry.length >= 4 ? Long.parseLong(entry[3])
+                                : database.getTown(town.getId()).map(Town::getVersion).orElse(0L));
+                        final UpdateResult result = database.updateTown(town);
+                        if (result == UpdateResult.CONFLICT) {
+                            plugin.log(Level.WARNING, "Skipped a write journal update to town #" + town.getId()
+                                                      + ", as it has since been updated by another server");
+                        } else if (result == UpdateResult.FAILED) {
+                            requeueTown(new PendingTown(town, null, null, String.join("\t", entry)));
+                        }
+                    }
+                    // Replaying the claim world would undo claims since inserted, updated or deleted on its own
+                    case WORLD -> plugin.log(Level.WARNING, "Skipped a write journal update to claim world #"
+                                                            + entry[1] + ", as it may be older than its claims");
+                    case USER -> {
+                        // Users were journaled before their updates were written immediately
+                        if (entry.length >= 4) {
+                            database.updateUser(User.of(UUID.fromString(entry[1]), entry[2]),
+                                    plugin.getGson().fromJson(entry[3], Preferences.class));
+                        }
+                    }
+                    default -> plugin.log(Level.WARNING, "Skipped an unknown write journal entry: " + entry[0]);
+                }
+            } catch (JsonParseException | IllegalArgumentException e) {
+                plugin.log(Level.WARNING, "Skipped a malformed write journal entry", e);
+            }
+        }
+        if (!journalFile.delete()) {
+            plugin.log(Level.WARNING, "Failed to delete the replayed write journal");
+        }
+    }
+
+    private record PendingTown(@NotNull Town town, @Nullable JsonObject changes,
+                               @Nullable BiConsumer<UpdateResult, JsonObject> callback, @Nullable String line) {
+    }
+
+}
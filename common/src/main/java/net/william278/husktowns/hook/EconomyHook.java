@@ -14,7 +14,14 @@ public abstract class EconomyHook extends Hook {
 
     public abstract boolean hasMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount);
 
-    public abstract void takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount);
+    /**
+     * Take money from a user, if they have enough
+     *
+     * @param user   the user to take money from
+     * @param amount the amount to take
+     * @return whether the money was taken
+     */
+    public abstract boolean takeMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount);
 
     public abstract void giveMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount);
 
@@ -0,0 +1,161 @@
+package net.william278.husktowns.listener;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct-mapped cache of claim operation decisions, keyed by town ID, claim type, the acting user's relationship to
+ * the town and the operation type.
+ * <p>
+ * Each slot packs its key and decision into a single {@code long}, so reads and writes are lock-free, never tear and
+ * never allocate. Colliding keys simply evict each other.
+ * <p>
+ * Invalidating a town advances its generation, so a decision evaluated while the town was being invalidated is
+ * not cached.
+ */
+final class DecisionCache {
+
+    private static final int SLOTS = 1 << 12;
+    private static final long VALID_BIT = 1L << 62;
+    private static final int DECISION_SHIFT = 57;
+    private static final long KEY_MASK = (1L << DECISION_SHIFT) - 1;
+    // Towns share generations across a fixed number of stripes
+    private static final int GENERATIONS = 1 << 6;
+    // Relationship value for users who are not members of the town
+    static final int OUTSIDER = Short.MIN_VALUE;
+
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns whether a relationship value can be cached; role weights must fit in 16 bits
+     *
+     * @param relationship the role weight, or {@link #OUTSIDER}
+     * @return {@code true} if the relationship can be packed into a cache key
+     */
+    static boolean isCacheable(int relationship) {
+        return relationship >= Short.MIN_VALUE && relationship <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Pack the inputs of a decision into a cache key
+     *
+     * @param townId       the town ID
+     * @param claimType    the claim type ordinal
+     * @param relationship the acting user's role weight, or {@link #OUTSIDER}
+     * @param operation    the operation type ordinal
+     * @return the packed key
+     */
+    static long key(int townId, int claimType, int relationship, int operation) {
+        return (townId & 0xFFFFFFFFL)
+               | ((long) (claimType & 0x3) << 32)
+               | ((long) (operation & 0x3F) << 34)
+               | ((long) (relationship & 0xFFFF) << 40);
+    }
+
+    /**
+     * Get the cached decision for a key
+     *
+     * @param key the packed key
+     * @return the decision, or {@code null} if it is not cached
+     */
+    Decision get(long key) {
+        final long slot = slots.get(slot(key));
+        if ((slot & VALID_BIT) != 0 && (slot & KEY_MASK) == key) {
+            hits.increment();
+            return Decision.VALUES[(int) (slot >>> DECISION_SHIFT) & 0x3];
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Get the generation of a town's decisions, to read before evaluating a decision to cache
+     *
+     * @param townId the town ID
+     * @return the generation
+     */
+    long generation(int townId) {
+        return generations.get(townId & (GENERATIONS - 1));
+    }
+
+    /**
+     * Cache a decision, unless its town was invalidated since the decision was evaluated
+     *
+     * @param key        the packed key
+     * @param decision   the decision
+     * @param generation the {@link #generation(int) generation} of the town before the decision was evaluated
+     */
+    void put(long key, @NotNull Decision decision, long generation) {
+        final int index = slot(key);
+        final long slot = VALID_BIT | ((long) decision.ordinal() << DECISION_SHIFT) | key;
+        slots.set(index, slot);
+
+        // An invalidation that advanced the generation before this check may have evicted the town already
+        if (generation((int) key) != generation) {
+            slots.compareAndSet(index, slot, 0L);
+        }
+    }
+
+    /**
+     * Evict all cached decisions for a town
+     *
+     * @param townId the town ID
+     */
+    void invalidate(int townId) {
+        generations.incrementAndGet(townId & (GENERATIONS - 1));
+        for (int i = 0; i < SLOTS; i++) {
+            final long slot = slots.get(i);
+            if ((slot & VALID_BIT) != 0 && (int) slot == townId) {
+                slots.compareAndSet(i, slot, 0L);
+            }
+        }
+    }
+
+    void invalidateAll() {
+        for (int i = 0; i < GENERATIONS; i++) {
+            generations.incrementAndGet(i);
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            slots.set(i, 0L);
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    private static int slot(long key) {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 52) & (SLOTS - 1);
+    }
+
+    /**
+     * The outcome of evaluating town rules and membership privileges for an operation in a claim
+     */
+    enum Decision {
+        /**
+         * The operation is allowed
+         */
+        ALLOW,
+        /**
+         * The operation is not allowed, as the user is not a member of the town
+         */
+        CANCEL_NOT_MEMBER,
+        /**
+         * The operation is not allowed, as the user lacks the privilege to bypass the claim rules
+         */
+        CANCEL_PRIVILEGES;
+
+        private static final Decision[] VALUES = values();
+    }
+
+}
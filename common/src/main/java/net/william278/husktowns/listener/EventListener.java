@@ -27,6 +27,8 @@ public class EventListener {
 
     protected void onPlayerJoin(@NotNull OnlineUser user) {
         plugin.runAsync(() -> {
+            // Another server may have updated the user since they were cached
+            plugin.getDatabase().invalidateUser(user.getUuid());
             final Optional<SavedUser> userData = plugin.getDatabase().getUser(user.getUuid());
             if (userData.isEmpty()) {
                 plugin.getDatabase().createUser(user, Preferences.getDefaults());
@@ -74,6 +76,10 @@ public class EventListener {
         });
     }
 
+    protected void onPlayerQuit(@NotNull OnlineUser user) {
+        handler().clearCurrentClaim(user.getUuid());
+    }
+
     protected void onPlayerInspect(@NotNull OnlineUser user, @NotNull Position position) {
         final Optional<TownClaim> claim = plugin.getClaimAt(position);
         if (claim.isPresent()) {
@@ -0,0 +1,53 @@
+package net.william278.husktowns.listener;
+
+import net.william278.husktowns.claim.ClaimWorld;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Direct-mapped cache of recent natural occurrence checks between pairs of chunks, such as fluids flowing or pistons
+ * pushing blocks across a claim border.
+ * <p>
+ * Each result is stamped with the {@link ClaimWorld} and its claim revision, so results are never served after the
+ * claims in the world have changed. Colliding pairs simply evict each other.
+ */
+final class NatureCache {
+
+    private static final int SLOTS = 1 << 10;
+
+    private final AtomicReferenceArray<Pair> slots = new AtomicReferenceArray<>(SLOTS);
+
+    /**
+     * Get the cached result for a pair of chunks
+     *
+     * @param claimWorld  the claim world the chunks are in
+     * @param source      the packed key of the source chunk
+     * @param destination the packed key of the destination chunk
+     * @return whether to cancel the occurrence, or {@code null} if it is not cached
+     */
+    @Nullable
+    Boolean get(@NotNull ClaimWorld claimWorld, long source, long destination) {
+        final Pair pair = slots.get(slot(source, destination));
+        if (pair != null && pair.claimWorld() == claimWorld && pair.revision() == claimWorld.getRevision()
+            && pair.source() == source && pair.destination() == destination) {
+            return pair.cancel();
+        }
+        return null;
+    }
+
+    void put(@NotNull ClaimWorld claimWorld, int revision, long source, long destination, boolean cancel) {
+        slots.set(slot(source, destination), new Pair(claimWorld, revision, source, destination, cancel));
+    }
+
+    private static int slot(long source, long destination) {
+        final long mixed = (source * 0x9E3779B97F4A7C15L) ^ (destination * 0xC2B2AE3D27D4EB4FL);
+        return (int) (mixed >>> 54) & (SLOTS - 1);
+    }
+
+    private record Pair(@NotNull ClaimWorld claimWorld, int revision, long source, long destination,
+                        boolean cancel) {
+    }
+
+}
@@ -4,23 +4,46 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.claim.*;
+import net.william278.husktowns.config.Presets;
 import net.william278.husktowns.town.Member;
 import net.william278.husktowns.town.Privilege;
 import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.OnlineUser;
 import net.william278.husktowns.user.Preferences;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OperationHandler {
     private static final String ADMIN_CLAIM_ACCESS_PERMISSION = "husktowns.admin_claim_access";
     private final HuskTowns plugin;
+    private final DecisionCache decisionCache = new DecisionCache();
+    private final NatureCache natureCache = new NatureCache();
+    // Wilderness and unclaimable world rules, compiled from the currently loaded presets
+    private PresetRules presetRules;
+    // The chunk each online player was last seen in, and the claim there
+    private final Map<UUID, CurrentClaim> currentClaims = new ConcurrentHashMap<>();
 
     public OperationHandler(@NotNull HuskTowns plugin) {
         this.plugin = plugin;
     }
 
+    @NotNull
+    private PresetRules getPresetRules() {
+        final Presets presets = plugin.getRulePresets();
+        PresetRules rules = this.presetRules;
+        if (rules == null || rules.presets() != presets) {
+            rules = new PresetRules(presets, presets.getWildernessRules(), presets.getUnclaimableWorldRules());
+            this.presetRules = rules;
+        }
+        return rules;
+    }
+
     /**
      * Returns whether to cancel an {@link Operation}
      *
@@ -38,14 +61,14 @@ public class OperationHandler {
             return cancelOperation(operation, claim.get());
         }
         final Optional<ClaimWorld> world = plugin.getClaimWorld(operation.getPosition().getWorld());
-        if (world.isEmpty() && plugin.getRulePresets().getUnclaimableWorldRules().cancelOperation(operation.getType())) {
+        if (world.isEmpty() && getPresetRules().unclaimableWorld().cancelOperation(operation.getType())) {
             if (operation.isVerbose() && operation.getUser().isPresent()) {
                 plugin.getLocales().getLocale("operation_cancelled")
                         .ifPresent(operation.getUser().get()::sendMessage);
             }
             return true;
         }
-        if (plugin.getRulePresets().getWildernessRules().cancelOperation(operation.getType())) {
+        if (getPresetRules().wilderness().cancelOperation(operation.getType())) {
             if (operation.isVerbose() && operation.getUser().isPresent()) {
                 plugin.getLocales().getLocale("operation_cancelled")
                         .ifPresent(operation.getUser().get()::sendMessage);
@@ -55,6 +78,88 @@ public class OperationHandler {
         return false;
     }
 
+    /**
+     * Returns whether to cancel an {@link Operation} with no acting user at a block position, such as an explosion
+     * or fire spreading. Unlike {@link #cancelOperation(Operation)}, this does not require a {@link Position}, so can
+     * be called once per block without allocating.
+     *
+     * @param type   the type of operation
+     * @param world  the world the block is in
+     * @param blockX the block x coordinate
+     * @param blockZ the block z coordinate
+     * @return whether to cancel the operation
+     */
+    public boolean cancelOperation(@NotNull Operation.Type type, @NotNull World world, int blockX, int blockZ) {
+        if (!plugin.isLoaded()) {
+            return true;
+        }
+        return cancelOperationInChunk(type, plugin.getClaimWorlds().get(world.getName()), blockX >> 4, blockZ >> 4);
+    }
+
+    /**
+     * Returns which of a batch of {@link Operation}s with no acting user, all of the same type, to cancel, such as the
+     * blocks destroyed by an explosion. Blocks are grouped by chunk, so the claim and rules of each chunk are only
+     * evaluated once.
+     *
+     * @param type    the type of operation
+     * @param world   the world the blocks are in
+     * @param blockXs the x coordinates of the blocks
+     * @param blockZs the z coordinates of the blocks, at the same indices as the x coordinates
+     * @return a {@link BitSet} with the index of each block whose operation should be cancelled set
+     * @throws IllegalArgumentException if the coordinate arrays differ in length
+     */
+    @NotNull
+    public BitSet cancelOperations(@NotNull Operation.Type type, @NotNull World world,
+                                   int @NotNull [] blockXs, int @NotNull [] blockZs) throws IllegalArgumentException {
+        if (blockXs.length != blockZs.length) {
+            throw new IllegalArgumentException("Block coordinate arrays must be the same length");
+        }
+        final BitSet cancelled = new BitSet(blockXs.length);
+        if (!plugin.isLoaded()) {
+            cancelled.set(0, blockXs.length);
+            return cancelled;
+        }
+
+        // Open-addressed table of the outcome for each distinct chunk in the batch
+        final ClaimWorld claimWorld = plugin.getClaimWorlds().get(world.getName());
+        final int capacity = Integer.highestOneBit(Math.max(1, blockXs.length) * 2 - 1) << 1;
+        final long[] chunkKeys = new long[capacity];
+        final byte[] outcomes = new byte[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < blockXs.length; i++) {
+            final int chunkX = blockXs[i] >> 4;
+            final int chunkZ = blockZs[i] >> 4;
+            final long key = Chunk.key(chunkX, chunkZ);
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (outcomes[slot] != 0 && chunkKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (outcomes[slot] == 0) {
+                chunkKeys[slot] = key;
+                outcomes[slot] = (byte) (cancelOperationInChunk(type, claimWorld, chunkX, chunkZ) ? 2 : 1);
+            }
+            if (outcomes[slot] == 2) {
+                cancelled.set(i);
+            }
+        }
+        return cancelled;
+    }
+
+    // Returns whether to cancel an operation with no acting user in a chunk; a null claim world is unclaimable
+    private boolean cancelOperationInChunk(@NotNull Operation.Type type, @Nullable ClaimWorld claimWorld,
+                                           int chunkX, int chunkZ) {
+        if (claimWorld == null) {
+            return getPresetRules().unclaimableWorld().cancelOperation(type)
+                   || getPresetRules().wilderness().cancelOperation(type);
+        }
+        final Optional<TownClaim> claim = claimWorld.getClaimAt(chunkX, chunkZ, plugin);
+        if (claim.isPresent()) {
+            return getDecision(claim.get().town(), claim.get().claim().getType(), null, type)
+                   != DecisionCache.Decision.ALLOW;
+        }
+        return getPresetRules().wilderness().cancelOperation(type);
+    }
+
     /**
      * Returns whether to cancel an operation that takes place in a claim
      *
@@ -67,57 +172,113 @@ public class OperationHandler {
         final Town town = townClaim.town();
         final Claim claim = townClaim.claim();
 
-        // If the operation is not allowed by the claim flags
-        if (town.getRules().get(claim.getType()).cancelOperation(operation.getType())) {
-            if (optionalUser.isEmpty()) {
-                return true;
-            }
+        // Determine the outcome from the claim flags and the user's role in the town
+        final Optional<Member> member = optionalUser.flatMap(plugin::getUserTown)
+                .filter(townMember -> townMember.town().equals(town));
+        final DecisionCache.Decision decision = getDecision(town, claim.getType(), member.orElse(null),
+                operation.getType());
+        if (decision == DecisionCache.Decision.ALLOW) {
+            return false;
+        }
+        if (optionalUser.isEmpty()) {
+            return true;
+        }
 
-            // Handle admin claims
-            final OnlineUser user = optionalUser.get();
-            if (townClaim.isAdminClaim(plugin) && user.hasPermission(ADMIN_CLAIM_ACCESS_PERMISSION)) {
-                return false;
-            }
+        // Handle admin claims
+        final OnlineUser user = optionalUser.get();
+        if (townClaim.isAdminClaim(plugin) && user.hasPermission(ADMIN_CLAIM_ACCESS_PERMISSION)) {
+            return false;
+        }
 
-            // Handle plot memberships
-            final Claim.Type claimType = claim.getType();
-            if (claimType == Claim.Type.PLOT && claim.isPlotMember(user.getUuid())) {
-                return false;
-            }
+        // Handle plot memberships
+        final Claim.Type claimType = claim.getType();
+        if (claimType == Claim.Type.PLOT && claim.isPlotMember(user.getUuid())) {
+            return false;
+        }
 
-            // Handle ignoring claims
-            if (plugin.getUserPreferences(user.getUuid()).map(Preferences::isIgnoringClaims).orElse(false)) {
-                return false;
-            }
+        // Handle ignoring claims
+        if (plugin.getUserPreferences(user.getUuid()).map(Preferences::isIgnoringClaims).orElse(false)) {
+            return false;
+        }
 
-            final Optional<Member> optionalMember = plugin.getUserTown(user);
-            if (optionalMember.isEmpty()) {
-                if (operation.isVerbose()) {
-                    plugin.getLocales().getLocale("operation_cancelled_claimed",
-                            town.getName()).ifPresent(user::sendMessage);
-                }
-                return true;
+        if (operation.isVerbose()) {
+            if (decision == DecisionCache.Decision.CANCEL_NOT_MEMBER) {
+                plugin.getLocales().getLocale("operation_cancelled_claimed",
+                        town.getName()).ifPresent(user::sendMessage);
+            } else {
+                plugin.getLocales().getLocale("operation_cancelled_privileges")
+                        .ifPresent(user::sendMessage);
             }
+        }
+        return true;
+    }
 
-            final Member member = optionalMember.get();
-            if (!member.town().equals(town)) {
-                if (operation.isVerbose()) {
-                    plugin.getLocales().getLocale("operation_cancelled_claimed",
-                            town.getName()).ifPresent(user::sendMessage);
-                }
-                return true;
-            }
+    // Get the decision for an operation by a town member or outsider, from the decision cache where possible
+    @NotNull
+    private DecisionCache.Decision getDecision(@NotNull Town town, @NotNull Claim.Type claimType,
+                                               @Nullable Member member, @NotNull Operation.Type type) {
+        final int relationship = member != null ? member.role().getWeight() : DecisionCache.OUTSIDER;
+        if (!DecisionCache.isCacheable(relationship)) {
+            return decide(town, claimType, member, type);
+        }
 
-            if (!member.hasPrivilege(plugin, Privilege.TRUSTED_ACCESS)) {
-                if (operation.isVerbose()) {
-                    plugin.getLocales().getLocale("operation_cancelled_privileges")
-                            .ifPresent(user::sendMessage);
-                }
-                return true;
-            }
-            return false;
+        final long key = DecisionCache.key(town.getId(), claimType.ordinal(), relationship, type.ordinal());
+        DecisionCache.Decision decision = decisionCache.get(key);
+        if (decision == null) {
+            final long generation = decisionCache.generation(town.getId());
+            decision = decide(town, claimType, member, type);
+            decisionCache.put(key, decision, generation);
         }
-        return false;
+        return decision;
+    }
+
+    @NotNull
+    private DecisionCache.Decision decide(@NotNull Town town, @NotNull Claim.Type claimType,
+                                          @Nullable Member member, @NotNull Operation.Type type) {
+        if (!town.getRules().get(claimType).cancelOperation(type)) {
+            return DecisionCache.Decision.ALLOW;
+        }
+        if (member == null) {
+            return DecisionCache.Decision.CANCEL_NOT_MEMBER;
+        }
+        if (!member.hasPrivilege(plugin, Privilege.TRUSTED_ACCESS)) {
+            return DecisionCache.Decision.CANCEL_PRIVILEGES;
+        }
+        return DecisionCache.Decision.ALLOW;
+    }
+
+    /**
+     * Invalidate cached operation decisions for a town. Must be called when the town's rules are changed.
+     *
+     * @param townId the ID of the town
+     */
+    public void invalidateDecisions(int townId) {
+        decisionCache.invalidate(townId);
+    }
+
+    /**
+     * Invalidate all cached operation decisions, such as when roles or rule presets are reloaded
+     */
+    public void invalidateDecisions() {
+        decisionCache.invalidateAll();
+    }
+
+    /**
+     * Get the number of operation decisions served from the decision cache
+     *
+     * @return the decision cache hit count
+     */
+    public long getDecisionCacheHits() {
+        return decisionCache.getHits();
+    }
+
+    /**
+     * Get the number of operation decisions that were not cached and had to be evaluated
+     *
+     * @return the decision cache miss count
+     */
+    public long getDecisionCacheMisses() {
+        return decisionCache.getMisses();
     }
 
     /**
@@ -130,15 +291,63 @@ public class OperationHandler {
      */
     public boolean cancelNature(@NotNull Chunk chunk1, @NotNull Chunk chunk2,
                                 @NotNull World world) {
-        if (plugin.getClaimWorld(world).isEmpty()) {
+        final ClaimWorld claimWorld = plugin.getClaimWorlds().get(world.getName());
+        if (claimWorld == null) {
+            return false;
+        }
+        return cancelNature(claimWorld, chunk1.getKey(), chunk2.getKey());
+    }
+
+    /**
+     * Returns whether to cancel a natural occurrence from one chunk into any of a set of chunks, such as a piston
+     * moving several blocks. Each distinct pair of chunks is only evaluated once, and recent results are memoized.
+     *
+     * @param source       the chunk the occurrence originates from
+     * @param destinations the packed keys of the chunks affected, as returned by {@link Chunk#key(int, int)}
+     * @param world        the world the chunks are in
+     * @return whether to cancel the natural occurrence
+     */
+    public boolean cancelNature(@NotNull Chunk source, long @NotNull [] destinations, @NotNull World world) {
+        final ClaimWorld claimWorld = plugin.getClaimWorlds().get(world.getName());
+        if (claimWorld == null) {
+            return false;
+        }
+        final long sourceKey = source.getKey();
+        long previous = sourceKey;
+        for (final long destination : destinations) {
+            // Adjacent moved blocks are usually in the same chunk, so skip runs of repeated keys
+            if (destination == previous) {
+                continue;
+            }
+            previous = destination;
+            if (cancelNature(claimWorld, sourceKey, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Nature may cross between chunks claimed by the same town, or between unclaimed chunks
+    private boolean cancelNature(@NotNull ClaimWorld claimWorld, long source, long destination) {
+        if (source == destination) {
             return false;
         }
-        final Optional<TownClaim> claim1 = plugin.getClaimAt(chunk1, world);
-        final Optional<TownClaim> claim2 = plugin.getClaimAt(chunk2, world);
+        final Boolean cached = natureCache.get(claimWorld, source, destination);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int revision = claimWorld.getRevision();
+        final Optional<TownClaim> claim1 = claimWorld.getClaimAt((int) (source >> 32), (int) source, plugin);
+        final Optional<TownClaim> claim2 = claimWorld.getClaimAt((int) (destination >> 32), (int) destination, plugin);
+        final boolean cancel;
         if (claim1.isPresent() && claim2.isPresent()) {
-            return !claim1.get().town().equals(claim2.get().town());
+            cancel = !claim1.get().town().equals(claim2.get().town());
+        } else {
+            cancel = !(claim1.isEmpty() && claim2.isEmpty());
         }
-        return !(claim1.isEmpty() && claim2.isEmpty());
+        natureCache.put(claimWorld, revision, source, destination, cancel);
+        return cancel;
     }
 
     /**
@@ -150,8 +359,8 @@ public class OperationHandler {
      * @return whether to cancel the chunk change
      */
     public boolean cancelChunkChange(@NotNull OnlineUser user, @NotNull Position from, @NotNull Position to) {
-        final Optional<TownClaim> fromClaim = plugin.getClaimAt(from);
-        final Optional<TownClaim> toClaim = plugin.getClaimAt(to);
+        final Optional<TownClaim> fromClaim = getCurrentClaim(user.getUuid(), from);
+        final Optional<TownClaim> toClaim = getCurrentClaim(user.getUuid(), to);
 
         // Auto-claiming
         if (toClaim.isEmpty() && plugin.getUserPreferences(user.getUuid())
@@ -202,5 +411,69 @@ public class OperationHandler {
         return false;
     }
 
+    /**
+     * Get the claim at a player's position, tracking it as their current claim.
+     * <p>
+     * If the player is still in the chunk they were last tracked in, and no claims in the world have changed since,
+     * the tracked claim is returned without looking it up again.
+     *
+     * @param uuid     the {@link UUID} of the player
+     * @param position the player's position
+     * @return the {@link TownClaim} at the position, if any
+     */
+    public Optional<TownClaim> getCurrentClaim(@NotNull UUID uuid, @NotNull Position position) {
+        final String worldName = position.getWorld().getName();
+        final int chunkX = position.getChunkX();
+        final int chunkZ = position.getChunkZ();
+        final ClaimWorld claimWorld = plugin.getClaimWorlds().get(worldName);
+        final CurrentClaim current = currentClaims.get(uuid);
+        if (current != null && current.isValid(worldName, chunkX, chunkZ, claimWorld)) {
+            return Optional.ofNullable(current.claim()).map(this::refreshTown);
+        }
+
+        // Read the revision before looking up the claim, so a concurrent change always invalidates the entry
+        final int revision = claimWorld != null ? claimWorld.getRevision() : 0;
+        final Optional<TownClaim> claim = claimWorld != null && claimWorld.isClaimed(chunkX, chunkZ)
+                ? claimWorld.getClaimAt(position.getChunk(), plugin) : Optional.empty();
+        currentClaims.put(uuid, new CurrentClaim(worldName, chunkX, chunkZ, claimWorld, revision,
+                claim.orElse(null)));
+        return claim;
+    }
+
+    /**
+     * Stop tracking the current claim of a player, such as when they disconnect
+     *
+     * @param uuid the {@link UUID} of the player
+     */
+    public void clearCurrentClaim(@NotNull UUID uuid) {
+        currentClaims.remove(uuid);
+    }
+
+    // Towns are replaced in the registry when they are updated, so resolve the loaded instance of a tracked town
+    @NotNull
+    private TownClaim refreshTown(@NotNull TownClaim claim) {
+        final Town town = claim.town();
+        if (claim.isAdminClaim(plugin)) {
+            return claim;
+        }
+        return plugin.findTown(town.getId())
+                .filter(loaded -> loaded != town)
+                .map(loaded -> new TownClaim(loaded, claim.claim()))
+                .orElse(claim);
+    }
+
+    private record PresetRules(@NotNull Presets presets, @NotNull Rules wilderness, @NotNull Rules unclaimableWorld) {
+    }
+
+    // A player's tracked chunk and the claim there, valid until the world's claims are next changed
+    private record CurrentClaim(@NotNull String worldName, int chunkX, int chunkZ, @Nullable ClaimWorld claimWorld,
+                                int revision, @Nullable TownClaim claim) {
+
+        private boolean isValid(@NotNull String worldName, int chunkX, int chunkZ, @Nullable ClaimWorld claimWorld) {
+            return this.chunkX == chunkX && this.chunkZ == chunkZ && this.claimWorld == claimWorld
+                   && this.worldName.equals(worldName)
+                   && (claimWorld == null || claimWorld.getRevision() == revision);
+        }
+    }
 
 }
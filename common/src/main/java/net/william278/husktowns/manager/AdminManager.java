@@ -107,12 +107,12 @@ public class AdminManager {
             final Role mayorRole = plugin.getRoles().getMayorRole();
             plugin.fireEvent(plugin.getMemberJoinEvent(user, namedTown, mayorRole, IMemberJoinEvent.JoinReason.ADMIN_TAKE_OVER),
                     (event -> plugin.getManager().editTown(user, namedTown, (town -> {
-                        town.getMembers().put(town.getMayor(), plugin.getRoles().getDefaultRole().getWeight());
-                        town.getMembers().put(user.getUuid(), mayorRole.getWeight());
+                        town.addMember(town.getMayor(), plugin.getRoles().getDefaultRole());
+                        town.addMember(user.getUuid(), mayorRole);
                         town.getLog().log(Action.of(user, Action.Type.ADMIN_TAKE_OVER, user.getUsername()));
-                        plugin.getLocales().getLocale("town_assumed_ownership", town.getName())
-                                .ifPresent(user::sendMessage);
-                    }))));
+                        return true;
+                    }), (town -> plugin.getLocales().getLocale("town_assumed_ownership", town.getName())
+                            .ifPresent(user::sendMessage)))));
         }, () -> plugin.getLocales().getLocale("error_town_not_found", townName)
                 .ifPresent(user::sendMessage));
     }
@@ -144,7 +144,8 @@ public class AdminManager {
                 town.getLog().log(Action.of(action, bonusLog));
             }
             town.setBonus(bonus, value);
-
+            return true;
+        }), (town -> {
             if (!clearing) {
                 plugin.getLocales().getLocale("town_bonus_set", bonus.name().toLowerCase(), town.getName(),
                                 Integer.toString(value))
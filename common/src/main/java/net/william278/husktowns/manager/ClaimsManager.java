@@ -76,9 +76,10 @@ public class ClaimsManager {
             plugin.getManager().editTown(user, claim.town(), (town -> {
                 town.setClaimCount(town.getClaimCount() + 1);
                 town.getLog().log(Action.of(user, Action.Type.CREATE_CLAIM, claim.toString()));
+                return true;
             }));
         }
-        plugin.getDatabase().updateClaimWorld(claimWorld);
+        plugin.getDatabase().insertClaim(claimWorld, claim);
         plugin.getMapHook().ifPresent(map -> map.setClaimMarker(claim, world));
     }
 
@@ -140,14 +141,15 @@ public class ClaimsManager {
         if (claim.isAdminClaim(plugin)) {
             claimWorld.removeAdminClaim(claim.claim().getChunk());
         } else {
+            claimWorld.removeClaim(claim.town(), claim.claim().getChunk());
             plugin.getManager().editTown(user, claim.town(), (town -> {
-                claimWorld.removeClaim(claim.town(), claim.claim().getChunk());
                 town.setClaimCount(town.getClaimCount() - 1);
                 town.getLog().log(Action.of(user, Action.Type.DELETE_CLAIM, claim.claim().toString()));
+                return true;
             }));
         }
 
-        plugin.getDatabase().updateClaimWorld(claimWorld);
+        plugin.getDatabase().deleteClaim(claimWorld, claim.claim().getChunk());
         plugin.getMapHook().ifPresent(map -> map.removeClaimMarker(claim, world));
     }
 
@@ -163,9 +165,12 @@ public class ClaimsManager {
 
                     plugin.runAsync(() -> {
                         townClaim.claim().setType(Claim.Type.PLOT);
-                        plugin.getDatabase().updateClaimWorld(claimWorld.get());
-                        plugin.getManager().editTown(user, townClaim.town(), (town -> town.getLog()
-                                .log(Action.of(user, Action.Type.MAKE_CLAIM_PLOT, townClaim.claim().toString()))));
+                        plugin.getDatabase().updateClaim(claimWorld.get(), townClaim);
+                        plugin.getManager().editTown(user, townClaim.town(), (town -> {
+                            town.getLog().log(Action.of(user, Action.Type.MAKE_CLAIM_PLOT,
+                                    townClaim.claim().toString()));
+                            return true;
+                        }));
                         plugin.getLocales().getLocale("claim_made_plot", Integer.toString(chunk.getX()),
                                 Integer.toString(chunk.getZ())).ifPresent(user::sendMessage);
                     });
@@ -184,9 +189,12 @@ public class ClaimsManager {
 
                     plugin.runAsync(() -> {
                         townClaim.claim().setType(Claim.Type.FARM);
-                        plugin.getDatabase().updateClaimWorld(claimWorld.get());
-                        plugin.getManager().editTown(user, townClaim.town(), (town -> town.getLog()
-                                .log(Action.of(user, Action.Type.MAKE_CLAIM_FARM, townClaim.claim().toString()))));
+                        plugin.getDatabase().updateClaim(claimWorld.get(), townClaim);
+                        plugin.getManager().editTown(user, townClaim.town(), (town -> {
+                            town.getLog().log(Action.of(user, Action.Type.MAKE_CLAIM_FARM,
+                                    townClaim.claim().toString()));
+                            return true;
+                        }));
 
                         plugin.getLocales().getLocale("claim_made_farm", Integer.toString(chunk.getX()),
                                 Integer.toString(chunk.getZ())).ifPresent(user::sendMessage);
@@ -208,9 +216,12 @@ public class ClaimsManager {
 
                     plugin.runAsync(() -> {
                         claim.setType(Claim.Type.CLAIM);
-                        plugin.getDatabase().updateClaimWorld(claimWorld.get());
-                        plugin.getManager().editTown(user, townClaim.town(), (town -> town.getLog()
-                                .log(Action.of(user, Action.Type.MAKE_CLAIM_REGULAR, townClaim.claim().toString()))));
+                        plugin.getDatabase().updateClaim(claimWorld.get(), townClaim);
+                        plugin.getManager().editTown(user, townClaim.town(), (town -> {
+                            town.getLog().log(Action.of(user, Action.Type.MAKE_CLAIM_REGULAR,
+                                    townClaim.claim().toString()));
+                            return true;
+                        }));
 
                         plugin.getLocales().getLocale("claim_made_regular", Integer.toString(chunk.getX()),
                                 Integer.toString(chunk.getZ())).ifPresent(user::sendMessage);
@@ -250,9 +261,12 @@ public class ClaimsManager {
                         }
 
                         claim.claim().setPlotMember(targetUser.get().getUuid(), manager);
-                        plugin.getDatabase().updateClaimWorld(claimWorld.get());
-                        plugin.getManager().editTown(user, claim.town(), (town -> town.getLog().log(Action.of(user,
-                                Action.Type.ADD_PLOT_MEMBER, claim.claim() + ": +" + targetUser.get().getUsername()))));
+                        plugin.getDatabase().updateClaim(claimWorld.get(), claim);
+                        plugin.getManager().editTown(user, claim.town(), (town -> {
+                            town.getLog().log(Action.of(user, Action.Type.ADD_PLOT_MEMBER,
+                                    claim.claim() + ": +" + targetUser.get().getUsername()));
+                            return true;
+                        }));
 
                         plugin.getLocales().getLocale("plot_member_added", targetUser.get().getUsername(),
                                         Integer.toString(chunk.getX()), Integer.toString(chunk.getZ()))
@@ -292,9 +306,12 @@ public class ClaimsManager {
                         }
 
                         claim.claim().removePlotMember(targetUser.get().getUuid());
-                        plugin.getDatabase().updateClaimWorld(claimWorld.get());
-                        plugin.getManager().editTown(user, claim.town(), (town -> town.getLog().log(Action.of(user,
-                                Action.Type.REMOVE_PLOT_MEMBER, claim.claim() + ": -" + targetUser.get().getUsername()))));
+                        plugin.getDatabase().updateClaim(claimWorld.get(), claim);
+                        plugin.getManager().editTown(user, claim.town(), (town -> {
+                            town.getLog().log(Action.of(user, Action.Type.REMOVE_PLOT_MEMBER,
+                                    claim.claim() + ": -" + targetUser.get().getUsername()));
+                            return true;
+                        }));
 
                         plugin.getLocales().getLocale("plot_member_removed", targetUser.get().getUsername(),
                                         Integer.toString(chunk.getX()), Integer.toString(chunk.getZ()))
@@ -314,21 +331,21 @@ public class ClaimsManager {
                     final Optional<ClaimWorld> claimWorld = plugin.getClaimWorld(world);
                     assert claimWorld.isPresent();
 
-                    final String members = claim.claim().getPlotMembers().stream()
-                            .map(plugin.getDatabase()::getUser)
-                            .filter(Optional::isPresent)
-                            .map(Optional::get)
-                            .map(SavedUser::user)
-                            .map(plotMember -> plotMember.getUsername() +
-                                               (claim.claim().isPlotManager(plotMember.getUuid())
-                                                       ? " " + plugin.getLocales().getRawLocale("plot_manager_mark")
-                                                       .orElse("[M]") : ""))
-                            .collect(Collectors.joining(", "));
-                    plugin.getLocales().getLocale("plot_members",
-                                    Integer.toString(chunk.getX()), Integer.toString(chunk.getZ()),
-                                    members.isEmpty() ? plugin.getLocales().getRawLocale("not_applicable")
-                                            .orElse("N/A") : members)
-                            .ifPresent(user::sendMessage);
+                    plugin.runAsync(() -> {
+                        final String members = plugin.getDatabase().getUsers(claim.claim().getPlotMembers())
+                                .values().stream()
+                                .map(SavedUser::user)
+                                .map(plotMember -> plotMember.getUsername() +
+                                                   (claim.claim().isPlotManager(plotMember.getUuid())
+                                                           ? " " + plugin.getLocales().getRawLocale("plot_manager_mark")
+                                                           .orElse("[M]") : ""))
+                                .collect(Collectors.joining(", "));
+                        plugin.getLocales().getLocale("plot_members",
+                                        Integer.toString(chunk.getX()), Integer.toString(chunk.getZ()),
+                                        members.isEmpty() ? plugin.getLocales().getRawLocale("not_applicable")
+                                                .orElse("N/A") : members)
+                                .ifPresent(user::sendMessage);
+                    });
                 })), () -> plugin.getLocales().getLocale("error_not_in_town").ifPresent(user::sendMessage));
     }
 
@@ -1,11 +1,13 @@
 package net.william278.husktowns.manager;
 
+import com.google.gson.JsonObject;
 import net.kyori.adventure.text.Component;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.claim.Chunk;
 import net.william278.husktowns.claim.ClaimWorld;
 import net.william278.husktowns.claim.TownClaim;
 import net.william278.husktowns.claim.World;
+import net.william278.husktowns.database.Database;
 import net.william278.husktowns.network.Message;
 import net.william278.husktowns.network.Payload;
 import net.william278.husktowns.town.Member;
@@ -17,14 +19,19 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.logging.Level;
 
 /**
  * Manager, for interfacing and editing town, claim and user data
  */
 public class Manager {
 
+    // The number of times an edit is made to a town before giving up, if another server keeps updating it first
+    private static final int MAX_EDIT_ATTEMPTS = 3;
+
     private final HuskTowns plugin;
     private final TownsManager towns;
     private final ClaimsManager claims;
@@ -52,31 +59,96 @@ public class Manager {
         return admin;
     }
 
-    public void editTown(@NotNull OnlineUser user, @NotNull Town town, @NotNull Consumer<Town> editor) {
+    public void editTown(@NotNull OnlineUser user, @NotNull Town town, @NotNull Function<Town, Boolean> editor) {
         editTown(user, town, editor, null);
     }
 
-    public void editTown(@NotNull OnlineUser user, @NotNull Town town, @NotNull Consumer<Town> editor,
+    /**
+     * Edit a town with the given editor, update the town, then run the callback once it has been written. If another
+     * server updated the town first, the editor is reapplied to the town as it was updated, so it must check the town
+     * again rather than rely on earlier checks, and leave messages and other side effects to the callback
+     *
+     * @param user     the user editing the town
+     * @param town     the town to edit
+     * @param editor   the editor to run, returning whether the town should be updated; the edit is abandoned if it
+     *                 returns {@code false} when reapplied
+     * @param callback the callback to run, with the town as written
+     */
+    public void editTown(@NotNull OnlineUser user, @NotNull Town town, @NotNull Function<Town, Boolean> editor,
                          @Nullable Consumer<Town> callback) {
-        plugin.runAsync(() -> {
-            editor.accept(town);
-            updateTownData(user, town);
-            if (callback != null) {
-                callback.accept(town);
-            }
-        });
+        plugin.runAsync(() -> editTown(user, town, editor, callback, 1));
+    }
+
+    private void editTown(@NotNull OnlineUser user, @NotNull Town town, @NotNull Function<Town, Boolean> editor,
+                          @Nullable Consumer<Town> callback, int attempt) {
+        if (!editor.apply(town)) {
+            return;
+        }
+        writeTown(user, town, attempt,
+                (reloaded, next) -> editTown(user, reloaded, editor, callback, next),
+                (written -> {
+                    if (callback != null) {
+                        callback.accept(written);
+                    }
+                }), () -> {
+                });
     }
 
+    /**
+     * If the user is a member of a town with the privilege, edit it with the given editor, update the town, then run
+     * the callback once it has been written. If another server updated the town first, the editor is reapplied to the
+     * town as it was updated, so it must check the town again rather than rely on earlier checks, and leave messages
+     * and other side effects to the callback
+     *
+     * @param user      the user editing the town
+     * @param privilege the privilege the user needs
+     * @param editor    the editor to run, returning whether the town should be updated; the edit is abandoned if it
+     *                  returns {@code false} when reapplied
+     * @param callback  the callback to run
+     */
     public void memberEditTown(@NotNull OnlineUser user, @Nullable Privilege privilege,
                                @NotNull Function<Member, Boolean> editor, @Nullable Consumer<Member> callback) {
-        this.ifMember(user, privilege, (member -> plugin.runAsync(() -> {
-            if (editor.apply(member)) {
-                updateTownData(user, member.town());
-                if (callback != null) {
-                    callback.accept(member);
-                }
+        this.memberEditTown(user, privilege, editor, callback, () -> {
+        });
+    }
+
+    /**
+     * If the user is a member of a town with the privilege, edit it with the given editor, update the town, then run
+     * the callback once it has been written. If another server updated the town first, the editor is reapplied to the
+     * town as it was updated; if the edit is then abandoned, the failure callback is run
+     *
+     * @param user      the user editing the town
+     * @param privilege the privilege the user needs
+     * @param editor    the editor to run, returning whether the town should be updated
+     * @param callback  the callback to run
+     * @param onFailed  the callback to run if the editor accepted the edit, but it was not written, as the edit could
+     *                  not be reapplied to the town as it was updated
+     */
+    public void memberEditTown(@NotNull OnlineUser user, @Nullable Privilege privilege,
+                               @NotNull Function<Member, Boolean> editor, @Nullable Consumer<Member> callback,
+                               @NotNull Runnable onFailed) {
+        this.ifMember(user, privilege, (member -> plugin.runAsync(
+                () -> memberEditTown(user, member, editor, callback, onFailed, 1))));
+    }
+
+    private void memberEditTown(@NotNull OnlineUser user, @NotNull Member member,
+                                @NotNull Function<Member, Boolean> editor, @Nullable Consumer<Member> callback,
+                                @NotNull Runnable onFailed, int attempt) {
+        if (!editor.apply(member)) {
+            if (attempt > 1) {
+                onFailed.run();
             }
-        })));
+            return;
+        }
+        writeTown(user, member.town(), attempt,
+                (reloaded, next) -> getMember(member, reloaded).ifPresentOrElse(
+                        reloadedMember -> memberEditTown(user, reloadedMember, editor, callback, onFailed, next),
+                        onFailed),
+                (written -> {
+                    if (callback != null) {
+                        callback.accept(member);
+                    }
+                }), onFailed);
     }
 
     public void memberEditTown(@NotNull OnlineUser user, @NotNull Privilege privilege, @NotNull Function<Member, Boolean> editor) {
@@ -91,16 +163,31 @@ public class Manager {
      * @param callback the callback to run
      */
     public void mayorEditTown(@NotNull OnlineUser user, @NotNull Function<Member, Boolean> editor, @Nullable Consumer<Member> callback) {
-        this.ifMayor(user, (mayor -> plugin.runSync(() -> {
-            if (editor.apply(mayor)) {
-                plugin.runAsync(() -> {
-                    updateTownData(user, mayor.town());
-                    if (callback != null) {
-                        callback.accept(mayor);
-                    }
-                });
-            }
-        })));
+        this.ifMayor(user, (mayor -> plugin.runSync(() -> mayorEditTown(user, mayor, editor, callback, 1))));
+    }
+
+    private void mayorEditTown(@NotNull OnlineUser user, @NotNull Member mayor,
+                               @NotNull Function<Member, Boolean> editor, @Nullable Consumer<Member> callback,
+                               int attempt) {
+        if (editor.apply(mayor)) {
+            plugin.runAsync(() -> writeTown(user, mayor.town(), attempt,
+                    (reloaded, next) -> getMember(mayor, reloaded).ifPresent(reloadedMayor -> plugin.runSync(
+                            () -> mayorEditTown(user, reloadedMayor, editor, callback, next))),
+                    (written -> {
+                        if (callback != null) {
+                            callback.accept(mayor);
+                        }
+                    }), () -> {
+                    }));
+        }
+    }
+
+    // Get the membership of a member's user in a reloaded copy of their town, if they are still a member
+    @NotNull
+    private Optional<Member> getMember(@NotNull Member member, @NotNull Town town) {
+        return Optional.ofNullable(town.getMembers().get(member.user().getUuid()))
+                .flatMap(weight -> plugin.getRoles().fromWeight(weight))
+                .map(role -> new Member(member.user(), town, role));
     }
 
     /**
@@ -197,24 +284,99 @@ public class Manager {
     }
 
     /**
-     * Update a town's data to the database and propagate cross-server
+     * Update a town's data to the database and propagate cross-server. If another server updated the town since it was
+     * read, the update is discarded and the town is reloaded
      *
      * @param actor The user who is updating the town's data
      * @param town  The town to update
      */
     public void updateTownData(@NotNull OnlineUser actor, @NotNull Town town) {
-        plugin.getDatabase().updateTown(town);
-        if (plugin.getTowns().contains(town)) {
-            plugin.getTowns().replaceAll(t -> t.getId() == town.getId() ? town : t);
-        } else {
-            plugin.getTowns().add(town);
-        }
-        plugin.getMessageBroker().ifPresent(broker -> Message.builder()
-                .type(Message.Type.TOWN_UPDATE)
-                .payload(Payload.integer(town.getId()))
-                .target(Message.TARGET_ALL, Message.TargetType.SERVER)
-                .build()
-                .send(broker, actor));
+        updateTownData(actor, town, null);
+    }
+
+    /**
+     * Update a town's data, as edited by the given editor, to the database and propagate cross-server. If another
+     * server updated the town since it was read, the editor is reapplied to the town as it was updated
+     *
+     * @param actor  The user who is updating the town's data
+     * @param town   The town to update, which the editor has been applied to
+     * @param editor The editor to reapply if another server updated the town first; or {@code null} to discard the
+     *               update instead
+     */
+    public void updateTownData(@NotNull OnlineUser actor, @NotNull Town town, @Nullable Consumer<Town> editor) {
+        updateTownData(actor, town, editor, 1);
+    }
+
+    // The town is written in full, as API users may have changed it through its maps, which does not track the changes
+    private void updateTownData(@NotNull OnlineUser actor, @NotNull Town town, @Nullable Consumer<Town> editor,
+                                int attempt) {
+        town.requireFullWrite();
+        writeTown(actor, town, attempt, (reloaded, next) -> {
+            if (editor == null) {
+                plugin.log(Level.WARNING, "Discarded an update to " + town.getName() + ", as it was updated by "
+                                          + "another server");
+                return;
+            }
+            editor.accept(reloaded);
+            updateTownData(actor, reloaded, editor, next);
+        }, (written -> {
+        }), () -> {
+        });
+    }
+
+    /**
+     * Write an edited town to the database. If another server updated the town since it was read, the town is
+     * reloaded, and passed to the retry to reapply the edit to
+     *
+     * @param actor     The user who edited the town
+     * @param town      The edited town
+     * @param attempt   The number of times the edit has been applied
+     * @param retry     Reapplies the edit to the reloaded town, accepting it and the next attempt number
+     * @param onWritten Run with the town once it has been written
+     * @param onFailed  Run if the edit is abandoned, as the town could not be reloaded or kept being updated by another
+     *                  server. It is not run if the write failed, as the edited town is kept to be written later
+     */
+    private void writeTown(@NotNull OnlineUser actor, @NotNull Town town, int attempt,
+                           @NotNull BiConsumer<Town, Integer> retry, @NotNull Consumer<Town> onWritten,
+                           @NotNull Runnable onFailed) {
+        plugin.getTowns().update(town);
+        plugin.getOperationHandler().invalidateDecisions(town.getId());
+        final JsonObject changes = town.takeChanges(plugin.getGson()).orElse(null);
+        plugin.getDatabase().updateTown(town, changes, (result, writtenChanges) -> {
+            if (result == Database.UpdateResult.WRITTEN) {
+                // Other servers are only notified once the update has been written, and apply the changes that were
+                // written, or read the town from the database if it was written in full
+                plugin.getMessageBroker().ifPresent(broker -> Message.builder()
+                        .type(Message.Type.TOWN_UPDATE)
+                        .payload(Payload.townUpdate(town.getId(), town.getVersion(), writtenChanges))
+                        .target(Message.TARGET_ALL, Message.TargetType.SERVER)
+                        .build()
+                        .send(broker, actor));
+                onWritten.accept(town);
+                return;
+            }
+            if (result == Database.UpdateResult.FAILED) {
+                // The edited town is kept, and written in full with its next update
+                plugin.log(Level.WARNING, "Failed to save an edit to " + town.getName() + " to the database");
+                return;
+            }
+
+            final Optional<Town> reloaded = plugin.getDatabase().getTown(town.getId());
+            if (reloaded.isEmpty()) {
+                plugin.log(Level.WARNING, "Failed to edit town #" + town.getId() + ": Town not found");
+                onFailed.run();
+                return;
+            }
+            plugin.getTowns().update(reloaded.get());
+            plugin.getOperationHandler().invalidateDecisions(town.getId());
+            if (attempt >= MAX_EDIT_ATTEMPTS) {
+                plugin.log(Level.WARNING, "Failed to edit " + town.getName() + ", as it was updated by another "
+                                          + "server each of the " + attempt + " times the edit was made");
+                onFailed.run();
+                return;
+            }
+            retry.accept(reloaded.get(), attempt + 1);
+        });
     }
 
     /**
@@ -4,6 +4,7 @@ import de.themoep.minedown.adventure.MineDown;
 import net.kyori.adventure.text.Component;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.audit.Action;
+import net.william278.husktowns.audit.AuditLogList;
 import net.william278.husktowns.claim.Claim;
 import net.william278.husktowns.claim.Flag;
 import net.william278.husktowns.claim.Position;
@@ -29,9 +30,11 @@ import java.awt.*;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
+import java.util.AbstractList;
+import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 public class TownsManager {
@@ -107,11 +110,9 @@ public class TownsManager {
         plugin.getMapHook().ifPresent(mapHook -> mapHook.removeClaimMarkers(town));
         plugin.getDatabase().deleteTown(town.getId());
         plugin.getTowns().remove(town);
-        plugin.getClaimWorlds().values().forEach(world -> {
-            if (world.removeTownClaims(town.getId()) > 0) {
-                plugin.getDatabase().updateClaimWorld(world);
-            }
-        });
+        plugin.getOperationHandler().invalidateDecisions(town.getId());
+        plugin.getClaimWorlds().values().forEach(world -> world.removeTownClaims(town.getId()));
+        plugin.getDatabase().deleteTownClaims(town.getId());
 
         // Propagate the town deletion to all servers
         plugin.getMessageBroker().ifPresent(broker -> Message.builder()
@@ -123,7 +124,8 @@ public class TownsManager {
     }
 
     public void inviteMember(@NotNull OnlineUser user, @NotNull String target) {
-        plugin.getManager().ifMember(user, Privilege.INVITE, (member -> {
+        plugin.getAsyncDatabase().getUser(target).thenAcceptAsync(saved -> plugin.getManager()
+                .ifMember(user, Privilege.INVITE, (member -> {
             final int currentMembers = member.town().getMembers().size();
             final int maxMembers = member.town().getMaxMembers(plugin);
             if (currentMembers >= maxMembers) {
@@ -133,7 +135,7 @@ public class TownsManager {
                 return;
             }
 
-            final Optional<User> databaseTarget = plugin.getDatabase().getUser(target).map(SavedUser::user);
+            final Optional<User> databaseTarget = saved.map(SavedUser::user);
             if (databaseTarget.isEmpty()) {
                 plugin.getLocales().getLocale("error_user_not_found", target)
                         .ifPresent(user::sendMessage);
@@ -167,7 +169,7 @@ public class TownsManager {
 
             plugin.getLocales().getLocale("invite_sent", target, town.getName())
                     .ifPresent(user::sendMessage);
-        }));
+        })), plugin::runSync);
     }
 
     public void handleInboundInvite(@NotNull OnlineUser user, @NotNull Invite invite) {
@@ -236,18 +238,28 @@ public class TownsManager {
         }
 
         final Role role = plugin.getRoles().getDefaultRole();
-        plugin.fireEvent(plugin.getMemberJoinEvent(user, town, role, IMemberJoinEvent.JoinReason.ACCEPT_INVITE), (onJoin -> {
-            town.addMember(user.getUuid(), plugin.getRoles().getDefaultRole());
-            town.getLog().log(Action.of(user, Action.Type.MEMBER_JOIN,
+        plugin.fireEvent(plugin.getMemberJoinEvent(user, town, role, IMemberJoinEvent.JoinReason.ACCEPT_INVITE), (onJoin -> plugin.getManager().editTown(user, town, (editedTown -> {
+            // The town is checked again, as another server may have updated it first
+            if (editedTown.getMembers().size() >= editedTown.getMaxMembers(plugin)) {
+                plugin.getLocales().getLocale("error_town_member_limit_reached",
+                                Integer.toString(editedTown.getMembers().size()),
+                                Integer.toString(editedTown.getMaxMembers(plugin)))
+                        .ifPresent(user::sendMessage);
+                return false;
+            }
+
+            editedTown.addMember(user.getUuid(), plugin.getRoles().getDefaultRole());
+            editedTown.getLog().log(Action.of(user, Action.Type.MEMBER_JOIN,
                     user.getUsername() + " (" + invite.getSender().getUsername() + ")"));
-            plugin.getDatabase().updateTown(town);
-            plugin.getLocales().getLocale("invite_accepted", town.getName())
+            return true;
+        }), (joinedTown -> {
+            plugin.getLocales().getLocale("invite_accepted", joinedTown.getName())
                     .ifPresent(user::sendMessage);
 
             // Broadcast the acceptance to local town members
             plugin.getLocales().getLocale("user_joined_town",
-                            user.getUsername(), town.getName()).map(MineDown::toComponent)
-                    .ifPresent(message -> plugin.getManager().sendTownNotification(town, message));
+                            user.getUsername(), joinedTown.getName()).map(MineDown::toComponent)
+                    .ifPresent(message -> plugin.getManager().sendTownNotification(joinedTown, message));
 
             plugin.getMessageBroker().ifPresent(broker -> Message.builder()
                     .type(Message.Type.TOWN_INVITE_REPLY)
@@ -258,7 +270,7 @@ public class TownsManager {
 
             // Clear invites for the user as they have accepted one
             plugin.clearInvites(user.getUuid());
-        }));
+        }))));
     }
 
     public void leaveTown(@NotNull OnlineUser user) {
@@ -272,24 +284,37 @@ public class TownsManager {
 
             // Remove the user from the town
             final Town town = member.town();
-            plugin.fireEvent(plugin.getMemberLeaveEvent(user, town, member.role(), IMemberLeaveEvent.LeaveReason.LEAVE), (onLeave -> {
-                town.removeMember(user.getUuid());
-                town.getLog().log(Action.of(user, Action.Type.MEMBER_LEAVE, user.getUsername()));
-                plugin.getDatabase().updateTown(town);
-                plugin.getLocales().getLocale("left_town", town.getName())
+            plugin.fireEvent(plugin.getMemberLeaveEvent(user, town, member.role(), IMemberLeaveEvent.LeaveReason.LEAVE), (onLeave -> plugin.getManager().editTown(user, town, (editedTown -> {
+                if (!editedTown.getMembers().containsKey(user.getUuid())) {
+                    plugin.getLocales().getLocale("error_not_in_town")
+                            .ifPresent(user::sendMessage);
+                    return false;
+                }
+                if (editedTown.getMayor().equals(user.getUuid())) {
+                    plugin.getLocales().getLocale("error_mayor_cannot_leave")
+                            .ifPresent(user::sendMessage);
+                    return false;
+                }
+
+                editedTown.removeMember(user.getUuid());
+                editedTown.getLog().log(Action.of(user, Action.Type.MEMBER_LEAVE, user.getUsername()));
+                return true;
+            }), (leftTown -> {
+                plugin.getLocales().getLocale("left_town", leftTown.getName())
                         .ifPresent(user::sendMessage);
 
                 // Broadcast the departure to local town members
                 plugin.getLocales().getLocale("user_left_town",
-                                user.getUsername(), town.getName()).map(MineDown::toComponent)
-                        .ifPresent(message -> plugin.getManager().sendTownNotification(town, message));
-            }));
+                                user.getUsername(), leftTown.getName()).map(MineDown::toComponent)
+                        .ifPresent(message -> plugin.getManager().sendTownNotification(leftTown, message));
+            }))));
         }));
     }
 
     public void removeMember(@NotNull OnlineUser user, @NotNull String memberName) {
-        plugin.getManager().ifMember(user, Privilege.EVICT, (member -> {
-            final Optional<User> evicted = plugin.getDatabase().getUser(memberName).map(SavedUser::user);
+        plugin.getAsyncDatabase().getUser(memberName).thenAcceptAsync(saved -> plugin.getManager()
+                .ifMember(user, Privilege.EVICT, (member -> {
+            final Optional<User> evicted = saved.map(SavedUser::user);
             if (evicted.isEmpty()) {
                 plugin.getLocales().getLocale("error_user_not_found", memberName)
                         .ifPresent(user::sendMessage);
@@ -312,29 +337,47 @@ public class TownsManager {
 
             plugin.fireEvent(plugin.getMemberLeaveEvent(member.user(), memberTown, member.role(), IMemberLeaveEvent.LeaveReason.EVICTED),
                     (onEvicted -> plugin.getManager().editTown(user, memberTown, (town -> {
-                        memberTown.removeMember(evicted.get().getUuid());
-                        memberTown.getLog().log(Action.of(user, Action.Type.EVICT, evicted.get().getUsername() + " (" + user.getUsername() + ")"));
+                        // The members are checked again, as another server may have updated the town first
+                        final Integer evictedWeight = town.getMembers().get(evicted.get().getUuid());
+                        if (evictedWeight == null) {
+                            plugin.getLocales().getLocale("error_other_not_in_town",
+                                    evicted.get().getUsername()).ifPresent(user::sendMessage);
+                            return false;
+                        }
+                        final Integer weight = town.getMembers().get(user.getUuid());
+                        if (weight == null || evictedWeight >= weight) {
+                            plugin.getLocales().getLocale("error_member_higher_role", evicted.get().getUsername())
+                                    .ifPresent(user::sendMessage);
+                            return false;
+                        }
+
+                        town.removeMember(evicted.get().getUuid());
+                        town.getLog().log(Action.of(user, Action.Type.EVICT, evicted.get().getUsername() + " (" + user.getUsername() + ")"));
+                        return true;
+                    }), (town -> {
                         plugin.getLocales().getLocale("evicted_user", evicted.get().getUsername(),
-                                memberTown.getName()).ifPresent(user::sendMessage);
+                                town.getName()).ifPresent(user::sendMessage);
 
                         plugin.getOnlineUsers().stream()
                                 .filter(online -> online.getUuid().equals(evicted.get().getUuid()))
                                 .findFirst()
                                 .ifPresent(onlineUser -> plugin.getLocales()
-                                        .getLocale("evicted_you", memberTown.getName(), user.getUsername())
+                                        .getLocale("evicted_you", town.getName(), user.getUsername())
                                         .ifPresent(onlineUser::sendMessage));
-                    }), (town -> plugin.getMessageBroker().ifPresent(broker -> Message.builder()
-                            .type(Message.Type.TOWN_EVICTED)
-                            .payload(Payload.integer(town.getId()))
-                            .target(memberName, Message.TargetType.PLAYER)
-                            .build()
-                            .send(broker, user))))));
-        }));
+                        plugin.getMessageBroker().ifPresent(broker -> Message.builder()
+                                .type(Message.Type.TOWN_EVICTED)
+                                .payload(Payload.integer(town.getId()))
+                                .target(memberName, Message.TargetType.PLAYER)
+                                .build()
+                                .send(broker, user));
+                    }))));
+        })), plugin::runSync);
     }
 
     public void promoteMember(@NotNull OnlineUser user, @NotNull String memberName) {
-        plugin.getManager().ifMember(user, Privilege.PROMOTE, (member -> {
-            final Optional<User> promoted = plugin.getDatabase().getUser(memberName).map(SavedUser::user);
+        plugin.getAsyncDatabase().getUser(memberName).thenAcceptAsync(saved -> plugin.getManager()
+                .ifMember(user, Privilege.PROMOTE, (member -> {
+            final Optional<User> promoted = saved.map(SavedUser::user);
             if (promoted.isEmpty()) {
                 plugin.getLocales().getLocale("error_user_not_found", memberName)
                         .ifPresent(user::sendMessage);
@@ -360,7 +403,24 @@ public class TownsManager {
             final Role newRole = nextRole.get();
             plugin.fireEvent(plugin.getMemberRoleChangeEvent(user, memberTown, member.role(), newRole),
                     (onPromoted -> plugin.getManager().editTown(user, memberTown, (town -> {
-                        town.getMembers().put(promoted.get().getUuid(), newRole.getWeight());
+                        // The roles are checked again, as another server may have updated the town first
+                        final Integer weight = town.getMembers().get(promoted.get().getUuid());
+                        if (weight == null) {
+                            plugin.getLocales().getLocale("error_other_not_in_town",
+                                    promoted.get().getUsername()).ifPresent(user::sendMessage);
+                            return false;
+                        }
+                        final Integer actorWeight = town.getMembers().get(user.getUuid());
+                        if (actorWeight == null || weight != promotedMember.get().role().getWeight()
+                            || weight >= actorWeight - 1) {
+                            plugin.getLocales().getLocale("error_member_higher_role")
+                                    .ifPresent(user::sendMessage);
+                            return false;
+                        }
+
+                        town.addMember(promoted.get().getUuid(), newRole);
+                        return true;
+                    }), (town -> {
                         plugin.getLocales().getLocale("promoted_user",
                                 promoted.get().getUsername(), newRole.getName()).ifPresent(user::sendMessage);
 
@@ -370,18 +430,20 @@ public class TownsManager {
                                 .ifPresent(onlineUser -> plugin.getLocales()
                                         .getLocale("promoted_you", newRole.getName(), user.getUsername())
                                         .ifPresent(onlineUser::sendMessage));
-                    }), (town -> plugin.getMessageBroker().ifPresent(broker -> Message.builder()
-                            .type(Message.Type.TOWN_PROMOTED)
-                            .payload(Payload.integer(member.town().getId()))
-                            .target(memberName, Message.TargetType.PLAYER)
-                            .build()
-                            .send(broker, user))))));
-        }));
+                        plugin.getMessageBroker().ifPresent(broker -> Message.builder()
+                                .type(Message.Type.TOWN_PROMOTED)
+                                .payload(Payload.integer(town.getId()))
+                                .target(memberName, Message.TargetType.PLAYER)
+                                .build()
+                                .send(broker, user));
+                    }))));
+        })), plugin::runSync);
     }
 
     public void demoteMember(@NotNull OnlineUser user, @NotNull String memberName) {
-        plugin.getManager().ifMember(user, Privilege.DEMOTE, (member -> {
-            final Optional<User> demoted = plugin.getDatabase().getUser(memberName).map(SavedUser::user);
+        plugin.getAsyncDatabase().getUser(memberName).thenAcceptAsync(saved -> plugin.getManager()
+                .ifMember(user, Privilege.DEMOTE, (member -> {
+            final Optional<User> demoted = saved.map(SavedUser::user);
             if (demoted.isEmpty()) {
                 plugin.getLocales().getLocale("error_user_not_found", memberName)
                         .ifPresent(user::sendMessage);
@@ -413,7 +475,24 @@ public class TownsManager {
             final Role newRole = nextRole.get();
             plugin.fireEvent(plugin.getMemberRoleChangeEvent(member.user(), memberTown, member.role(), newRole),
                     (event -> plugin.getManager().editTown(user, memberTown, (town -> {
-                        memberTown.getMembers().put(demoted.get().getUuid(), newRole.getWeight());
+                        // The roles are checked again, as another server may have updated the town first
+                        final Integer weight = town.getMembers().get(demoted.get().getUuid());
+                        if (weight == null) {
+                            plugin.getLocales().getLocale("error_other_not_in_town",
+                                    demoted.get().getUsername()).ifPresent(user::sendMessage);
+                            return false;
+                        }
+                        final Integer actorWeight = town.getMembers().get(user.getUuid());
+                        if (actorWeight == null || weight != demotedMember.get().role().getWeight()
+                            || weight >= actorWeight) {
+                            plugin.getLocales().getLocale("error_member_higher_role")
+                                    .ifPresent(user::sendMessage);
+                            return false;
+                        }
+
+                        town.addMember(demoted.get().getUuid(), newRole);
+                        return true;
+                    }), (town -> {
                         plugin.getLocales().getLocale("demoted_user",
                                 demoted.get().getUsername(), newRole.getName()).ifPresent(user::sendMessage);
 
@@ -423,13 +502,14 @@ public class TownsManager {
                                 .ifPresent(onlineUser -> plugin.getLocales()
                                         .getLocale("demoted_you", newRole.getName(), user.getUsername())
                                         .ifPresent(onlineUser::sendMessage));
-                    }), (town -> plugin.getMessageBroker().ifPresent(broker -> Message.builder()
-                            .type(Message.Type.TOWN_DEMOTED)
-                            .payload(Payload.integer(member.town().getId()))
-                            .target(memberName, Message.TargetType.PLAYER)
-                            .build()
-                            .send(broker, user))))));
-        }));
+                        plugin.getMessageBroker().ifPresent(broker -> Message.builder()
+                                .type(Message.Type.TOWN_DEMOTED)
+                                .payload(Payload.integer(town.getId()))
+                                .target(memberName, Message.TargetType.PLAYER)
+                                .build()
+                                .send(broker, user));
+                    }))));
+        })), plugin::runSync);
     }
 
     public void renameTown(@NotNull OnlineUser user, @NotNull String newName) {
@@ -443,11 +523,13 @@ public class TownsManager {
 
             town.getLog().log(Action.of(user, Action.Type.RENAME_TOWN, town.getName() + " → " + newName));
             town.setName(newName);
+            return true;
+        }), (member -> {
+            final Town town = member.town();
             plugin.getMapHook().ifPresent(map -> map.reloadClaimMarkers(town));
             plugin.getLocales().getLocale("town_renamed", town.getName())
                     .map(MineDown::toComponent)
                     .ifPresent(message -> plugin.getManager().sendTownNotification(town, message));
-            return true;
         }));
     }
 
@@ -463,10 +545,9 @@ public class TownsManager {
             town.getLog().log(Action.of(user, Action.Type.UPDATE_BIO,
                     town.getBio().map(bio -> bio + " → ").orElse("") + newBio));
             town.setBio(newBio);
-            town.getBio().flatMap(bio -> plugin.getLocales().getLocale("town_bio_set", bio))
-                    .ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> member.town().getBio().flatMap(bio -> plugin.getLocales().getLocale("town_bio_set", bio))
+                .ifPresent(user::sendMessage)));
     }
 
     public void setTownGreeting(@NotNull OnlineUser user, @NotNull String newGreeting) {
@@ -481,10 +562,9 @@ public class TownsManager {
             town.getLog().log(Action.of(user, Action.Type.UPDATE_GREETING,
                     town.getGreeting().map(greeting -> greeting + " → ").orElse("") + newGreeting));
             town.setGreeting(newGreeting);
-            town.getGreeting().flatMap(greeting -> plugin.getLocales().getLocale("town_greeting_set",
-                    greeting, town.getColorRgb())).ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> member.town().getGreeting().flatMap(greeting -> plugin.getLocales()
+                .getLocale("town_greeting_set", greeting, member.town().getColorRgb())).ifPresent(user::sendMessage)));
     }
 
     public void setTownFarewell(@NotNull OnlineUser user, @NotNull String newFarewell) {
@@ -499,10 +579,9 @@ public class TownsManager {
             town.getLog().log(Action.of(user, Action.Type.UPDATE_FAREWELL,
                     town.getFarewell().map(farewell -> farewell + " → ").orElse("") + newFarewell));
             town.setFarewell(newFarewell);
-            town.getFarewell().flatMap(farewell -> plugin.getLocales().getLocale("town_farewell_set",
-                    farewell, town.getColorRgb())).ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> member.town().getFarewell().flatMap(farewell -> plugin.getLocales()
+                .getLocale("town_farewell_set", farewell, member.town().getColorRgb())).ifPresent(user::sendMessage)));
     }
 
     public void setTownColor(@NotNull OnlineUser user, @Nullable String newColor) {
@@ -527,27 +606,31 @@ public class TownsManager {
             final String newColorRgb = String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
             town.getLog().log(Action.of(user, Action.Type.UPDATE_COLOR, town.getColorRgb() + " → " + newColorRgb));
             town.setColor(color);
-            plugin.getMapHook().ifPresent(map -> map.reloadClaimMarkers(town));
-            plugin.getMapHook().ifPresent(map -> map.reloadClaimMarkers(town));
+            return true;
+        }), (member -> {
+            plugin.getMapHook().ifPresent(map -> map.reloadClaimMarkers(member.town()));
             plugin.getLocales().getLocale("town_color_changed", member.town().getName(), member.town().getColorRgb())
                     .ifPresent(user::sendMessage);
-            return true;
         }));
     }
 
     public void setTownSpawn(@NotNull OnlineUser user, @NotNull Position position) {
         plugin.getManager().memberEditTown(user, Privilege.SET_SPAWN, (member -> {
-            plugin.getManager().ifClaimOwner(member, user, position.getChunk(), position.getWorld(), (claim -> {
-                final Town town = member.town();
-                final Spawn spawn = Spawn.of(position, plugin.getServerName());
-                town.getLog().log(Action.of(user, Action.Type.UPDATE_SPAWN, town.getSpawn().map(
-                        oldSpawn -> oldSpawn + " → ").orElse("") + spawn));
-                town.setSpawn(spawn);
-                plugin.getLocales().getLocale("town_spawn_set", member.town().getName())
-                        .ifPresent(user::sendMessage);
-            }));
+            final AtomicBoolean owner = new AtomicBoolean(false);
+            plugin.getManager().ifClaimOwner(member, user, position.getChunk(), position.getWorld(),
+                    (claim -> owner.set(true)));
+            if (!owner.get()) {
+                return false;
+            }
+
+            final Town town = member.town();
+            final Spawn spawn = Spawn.of(position, plugin.getServerName());
+            town.getLog().log(Action.of(user, Action.Type.UPDATE_SPAWN, town.getSpawn().map(
+                    oldSpawn -> oldSpawn + " → ").orElse("") + spawn));
+            town.setSpawn(spawn);
             return true;
-        }));
+        }), (member -> plugin.getLocales().getLocale("town_spawn_set", member.town().getName())
+                .ifPresent(user::sendMessage)));
     }
 
     public void setSpawnPrivacy(@NotNull OnlineUser user, boolean isPublic) {
@@ -564,10 +647,9 @@ public class TownsManager {
                 spawn.setPublic(isPublic);
                 town.setSpawn(spawn);
             }
-            plugin.getLocales().getLocale("town_spawn_privacy_set_" + (isPublic ? "public" : "private"), town.getName())
-                    .ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> plugin.getLocales().getLocale("town_spawn_privacy_set_" + (isPublic ? "public" : "private"),
+                member.town().getName()).ifPresent(user::sendMessage)));
     }
 
     public void clearTownSpawn(@NotNull OnlineUser user) {
@@ -580,10 +662,9 @@ public class TownsManager {
             }
             town.getLog().log(Action.of(user, Action.Type.CLEAR_SPAWN));
             town.clearSpawn();
-            plugin.getLocales().getLocale("town_spawn_cleared", town.getName())
-                    .ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> plugin.getLocales().getLocale("town_spawn_cleared", member.town().getName())
+                .ifPresent(user::sendMessage)));
     }
 
     public void teleportToTownSpawn(@NotNull OnlineUser user, @Nullable String townName) {
@@ -649,6 +730,9 @@ public class TownsManager {
             return;
         }
 
+        // Money is taken before the deposit is first applied, so it cannot be deposited again before it is taken, and
+        // refunded if the edit is abandoned; it is not taken again when the edit is reapplied after a conflict
+        final AtomicBoolean taken = new AtomicBoolean(false);
         plugin.getManager().memberEditTown(user, Privilege.DEPOSIT, (member -> {
             final EconomyHook economy = optionalHook.get();
             if (amount.compareTo(BigDecimal.ZERO) <= 0) {
@@ -658,19 +742,26 @@ public class TownsManager {
             }
 
             final Town town = member.town();
-            if (!economy.hasMoney(user, amount)) {
+            if (!taken.get() && !economy.takeMoney(user, amount)) {
                 plugin.getLocales().getLocale("error_economy_insufficient_funds",
                         economy.formatMoney(amount)).ifPresent(user::sendMessage);
                 return false;
             }
+            taken.set(true);
 
-            economy.takeMoney(user, amount);
             town.getLog().log(Action.of(user, Action.Type.DEPOSIT_MONEY, economy.formatMoney(amount)));
             town.setMoney(town.getMoney().add(amount));
-            plugin.getLocales().getLocale("town_economy_deposit", economy.formatMoney(amount),
-                    economy.formatMoney(town.getMoney())).ifPresent(user::sendMessage);
             return true;
-        }));
+        }), (member -> {
+            final EconomyHook economy = optionalHook.get();
+            plugin.getLocales().getLocale("town_economy_deposit", economy.formatMoney(amount),
+                    economy.formatMoney(member.town().getMoney())).ifPresent(user::sendMessage);
+        }), () -> {
+            final EconomyHook economy = optionalHook.get();
+            economy.giveMoney(user, amount);
+            plugin.getLocales().getLocale("error_economy_deposit_refunded", economy.formatMoney(amount))
+                    .ifPresent(user::sendMessage);
+        });
     }
 
     public void withdrawMoney(@NotNull OnlineUser user, @NotNull BigDecimal amount) {
@@ -681,6 +772,7 @@ public class TownsManager {
             return;
         }
 
+        final AtomicReference<BigDecimal> withdrawal = new AtomicReference<>(BigDecimal.ZERO);
         plugin.getManager().memberEditTown(user, Privilege.WITHDRAW, (member -> {
             final EconomyHook economy = optionalHook.get();
             if (amount.compareTo(BigDecimal.ZERO) <= 0) {
@@ -690,13 +782,16 @@ public class TownsManager {
             }
 
             final Town town = member.town();
-            final BigDecimal withdrawal = amount.min(town.getMoney());
-            economy.giveMoney(user, withdrawal);
-            town.getLog().log(Action.of(user, Action.Type.WITHDRAW_MONEY, economy.formatMoney(withdrawal)));
-            town.setMoney(town.getMoney().subtract(withdrawal));
-            plugin.getLocales().getLocale("town_economy_withdraw", economy.formatMoney(withdrawal),
-                    economy.formatMoney(town.getMoney())).ifPresent(user::sendMessage);
+            withdrawal.set(amount.min(town.getMoney()));
+            town.getLog().log(Action.of(user, Action.Type.WITHDRAW_MONEY, economy.formatMoney(withdrawal.get())));
+            town.setMoney(town.getMoney().subtract(withdrawal.get()));
             return true;
+        }), (member -> {
+            // Money is only given once the withdrawal has been written, as the edit is reapplied if the write conflicts
+            final EconomyHook economy = optionalHook.get();
+            economy.giveMoney(user, withdrawal.get());
+            plugin.getLocales().getLocale("town_economy_withdraw", economy.formatMoney(withdrawal.get()),
+                    economy.formatMoney(member.town().getMoney())).ifPresent(user::sendMessage);
         }));
     }
 
@@ -738,30 +833,37 @@ public class TownsManager {
     }
 
     public void transferOwnership(@NotNull OnlineUser user, @NotNull String memberName) {
-        plugin.getManager().mayorEditTown(user, (mayor -> {
+        plugin.getAsyncDatabase().getUser(memberName).thenAccept(saved -> plugin.getManager()
+                .mayorEditTown(user, (mayor -> {
             // Validate target is a member of the town
             final Town town = mayor.town();
-            final Optional<User> targetUser = plugin.getDatabase().getUser(memberName).map(SavedUser::user);
+            final Optional<User> targetUser = saved.map(SavedUser::user);
             if (targetUser.isEmpty()) {
                 plugin.getLocales().getLocale("error_user_not_found", memberName)
                         .ifPresent(user::sendMessage);
                 return false;
             }
 
-            final Optional<Member> member = plugin.getUserTown(targetUser.get());
-            if (member.isEmpty() || !member.get().town().equals(town)) {
+            // The members are checked on the town being edited, as another server may have updated it first
+            if (!mayor.role().equals(plugin.getRoles().getMayorRole())) {
+                plugin.getLocales().getLocale("error_not_town_mayor", town.getName())
+                        .ifPresent(user::sendMessage);
+                return false;
+            }
+            final Integer weight = town.getMembers().get(targetUser.get().getUuid());
+            if (weight == null) {
                 plugin.getLocales().getLocale("error_other_not_in_town",
                         targetUser.get().getUsername()).ifPresent(user::sendMessage);
                 return false;
             }
-            if (member.get().role().getWeight() >= mayor.role().getWeight()) {
+            if (weight >= mayor.role().getWeight()) {
                 plugin.getLocales().getLocale("error_user_not_found",
                         targetUser.get().getUsername()).ifPresent(user::sendMessage);
                 return false;
             }
 
-            town.getMembers().put(mayor.user().getUuid(), plugin.getRoles().getDefaultRole().getWeight());
-            town.getMembers().put(targetUser.get().getUuid(), plugin.getRoles().getMayorRole().getWeight());
+            town.addMember(mayor.user().getUuid(), plugin.getRoles().getDefaultRole());
+            town.addMember(targetUser.get().getUuid(), plugin.getRoles().getMayorRole());
             town.getLog().log(Action.of(user, Action.Type.TRANSFER_OWNERSHIP,
                     mayor.user().getUsername() + " → " + targetUser.get().getUsername()));
             return true;
@@ -776,17 +878,22 @@ public class TownsManager {
                     .target(Message.TARGET_ALL, Message.TargetType.SERVER)
                     .build()
                     .send(broker, user));
-        }));
+        })));
     }
 
     public void showTownLogs(@NotNull OnlineUser user, int page) {
-        plugin.getManager().ifMember(user, Privilege.VIEW_LOGS, (member -> {
-            final TreeMap<OffsetDateTime, Action> actions = new TreeMap<>(Comparator.reverseOrder());
-            actions.putAll(member.town().getLog().getActions());
+        plugin.getManager().ifMember(user, Privilege.VIEW_LOGS, (member -> plugin.runAsync(() -> {
+            final int itemsPerPage = plugin.getSettings().getListItemsPerPage();
+            final AuditLogList actions = AuditLogList.of(plugin, member.town(), itemsPerPage);
             final Locales locales = plugin.getLocales();
             final String NOT_APPLICABLE = plugin.getLocales().getRawLocale("not_applicable").orElse("N/A");
-            user.sendMessage(PaginatedList.of(actions.entrySet().stream()
-                                    .map(entry -> locales.getRawLocale("town_audit_log_list_item",
+
+            // Actions are only formatted (and archived actions only read) for the page being shown
+            user.sendMessage(PaginatedList.of(new AbstractList<String>() {
+                                @Override
+                                public String get(int index) {
+                                    final Map.Entry<OffsetDateTime, Action> entry = actions.get(index);
+                                    return locales.getRawLocale("town_audit_log_list_item",
                                                     entry.getKey().format(DateTimeFormatter.ofPattern("dd MMM")),
                                                     entry.getKey().format(DateTimeFormatter.ofPattern("dd MMM, yyyy, HH:mm:ss")),
                                                     Locales.escapeText(entry.getValue().getUser().map(User::getUsername)
@@ -796,28 +903,35 @@ public class TownsManager {
                                                             .orElse(NOT_APPLICABLE), 10)),
                                                     Locales.escapeText(locales.wrapText(entry.getValue().getDetails()
                                                             .orElse(NOT_APPLICABLE), 40)))
-                                            .orElse(entry.getValue().toString()))
-                                    .toList(),
-                            locales.getBaseList(plugin.getSettings().getListItemsPerPage())
+                                            .orElse(entry.getValue().toString());
+                                }
+
+                                @Override
+                                public int size() {
+                                    return actions.size();
+                                }
+                            },
+                            locales.getBaseList(itemsPerPage)
                                     .setHeaderFormat(locales.getRawLocale("town_audit_log_list_title",
                                             Locales.escapeText(member.town().getName())).orElse(""))
                                     .setItemSeparator("\n").setCommand("/husktowns:town log")
                                     .build())
                     .getNearestValidPage(page));
-        }));
+        })));
     }
 
     public void setFlagRule(@NotNull OnlineUser user, @NotNull Flag flag, @NotNull Claim.Type type, boolean value, boolean showMenu) {
         plugin.getManager().memberEditTown(user, Privilege.SET_RULES, (member -> {
             final Town town = member.town();
-            town.getRules().get(type).setFlag(flag, value);
+            town.setRule(type, flag, value);
             town.getLog().log(Action.of(user, Action.Type.SET_FLAG_RULE, flag.name().toLowerCase() + ": " + value));
+            return true;
+        }), (member -> {
             plugin.getLocales().getLocale("town_flag_set", flag.name().toLowerCase(), Boolean.toString(value),
                     type.name().toLowerCase()).ifPresent(user::sendMessage);
             if (showMenu) {
                 showRulesConfig(user);
             }
-            return true;
         }));
     }
 
@@ -3,12 +3,16 @@ package net.william278.husktowns.map;
 import net.kyori.adventure.text.Component;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.claim.Chunk;
+import net.william278.husktowns.claim.TownClaim;
 import net.william278.husktowns.claim.World;
 import net.william278.husktowns.user.CommandUser;
 import net.william278.husktowns.user.OnlineUser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Utility for displaying a map of claims to chat.
  * See {@link ClaimMap#builder(HuskTowns)} to create a new instance.
@@ -34,14 +38,27 @@ public class ClaimMap {
         if (width < 1 || height < 1) {
             throw new IllegalArgumentException("Map width and height must be greater than 0");
         }
+        final int minX = center.getX() - (width / 2);
+        final int minZ = center.getZ() - (height / 2);
+        final int maxX = center.getX() + (width / 2);
+        final int maxZ = center.getZ() + (height / 2);
+
+        // Fetch every claim on the map in a single query, rather than looking up each square
+        final Map<Long, TownClaim> claims = new HashMap<>();
+        plugin.getClaimWorld(world).ifPresent(claimWorld -> claimWorld
+                .getClaimsWithin(Chunk.at(minX, minZ), Chunk.at(maxX - 1, maxZ - 1), plugin)
+                .forEach(townClaim -> claims.put(townClaim.claim().getChunk().getKey(), townClaim)));
+        final Chunk userChunk = user instanceof OnlineUser onlineUser ? onlineUser.getChunk() : null;
+
         Component map = Component.empty();
-        for (int y = center.getZ() - (height / 2); y < center.getZ() + (height / 2); y++) {
-            for (int x = center.getX() - (width / 2); x < center.getX() + (width / 2); x++) {
+        for (int y = minZ; y < maxZ; y++) {
+            for (int x = minX; x < maxX; x++) {
                 final Chunk chunk = Chunk.at(x, y);
-                final MapSquare square = plugin.getClaimAt(chunk, world)
-                        .map(townClaim -> MapSquare.claim(chunk, world, townClaim, plugin))
-                        .orElseGet(() -> MapSquare.wilderness(chunk, world, plugin));
-                if (user instanceof OnlineUser onlineUser && onlineUser.getChunk().equals(chunk)) {
+                final TownClaim townClaim = claims.get(chunk.getKey());
+                final MapSquare square = townClaim != null
+                        ? MapSquare.claim(chunk, world, townClaim, plugin)
+                        : MapSquare.wilderness(chunk, world, plugin);
+                if (chunk.equals(userChunk)) {
                     square.markAsCurrentPosition(true);
                 }
                 map = map.append(square.toComponent());
@@ -6,6 +6,7 @@ import net.william278.husktowns.claim.*;
 import net.william278.husktowns.database.Database;
 import net.william278.husktowns.town.Spawn;
 import net.william278.husktowns.town.Town;
+import net.william278.husktowns.town.TownRegistry;
 import net.william278.husktowns.user.Preferences;
 import net.william278.husktowns.user.User;
 import org.jetbrains.annotations.NotNull;
@@ -85,6 +86,8 @@ public class LegacyMigrator extends Migrator {
                     }
                 }
             }
+            final TownRegistry registry = new TownRegistry();
+            registry.setAll(towns);
 
             // Set the members for each town
             try (PreparedStatement statement = connection.prepareStatement(
@@ -93,7 +96,7 @@ public class LegacyMigrator extends Migrator {
                     while (resultSet.next()) {
                         final int townId = resultSet.getInt("town_id");
                         final int roleWeight = resultSet.getInt("town_role");
-                        final Town town = towns.stream().filter(t -> t.getId() == townId).findFirst().orElseThrow();
+                        final Town town = registry.find(townId).orElseThrow();
                         town.addMember(UUID.fromString(resultSet.getString("uuid")),
                                 plugin.getRoles().fromWeight(roleWeight)
                                         .or(() -> {
@@ -112,7 +115,7 @@ public class LegacyMigrator extends Migrator {
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
                         final int townId = resultSet.getInt("town_id");
-                        final Town town = towns.stream().filter(t -> t.getId() == townId).findFirst().orElseThrow();
+                        final Town town = registry.find(townId).orElseThrow();
                         town.setClaimCount(resultSet.getInt("claims"));
                     }
                 }
@@ -126,7 +129,7 @@ public class LegacyMigrator extends Migrator {
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
                         final int townId = resultSet.getInt("town_id");
-                        final Town town = towns.stream().filter(t -> t.getId() == townId).findFirst().orElseThrow();
+                        final Town town = registry.find(townId).orElseThrow();
                         final String worldName = resultSet.getString("world");
                         final Spawn spawn = Spawn.of(Position.at(
                                         resultSet.getDouble("x"),
@@ -150,7 +153,7 @@ public class LegacyMigrator extends Migrator {
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
                         final int townId = resultSet.getInt("town_id");
-                        final Town town = towns.stream().filter(t -> t.getId() == townId).findFirst().orElseThrow();
+                        final Town town = registry.find(townId).orElseThrow();
                         town.setBonusClaims(resultSet.getInt("bonus_claims"));
                         town.setBonusMembers(resultSet.getInt("bonus_members"));
                     }
@@ -163,7 +166,7 @@ public class LegacyMigrator extends Migrator {
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
                         final int townId = resultSet.getInt("town_id");
-                        final Town town = towns.stream().filter(t -> t.getId() == townId).findFirst().orElseThrow();
+                        final Town town = registry.find(townId).orElseThrow();
                         final Claim.Type type = Claim.Type.values()[resultSet.getInt("chunk_type")];
                         town.getRules().put(type, Rules.of(Map.of(
                                 Flag.EXPLOSION_DAMAGE, resultSet.getBoolean("explosion_damage"),
@@ -227,12 +230,7 @@ public class LegacyMigrator extends Migrator {
                             continue;
                         }
 
-                        final int townId = town.get().getId();
-                        if (claimWorld.getClaims().containsKey(townId)) {
-                            claimWorld.getClaims().get(townId).add(claim);
-                        } else {
-                            claimWorld.getClaims().put(townId, new ArrayList<>(List.of(claim)));
-                        }
+                        claimWorld.addClaim(new TownClaim(town.get(), claim));
                         claimWorlds.replaceAll((k, v) -> k.equals(serverWorld) ? claimWorld : v);
                     }
                 }
@@ -1,10 +1,13 @@
 package net.william278.husktowns.network;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import de.themoep.minedown.adventure.MineDown;
 import net.kyori.adventure.text.Component;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.town.Member;
 import net.william278.husktowns.town.Role;
+import net.william278.husktowns.town.Town;
 import net.william278.husktowns.user.OnlineUser;
 import net.william278.husktowns.user.SavedUser;
 import net.william278.husktowns.user.User;
@@ -42,28 +45,48 @@ public abstract class Broker {
         }
         switch (message.getType()) {
             case TOWN_DELETE -> message.getPayload().getInteger()
-                    .flatMap(townId -> plugin.getTowns().stream().filter(town -> town.getId() == townId).findFirst())
+                    .flatMap(plugin::findTown)
                     .ifPresent(town -> plugin.runAsync(() -> {
                         plugin.getManager().sendTownNotification(town, plugin.getLocales()
                                 .getLocale("town_deleted_notification", town.getName())
                                 .map(MineDown::toComponent).orElse(Component.empty()));
                         plugin.getMapHook().ifPresent(mapHook -> mapHook.removeClaimMarkers(town));
                         plugin.getTowns().remove(town);
-                        plugin.getClaimWorlds().values().forEach(world -> {
-                            if (world.removeTownClaims(town.getId()) > 0) {
-                                plugin.getDatabase().updateClaimWorld(world);
-                            }
-                        });
+                        plugin.getOperationHandler().invalidateDecisions(town.getId());
+                        // The town's claims on every server are deleted from the database by the source server
+                        plugin.getClaimWorlds().values().forEach(world -> world.removeTownClaims(town.getId()));
                     }));
-            case TOWN_UPDATE -> plugin.runAsync(() -> message.getPayload().getInteger()
-                    .flatMap(id -> plugin.getDatabase().getTown(id))
-                    .ifPresentOrElse(town -> {
-                        if (plugin.getTowns().contains(town)) {
-                            plugin.getTowns().replaceAll(t -> t.getId() == town.getId() ? town : t);
-                            return;
-                        }
-                        plugin.getTowns().add(town);
-                    }, () -> plugin.log(Level.WARNING, "Failed to update town: Town not found")));
+            case TOWN_UPDATE -> message.getPayload().getInteger().ifPresent(id -> {
+                // Skip reading updates that have already been loaded
+                final Optional<Long> version = message.getPayload().getVersion();
+                final Optional<Town> loaded = plugin.findTown(id);
+                if (version.isPresent() && loaded.map(town -> town.getVersion() >= version.get()).orElse(false)) {
+                    return;
+                }
+
+                // Apply the written changes if they were made to the loaded version of the town, rather than reading it
+                final Optional<String> changes = message.getPayload().getString();
+                if (version.isPresent() && changes.isPresent() && loaded.isPresent()
+                    && loaded.get().getVersion() == version.get() - 1) {
+                    try {
+                        final Town town = loaded.get().withChanges(JsonParser.parseString(changes.get())
+                                .getAsJsonObject(), version.get(), plugin.getGson());
+                        plugin.getTowns().update(town);
+                        plugin.getOperationHandler().invalidateDecisions(id);
+                        return;
+                    } catch (JsonParseException | IllegalStateException e) {
+                        plugin.log(Level.WARNING, "Failed to apply changes to town #" + id + ", reading it instead", e);
+                    }
+                }
+                plugin.getAsyncDatabase().getTown(id).thenAccept(updated -> updated.ifPresentOrElse(town -> {
+                            if (plugin.findTown(id).map(current -> current.getVersion() > town.getVersion()).orElse(false)) {
+                                return;
+                            }
+                            plugin.getTowns().update(town);
+                            plugin.getOperationHandler().invalidateDecisions(town.getId());
+                        },
+                        () -> plugin.log(Level.WARNING, "Failed to update town: Town not found")));
+            });
             case TOWN_INVITE_REQUEST -> {
                 if (receiver == null) {
                     return;
@@ -91,21 +114,23 @@ public abstract class Broker {
                         .ifPresent(locale -> plugin.getManager().sendTownNotification(townMember.town(), locale));
             });
             case TOWN_CHAT_MESSAGE -> message.getPayload().getString()
-                    .ifPresent(text -> plugin.getDatabase().getUser(message.getSender())
-                            .flatMap(sender -> plugin.getUserTown(sender.user()))
-                            .ifPresent(member -> plugin.getManager().towns().sendLocalChatMessage(text, member, plugin)));
-            case TOWN_LEVEL_UP, TOWN_TRANSFERRED, TOWN_RENAMED ->
-                    message.getPayload().getInteger().flatMap(id -> plugin.getTowns().stream()
-                            .filter(town -> town.getId() == id).findFirst()).ifPresent(town -> {
+                    .ifPresent(text -> plugin.getAsyncDatabase().getUser(message.getSender())
+                            .thenAccept(sender -> sender.flatMap(saved -> plugin.getUserTown(saved.user()))
+                                    .ifPresent(member -> plugin.getManager().towns()
+                                            .sendLocalChatMessage(text, member, plugin))));
+            case TOWN_TRANSFERRED -> message.getPayload().getInteger().flatMap(plugin::findTown)
+                    .ifPresent(town -> plugin.getAsyncDatabase().getUser(town.getMayor())
+                            .thenAccept(mayor -> plugin.getManager().sendTownNotification(town, plugin.getLocales()
+                                    .getLocale("town_transferred", town.getName(), mayor
+                                            .map(SavedUser::user).map(User::getUsername).orElse("?"))
+                                    .map(MineDown::toComponent).orElse(Component.empty()))));
+            case TOWN_LEVEL_UP, TOWN_RENAMED ->
+                    message.getPayload().getInteger().flatMap(plugin::findTown).ifPresent(town -> {
                         final Component locale = switch (message.getType()) {
                             case TOWN_LEVEL_UP -> plugin.getLocales().getLocale("town_levelled_up",
                                     Integer.toString(town.getLevel())).map(MineDown::toComponent).orElse(Component.empty());
                             case TOWN_RENAMED -> plugin.getLocales().getLocale("town_renamed",
                                     town.getName()).map(MineDown::toComponent).orElse(Component.empty());
-                            case TOWN_TRANSFERRED -> plugin.getLocales().getLocale("town_transferred",
-                                            town.getName(), plugin.getDatabase().getUser(town.getMayor())
-                                                    .map(SavedUser::user).map(User::getUsername).orElse("?"))
-                                    .map(MineDown::toComponent).orElse(Component.empty());
                             default -> Component.empty();
                         };
                         plugin.getManager().sendTownNotification(town, locale);
@@ -114,8 +139,7 @@ public abstract class Broker {
                 if (receiver == null) {
                     return;
                 }
-                message.getPayload().getInteger().flatMap(id -> plugin.getTowns().stream()
-                        .filter(town -> town.getId() == id).findFirst()).ifPresent(town -> {
+                message.getPayload().getInteger().flatMap(plugin::findTown).ifPresent(town -> {
                     final Component locale = switch (message.getType()) {
                         case TOWN_DEMOTED -> plugin.getLocales().getLocale("demoted_you",
                                         plugin.getUserTown(receiver).map(Member::role).map(Role::getName).orElse("?"),
@@ -1,10 +1,21 @@
 package net.william278.husktowns.network;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.william278.husktowns.user.OnlineUser;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+
+@JsonAdapter(Message.Adapter.class)
 public class Message {
 
     public static final String TARGET_ALL = "ALL";
@@ -166,4 +177,64 @@ public class Message {
         }
     }
 
+    /**
+     * Streaming Gson adapter for messages, which are serialized for every cross-server update
+     */
+    static final class Adapter implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(@NotNull Gson gson, @NotNull TypeToken<T> type) {
+            return type.getRawType() == Message.class ? (TypeAdapter<T>) new MessageAdapter(gson) : null;
+        }
+
+    }
+
+    private static final class MessageAdapter extends TypeAdapter<Message> {
+
+        private final TypeAdapter<Payload> payloadAdapter;
+
+        private MessageAdapter(@NotNull Gson gson) {
+            this.payloadAdapter = gson.getAdapter(Payload.class);
+        }
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Message message) throws IOException {
+            out.beginObject();
+            out.name("type").value(message.type == null ? null : message.type.name());
+            out.name("target_type").value(message.targetType == null ? null : message.targetType.name());
+            out.name("target").value(message.target);
+            out.name("payload");
+            payloadAdapter.write(out, message.payload);
+            out.name("sender").value(message.sender);
+            out.name("sourceServer").value(message.sourceServer);
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Message read(@NotNull JsonReader in) throws IOException {
+            final Message message = new Message();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "type" -> message.type = Type.valueOf(in.nextString());
+                    case "target_type" -> message.targetType = TargetType.valueOf(in.nextString());
+                    case "target" -> message.target = in.nextString();
+                    case "payload" -> message.payload = payloadAdapter.read(in);
+                    case "sender" -> message.sender = in.nextString();
+                    case "sourceServer" -> message.sourceServer = in.nextString();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return message;
+        }
+    }
+
 }
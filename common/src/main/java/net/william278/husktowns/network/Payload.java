@@ -1,13 +1,24 @@
 package net.william278.husktowns.network;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.william278.husktowns.town.Invite;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
+@JsonAdapter(Payload.Adapter.class)
 public class Payload {
     @Nullable
     @Expose
@@ -29,6 +40,10 @@ public class Payload {
     @Expose
     private String string;
 
+    @Nullable
+    @Expose
+    private Long version;
+
     private Payload() {
     }
 
@@ -46,6 +61,24 @@ public class Payload {
         return payload;
     }
 
+    /**
+     * Create a payload for an updated town, with the changes written to it so they can be applied without reading it
+     *
+     * @param townId  the ID of the town
+     * @param version the version of the town once it was written
+     * @param changes the changes written to the town, as a JSON merge patch; or {@code null} if it was written in full
+     * @return the payload
+     */
+    @NotNull
+    public static Payload townUpdate(int townId, long version, @Nullable JsonObject changes) {
+        final Payload payload = integer(townId);
+        payload.version = version;
+        if (changes != null) {
+            payload.string = changes.toString();
+        }
+        return payload;
+    }
+
     @NotNull
     public static Payload invite(@NotNull Invite invite) {
         final Payload payload = new Payload();
@@ -90,4 +123,81 @@ public class Payload {
     public Optional<String> getString() {
         return Optional.ofNullable(string);
     }
+
+    public Optional<Long> getVersion() {
+        return Optional.ofNullable(version);
+    }
+
+    /**
+     * Streaming Gson adapter for message payloads; only the values that are set are written
+     */
+    static final class Adapter implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(@NotNull Gson gson, @NotNull TypeToken<T> type) {
+            return type.getRawType() == Payload.class ? (TypeAdapter<T>) new PayloadAdapter(gson) : null;
+        }
+
+    }
+
+    private static final class PayloadAdapter extends TypeAdapter<Payload> {
+
+        private final TypeAdapter<Invite> inviteAdapter;
+
+        private PayloadAdapter(@NotNull Gson gson) {
+            this.inviteAdapter = gson.getAdapter(Invite.class);
+        }
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Payload payload) throws IOException {
+            out.beginObject();
+            if (payload.uuid != null) {
+                out.name("uuid").value(payload.uuid.toString());
+            }
+            if (payload.integer != null) {
+                out.name("integer").value(payload.integer);
+            }
+            if (payload.invite != null) {
+                out.name("invite");
+                inviteAdapter.write(out, payload.invite);
+            }
+            if (payload.bool != null) {
+                out.name("bool").value(payload.bool);
+            }
+            if (payload.string != null) {
+                out.name("string").value(payload.string);
+            }
+            if (payload.version != null) {
+                out.name("version").value(payload.version);
+            }
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Payload read(@NotNull JsonReader in) throws IOException {
+            final Payload payload = new Payload();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "uuid" -> payload.uuid = UUID.fromString(in.nextString());
+                    case "integer" -> payload.integer = in.nextInt();
+                    case "invite" -> payload.invite = inviteAdapter.read(in);
+                    case "bool" -> payload.bool = in.nextBoolean();
+                    case "string" -> payload.string = in.nextString();
+                    case "version" -> payload.version = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return payload;
+        }
+    }
+
 }
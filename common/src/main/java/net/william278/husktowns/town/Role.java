@@ -2,7 +2,9 @@ package net.william278.husktowns.town;
 
 import net.william278.husktowns.HuskTowns;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.EnumSet;
 import java.util.List;
 
 /**
@@ -13,11 +15,16 @@ public class Role {
     private int weight;
     private String name;
     private List<Privilege> privileges;
+    // Own and inherited privileges, if this role was created with its parent role resolved
+    @Nullable
+    private EnumSet<Privilege> effectivePrivileges;
 
-    private Role(int weight, @NotNull String name, @NotNull List<Privilege> privileges) {
+    private Role(int weight, @NotNull String name, @NotNull List<Privilege> privileges,
+                 @Nullable EnumSet<Privilege> effectivePrivileges) {
         this.weight = weight;
         this.name = name;
         this.privileges = privileges;
+        this.effectivePrivileges = effectivePrivileges;
     }
 
     /**
@@ -29,7 +36,29 @@ public class Role {
      * @return The role
      */
     public static Role of(int weight, @NotNull String name, @NotNull List<Privilege> privileges) {
-        return new Role(weight, name, privileges);
+        return new Role(weight, name, privileges, null);
+    }
+
+    /**
+     * <b>Internal use only</b> - Create a role that inherits the privileges of its parent role, with its effective
+     * privileges resolved up-front
+     *
+     * @param weight     The weight of the role, determining its position in the role hierarchy
+     * @param name       The name of the role
+     * @param privileges The privileges of the role
+     * @param parent     The role directly below this role in the hierarchy, if there is one
+     * @return The role
+     */
+    @NotNull
+    public static Role of(int weight, @NotNull String name, @NotNull List<Privilege> privileges,
+                          @Nullable Role parent) {
+        final EnumSet<Privilege> effective = EnumSet.noneOf(Privilege.class);
+        effective.addAll(privileges);
+        if (parent != null) {
+            effective.addAll(parent.effectivePrivileges != null
+                    ? parent.effectivePrivileges : parent.getPrivileges());
+        }
+        return new Role(weight, name, privileges, effective);
     }
 
     @SuppressWarnings("unused")
@@ -79,6 +108,9 @@ public class Role {
      * @return {@code true} if the role has the specified privilege; {@code false} otherwise
      */
     public boolean hasPrivilege(@NotNull HuskTowns plugin, @NotNull Privilege privilege) {
+        if (effectivePrivileges != null) {
+            return effectivePrivileges.contains(privilege);
+        }
         return getPrivileges().contains(privilege) || plugin.getRoles().fromWeight(getWeight() - 1)
                 .map(role -> role.hasPrivilege(plugin, privilege))
                 .orElse(false);
@@ -1,18 +1,34 @@
 package net.william278.husktowns.town;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import net.kyori.adventure.key.InvalidKeyException;
 import net.kyori.adventure.key.Key;
 import net.william278.husktowns.HuskTowns;
 import net.william278.husktowns.audit.Log;
 import net.william278.husktowns.claim.Claim;
+import net.william278.husktowns.claim.Flag;
 import net.william278.husktowns.claim.Rules;
 import net.william278.husktowns.config.Roles;
 import net.william278.husktowns.user.User;
+import net.william278.husktowns.util.JsonMergePatch;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.*;
@@ -25,10 +41,23 @@ import java.util.stream.Collectors;
  * To create a town (<b>internal only</b>), see {@link Town#create(String, User, HuskTowns)}
  */
 @SuppressWarnings("unused")
+@JsonAdapter(Town.Adapter.class)
 public class Town {
 
+    private static final Type RULES_TYPE = new TypeToken<Map<Claim.Type, Rules>>() {
+    }.getType();
+    private static final Type BONUSES_TYPE = new TypeToken<Map<Bonus, Integer>>() {
+    }.getType();
+    private static final Type METADATA_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+    // Gson instance that writes nulls, derived from the last Gson changes were taken with
+    @Nullable
+    private static volatile NullSerializingGson nullSerializingGson;
+
     // Town ID is stored as the primary key in the database towns table
     private int id;
+    // Version of the town's row in the database towns table, incremented each time the town is written
+    private long version;
     @Expose
     private String name;
     @Nullable
@@ -62,6 +91,15 @@ public class Town {
     @Expose
     private Map<String, String> metadata;
 
+    // The registry this town is loaded into, which indexes its members
+    @Nullable
+    private TownRegistry registry;
+    // Fields and members changed since the town was last read from or written to the database. Changes are only
+    // tracked once it has been, as until then the town must be written in full
+    private final Set<Field> changedFields = EnumSet.noneOf(Field.class);
+    private final Set<UUID> changedMembers = new HashSet<>();
+    private boolean tracked;
+
     // Internal fat constructor for instantiating a town
     private Town(int id, @NotNull String name, @Nullable String bio, @Nullable String greeting,
                  @Nullable String farewell, @NotNull Map<UUID, Integer> members, @NotNull Map<Claim.Type, Rules> rules,
@@ -179,6 +217,24 @@ public class Town {
         this.id = id;
     }
 
+    /**
+     * Get the version of the town's data in the database, used to detect changes made by other servers
+     *
+     * @return the town version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version of the town's data in the database
+     *
+     * @param version the town version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Get the name of the town
      *
@@ -197,6 +253,7 @@ public class Town {
      */
     public void setName(@NotNull String name) {
         this.name = name;
+        markChanged(Field.NAME);
     }
 
     /**
@@ -216,6 +273,7 @@ public class Town {
      */
     public void setBio(@NotNull String bio) {
         this.bio = bio;
+        markChanged(Field.BIO);
     }
 
     /**
@@ -237,6 +295,7 @@ public class Town {
      */
     public void setGreeting(@NotNull String greeting) {
         this.greeting = greeting;
+        markChanged(Field.GREETING);
     }
 
     /**
@@ -258,12 +317,15 @@ public class Town {
      */
     public void setFarewell(@NotNull String farewell) {
         this.farewell = farewell;
+        markChanged(Field.FAREWELL);
     }
 
     /**
      * Get the map of town member {@link UUID}s to their {@link Role#getWeight() Role weights}
      *
      * @return The map of members of this town to their role weights
+     * @apiNote To change membership, use {@link #addMember(UUID, Role)} and {@link #removeMember(UUID)}, which keep
+     * the {@link TownRegistry} member index up-to-date
      */
     @NotNull
     public Map<UUID, Integer> getMembers() {
@@ -293,6 +355,10 @@ public class Town {
      */
     public void addMember(@NotNull UUID uuid, @NotNull Role role) {
         this.members.put(uuid, role.getWeight());
+        markChanged(uuid);
+        if (registry != null) {
+            registry.indexMember(this, uuid, role.getWeight());
+        }
     }
 
     /**
@@ -306,18 +372,45 @@ public class Town {
             throw new IllegalArgumentException("Cannot remove the mayor of the town");
         }
         this.members.remove(uuid);
+        markChanged(uuid);
+        if (registry != null) {
+            registry.unindexMember(this, uuid);
+        }
+    }
+
+    // Set the registry this town has been loaded into
+    void setRegistry(@Nullable TownRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Nullable
+    TownRegistry getRegistry() {
+        return registry;
     }
 
     /**
      * Get the map of {@link Claim.Type} to the {@link Rules flag rule mappings} for this town
      *
      * @return the map of {@link Claim.Type} to the {@link Rules} for this town
+     * @apiNote To change a rule, use {@link #setRule(Claim.Type, Flag, boolean)}, so the change is saved
      */
     @NotNull
     public Map<Claim.Type, Rules> getRules() {
         return rules;
     }
 
+    /**
+     * Set the value of a flag rule for a {@link Claim.Type}
+     *
+     * @param type  the type of claim to set the rule for
+     * @param flag  the {@link Flag} to set
+     * @param value the new value of the flag
+     */
+    public void setRule(@NotNull Claim.Type type, @NotNull Flag flag, boolean value) {
+        this.rules.get(type).setFlag(flag, value);
+        markChanged(Field.RULES);
+    }
+
     /**
      * Get the number of claims this town has created
      *
@@ -334,6 +427,7 @@ public class Town {
      */
     public void setClaimCount(int claims) {
         this.claims = claims;
+        markChanged(Field.CLAIMS);
     }
 
     /**
@@ -374,6 +468,7 @@ public class Town {
      */
     public void setMoney(@NotNull BigDecimal money) {
         this.money = money.max(BigDecimal.ZERO);
+        markChanged(Field.MONEY);
     }
 
     /**
@@ -396,6 +491,7 @@ public class Town {
             throw new IllegalArgumentException("Level cannot be less than 1");
         }
         this.level = level;
+        markChanged(Field.LEVEL);
     }
 
     /**
@@ -414,6 +510,7 @@ public class Town {
      */
     public void setSpawn(@NotNull Spawn spawn) {
         this.spawn = spawn;
+        markChanged(Field.SPAWN);
     }
 
     /**
@@ -421,6 +518,7 @@ public class Town {
      */
     public void clearSpawn() {
         this.spawn = null;
+        markChanged(Field.SPAWN);
     }
 
     /**
@@ -470,6 +568,7 @@ public class Town {
      */
     public void setColor(@NotNull Color color) {
         this.color = String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
+        markChanged(Field.COLOR);
     }
 
     /**
@@ -490,6 +589,7 @@ public class Town {
      */
     public void setBonus(@NotNull Bonus bonus, int amount) {
         this.bonuses.put(bonus, amount);
+        markChanged(Field.BONUSES);
     }
 
     /**
@@ -568,6 +668,7 @@ public class Town {
      */
     public void setMetadataTag(@NotNull Key key, @NotNull String value) {
         this.metadata.put(key.toString(), value);
+        markChanged(Field.METADATA);
     }
 
     /**
@@ -586,6 +687,104 @@ public class Town {
         }
     }
 
+    /**
+     * Take the changes made to the town since it was last read from or written to the database, as a JSON merge patch
+     * (RFC 7396) of its serialized form, so only the fields that changed need be written
+     *
+     * @param gson the Gson instance to serialize changed fields with
+     * @return the changes, wrapped in an {@link Optional}; empty if the town must be written in full, as it has not
+     * been read from or written to the database since it was created or parsed
+     */
+    @NotNull
+    public synchronized Optional<JsonObject> takeChanges(@NotNull Gson gson) {
+        final Optional<JsonObject> logChanges = log.takeChanges(gson);
+        if (!tracked) {
+            clearChanges();
+            return Optional.empty();
+        }
+
+        // Entries are only ever put into the maps of rules, bonuses and metadata, so merging them into the stored maps
+        // leaves those the same as if they were written in full
+        final JsonObject changes = new JsonObject();
+        for (final Field field : changedFields) {
+            changes.add(field.getKey(), switch (field) {
+                case NAME -> gson.toJsonTree(name);
+                case BIO -> gson.toJsonTree(bio);
+                case GREETING -> gson.toJsonTree(greeting);
+                case FAREWELL -> gson.toJsonTree(farewell);
+                case COLOR -> gson.toJsonTree(color);
+                case RULES -> gson.toJsonTree(rules, RULES_TYPE);
+                case CLAIMS -> gson.toJsonTree(claims);
+                case LEVEL -> gson.toJsonTree(level);
+                case MONEY -> gson.toJsonTree(money, BigDecimal.class);
+                // Nulls are written, so properties the spawn no longer has are removed from the stored spawn
+                case SPAWN -> getNullSerializingGson(gson).toJsonTree(spawn, Spawn.class);
+                case BONUSES -> gson.toJsonTree(bonuses, BONUSES_TYPE);
+                case METADATA -> gson.toJsonTree(metadata, METADATA_TYPE);
+            });
+        }
+
+        // Removed members are written as null, to remove them from the stored town
+        if (!changedMembers.isEmpty()) {
+            final JsonObject memberChanges = new JsonObject();
+            for (final UUID uuid : changedMembers) {
+                final Integer weight = members.get(uuid);
+                memberChanges.add(uuid.toString(), weight == null ? JsonNull.INSTANCE : new JsonPrimitive(weight));
+            }
+            changes.add("members", memberChanges);
+        }
+        logChanges.ifPresent(logPatch -> changes.add("log", logPatch));
+        changedFields.clear();
+        changedMembers.clear();
+        return Optional.of(changes);
+    }
+
+    /**
+     * Get a copy of the town with changes applied, as {@link #takeChanges(Gson) taken} from the town on another server
+     *
+     * @param changes the changes to apply, as a JSON merge patch
+     * @param version the version of the town once the changes were written
+     * @param gson    the Gson instance to serialize the town with
+     * @return the changed copy of the town
+     * @throws JsonParseException if the changed town is not valid
+     */
+    @NotNull
+    public Town withChanges(@NotNull JsonObject changes, long version, @NotNull Gson gson) throws JsonParseException {
+        final JsonObject serialized = gson.toJsonTree(this, Town.class).getAsJsonObject();
+        JsonMergePatch.apply(serialized, changes);
+        final Town town = gson.fromJson(serialized, Town.class);
+        town.setId(id);
+        town.setVersion(version);
+        town.clearChanges();
+        return town;
+    }
+
+    /**
+     * Forget the changes made to the town, once it has been read from or written in full to the database, and track
+     * changes made from now on
+     */
+    public synchronized void clearChanges() {
+        changedFields.clear();
+        changedMembers.clear();
+        log.clearChanges();
+        tracked = true;
+    }
+
+    /**
+     * Require the town to be written in full the next time it is saved, as changes taken from it could not be written
+     */
+    public synchronized void requireFullWrite() {
+        tracked = false;
+    }
+
+    private synchronized void markChanged(@NotNull Field field) {
+        changedFields.add(field);
+    }
+
+    private synchronized void markChanged(@NotNull UUID member) {
+        changedMembers.add(member);
+    }
+
     /**
      * Compares this town to another object
      *
@@ -635,4 +834,152 @@ public class Town {
                     .findFirst();
         }
     }
+
+    // Get a Gson instance like the given one that also writes nulls, created once and reused while the plugin's Gson is
+    @NotNull
+    private static Gson getNullSerializingGson(@NotNull Gson gson) {
+        NullSerializingGson cached = nullSerializingGson;
+        if (cached == null || cached.gson() != gson) {
+            cached = new NullSerializingGson(gson, gson.newBuilder().serializeNulls().create());
+            nullSerializingGson = cached;
+        }
+        return cached.serializingNulls();
+    }
+
+    private record NullSerializingGson(@NotNull Gson gson, @NotNull Gson serializingNulls) {
+    }
+
+    // Serialized fields of a town whose changes are tracked, named by their key; members and the log are tracked apart
+    private enum Field {
+        NAME,
+        BIO,
+        GREETING,
+        FAREWELL,
+        COLOR,
+        RULES,
+        CLAIMS,
+        LEVEL,
+        MONEY,
+        SPAWN,
+        BONUSES,
+        METADATA;
+
+        @NotNull
+        private String getKey() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * Streaming Gson adapter for towns; members are written directly, and other complex properties are delegated
+     */
+    static final class Adapter implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(@NotNull Gson gson, @NotNull TypeToken<T> type) {
+            return type.getRawType() == Town.class ? (TypeAdapter<T>) new TownAdapter(gson) : null;
+        }
+
+    }
+
+    private static final class TownAdapter extends TypeAdapter<Town> {
+
+        private final TypeAdapter<Map<Claim.Type, Rules>> rulesAdapter;
+        private final TypeAdapter<BigDecimal> moneyAdapter;
+        private final TypeAdapter<Spawn> spawnAdapter;
+        private final TypeAdapter<Log> logAdapter;
+        private final TypeAdapter<Map<Bonus, Integer>> bonusesAdapter;
+        private final TypeAdapter<Map<String, String>> metadataAdapter;
+
+        private TownAdapter(@NotNull Gson gson) {
+            this.rulesAdapter = gson.getAdapter(new TypeToken<Map<Claim.Type, Rules>>() {
+            });
+            this.moneyAdapter = gson.getAdapter(BigDecimal.class);
+            this.spawnAdapter = gson.getAdapter(Spawn.class);
+            this.logAdapter = gson.getAdapter(Log.class);
+            this.bonusesAdapter = gson.getAdapter(new TypeToken<Map<Bonus, Integer>>() {
+            });
+            this.metadataAdapter = gson.getAdapter(new TypeToken<Map<String, String>>() {
+            });
+        }
+
+        @Override
+        public void write(@NotNull JsonWriter out, @NotNull Town town) throws IOException {
+            out.beginObject();
+            out.name("name").value(town.name);
+            out.name("bio").value(town.bio);
+            out.name("greeting").value(town.greeting);
+            out.name("farewell").value(town.farewell);
+            out.name("color").value(town.color);
+            if (town.members != null) {
+                out.name("members").beginObject();
+                for (final Map.Entry<UUID, Integer> member : town.members.entrySet()) {
+                    out.name(member.getKey().toString()).value(member.getValue());
+                }
+                out.endObject();
+            }
+            out.name("rules");
+            rulesAdapter.write(out, town.rules);
+            out.name("claims").value(town.claims);
+            out.name("level").value(town.level);
+            out.name("money");
+            moneyAdapter.write(out, town.money);
+            out.name("spawn");
+            spawnAdapter.write(out, town.spawn);
+            out.name("log");
+            logAdapter.write(out, town.log);
+            out.name("bonuses");
+            bonusesAdapter.write(out, town.bonuses);
+            out.name("metadata");
+            metadataAdapter.write(out, town.metadata);
+            out.endObject();
+        }
+
+        @Override
+        @NotNull
+        public Town read(@NotNull JsonReader in) throws IOException {
+            final Town town = new Town();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "name" -> town.name = in.nextString();
+                    case "bio" -> town.bio = in.nextString();
+                    case "greeting" -> town.greeting = in.nextString();
+                    case "farewell" -> town.farewell = in.nextString();
+                    case "color" -> town.color = in.nextString();
+                    case "members" -> {
+                        town.members = new LinkedHashMap<>();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            final UUID uuid = UUID.fromString(in.nextName());
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                                continue;
+                            }
+                            town.members.put(uuid, in.nextInt());
+                        }
+                        in.endObject();
+                    }
+                    case "rules" -> town.rules = rulesAdapter.read(in);
+                    case "claims" -> town.claims = in.nextInt();
+                    case "level" -> town.level = in.nextInt();
+                    case "money" -> town.money = moneyAdapter.read(in);
+                    case "spawn" -> town.spawn = spawnAdapter.read(in);
+                    case "log" -> town.log = logAdapter.read(in);
+                    case "bonuses" -> town.bonuses = bonusesAdapter.read(in);
+                    case "metadata" -> town.metadata = metadataAdapter.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return town;
+        }
+    }
+
 }
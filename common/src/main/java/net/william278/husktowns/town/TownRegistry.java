@@ -0,0 +1,257 @@
+package net.william278.husktowns.town;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The registry of loaded {@link Town}s; an ordered {@link List} view of the towns, backed by an int-keyed index so
+ * that a town can be resolved from its ID with a single hash probe. The registry also indexes the members of its
+ * towns, so the town a user belongs to can be resolved without scanning every town.
+ * <p>
+ * Towns are read far more often than they are added, removed or replaced, so the registry is copy-on-write: each
+ * modification publishes a new immutable snapshot, and reads never lock.
+ */
+public final class TownRegistry extends AbstractList<Town> implements RandomAccess {
+
+    private volatile Snapshot snapshot = Snapshot.of(new Town[0]);
+    private final Map<UUID, Membership> memberships = new ConcurrentHashMap<>();
+
+    public TownRegistry() {
+    }
+
+    /**
+     * Get a town by its ID
+     *
+     * @param id the ID of the town
+     * @return the town, if it is loaded
+     */
+    public Optional<Town> find(int id) {
+        return Optional.ofNullable(snapshot.find(id));
+    }
+
+    /**
+     * Returns whether a town with the given ID is loaded
+     *
+     * @param id the ID of the town
+     * @return {@code true} if the town is loaded
+     */
+    public boolean containsId(int id) {
+        return snapshot.find(id) != null;
+    }
+
+    /**
+     * Get the town membership of a user
+     *
+     * @param uuid the {@link UUID} of the user
+     * @return the user's {@link Membership}, if they are a member of a loaded town
+     */
+    public Optional<Membership> getMembership(@NotNull UUID uuid) {
+        return Optional.ofNullable(memberships.get(uuid));
+    }
+
+    /**
+     * Add a town to the registry, or replace the loaded town with the same ID
+     *
+     * @param town the town to add or replace
+     */
+    public synchronized void update(@NotNull Town town) {
+        final Town[] towns = snapshot.towns;
+        for (int i = 0; i < towns.length; i++) {
+            if (towns[i].getId() == town.getId()) {
+                final Town[] updated = towns.clone();
+                updated[i] = town;
+                publish(updated);
+                return;
+            }
+        }
+        add(town);
+    }
+
+    /**
+     * Replace the contents of the registry
+     *
+     * @param towns the towns to load
+     */
+    public synchronized void setAll(@NotNull Collection<Town> towns) {
+        publish(towns.toArray(new Town[0]));
+    }
+
+    @Override
+    public Town get(int index) {
+        return snapshot.towns[index];
+    }
+
+    @Override
+    public int size() {
+        return snapshot.towns.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Town town && snapshot.find(town.getId()) != null;
+    }
+
+    @Override
+    public synchronized Town set(int index, @NotNull Town town) {
+        final Town[] towns = snapshot.towns.clone();
+        final Town previous = towns[index];
+        towns[index] = town;
+        publish(towns);
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean add(@NotNull Town town) {
+        add(size(), town);
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int index, @NotNull Town town) {
+        final Town[] towns = snapshot.towns;
+        final Town[] added = new Town[towns.length + 1];
+        System.arraycopy(towns, 0, added, 0, index);
+        added[index] = town;
+        System.arraycopy(towns, index, added, index + 1, towns.length - index);
+        publish(added);
+    }
+
+    @Override
+    public synchronized Town remove(int index) {
+        final Town[] towns = snapshot.towns;
+        final Town[] removed = new Town[towns.length - 1];
+        System.arraycopy(towns, 0, removed, 0, index);
+        System.arraycopy(towns, index + 1, removed, index, towns.length - index - 1);
+        publish(removed);
+        return towns[index];
+    }
+
+    @Override
+    public synchronized boolean addAll(@NotNull Collection<? extends Town> toAdd) {
+        if (toAdd.isEmpty()) {
+            return false;
+        }
+        final List<Town> towns = new ArrayList<>(Arrays.asList(snapshot.towns));
+        towns.addAll(toAdd);
+        publish(towns.toArray(new Town[0]));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeIf(@NotNull Predicate<? super Town> filter) {
+        final Town[] towns = snapshot.towns;
+        final Town[] retained = Arrays.stream(towns).filter(town -> !filter.test(town)).toArray(Town[]::new);
+        if (retained.length == towns.length) {
+            return false;
+        }
+        publish(retained);
+        return true;
+    }
+
+    @Override
+    public synchronized void replaceAll(@NotNull UnaryOperator<Town> operator) {
+        publish(Arrays.stream(snapshot.towns).map(operator).toArray(Town[]::new));
+    }
+
+    @Override
+    public synchronized void sort(@Nullable Comparator<? super Town> comparator) {
+        final Town[] towns = snapshot.towns.clone();
+        Arrays.sort(towns, comparator);
+        publish(towns);
+    }
+
+    @Override
+    public synchronized void clear() {
+        publish(new Town[0]);
+    }
+
+    private void publish(@NotNull Town[] towns) {
+        final Town[] previous = this.snapshot.towns;
+        this.snapshot = Snapshot.of(towns);
+        this.modCount++;
+
+        // Index new towns before dropping removed ones, so replaced towns never briefly lose their members
+        final Set<Town> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        added.addAll(Arrays.asList(towns));
+        final Set<Town> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(Arrays.asList(previous));
+        added.removeAll(Arrays.asList(previous));
+        removed.removeAll(Arrays.asList(towns));
+        added.forEach(this::register);
+        removed.forEach(this::unregister);
+    }
+
+    private void register(@NotNull Town town) {
+        town.setRegistry(this);
+        town.getMembers().forEach((uuid, weight) -> indexMember(town, uuid, weight));
+    }
+
+    private void unregister(@NotNull Town town) {
+        if (town.getRegistry() == this) {
+            town.setRegistry(null);
+        }
+        town.getMembers().keySet().forEach(uuid -> unindexMember(town, uuid));
+    }
+
+    void indexMember(@NotNull Town town, @NotNull UUID uuid, int roleWeight) {
+        memberships.put(uuid, new Membership(town, roleWeight));
+    }
+
+    void unindexMember(@NotNull Town town, @NotNull UUID uuid) {
+        memberships.computeIfPresent(uuid, (key, membership) -> membership.town() == town ? null : membership);
+    }
+
+    /**
+     * A user's membership of a loaded town
+     *
+     * @param town       the {@link Town} the user is a member of
+     * @param roleWeight the weight of the user's {@link Role} in the town
+     */
+    public record Membership(@NotNull Town town, int roleWeight) {
+    }
+
+    // An immutable generation of the registry: the ordered towns, plus an open-addressed table of them by ID
+    private record Snapshot(@NotNull Town[] towns, int[] ids, @Nullable Town[] table, int mask) {
+
+        @NotNull
+        private static Snapshot of(@NotNull Town[] towns) {
+            final int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, towns.length) * 2) << 1);
+            final int[] ids = new int[capacity];
+            final Town[] table = new Town[capacity];
+            final int mask = capacity - 1;
+            for (final Town town : towns) {
+                int slot = hash(town.getId(), mask);
+                while (table[slot] != null && ids[slot] != town.getId()) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = town.getId();
+                table[slot] = town;
+            }
+            return new Snapshot(towns, ids, table, mask);
+        }
+
+        @Nullable
+        private Town find(int id) {
+            int slot = hash(id, mask);
+            Town town;
+            while ((town = table[slot]) != null) {
+                if (ids[slot] == id) {
+                    return town;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int hash(int id, int mask) {
+            final int mixed = id * 0x9E3779B9;
+            return (mixed ^ (mixed >>> 16)) & mask;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package net.william278.husktowns.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Utilities for JSON merge patches (RFC 7396), which describe changes to a JSON object as an object of the changed
+ * properties; nested objects are merged, and {@code null} properties are removed
+ */
+public final class JsonMergePatch {
+
+    private JsonMergePatch() {
+    }
+
+    /**
+     * Apply a merge patch to a JSON object
+     *
+     * @param target the object to patch, which is modified
+     * @param patch  the merge patch to apply
+     */
+    public static void apply(@NotNull JsonObject target, @NotNull JsonObject patch) {
+        for (final Map.Entry<String, JsonElement> change : patch.entrySet()) {
+            final JsonElement value = change.getValue();
+            if (value.isJsonNull()) {
+                target.remove(change.getKey());
+            } else if (value.isJsonObject()) {
+                final JsonElement existing = target.get(change.getKey());
+                final JsonObject merged = existing != null && existing.isJsonObject()
+                        ? existing.getAsJsonObject() : new JsonObject();
+                apply(merged, value.getAsJsonObject());
+                target.add(change.getKey(), merged);
+            } else {
+                target.add(change.getKey(), value.deepCopy());
+            }
+        }
+    }
+
+    /**
+     * Combine two merge patches into one, which has the same effect as applying the first and then the second
+     *
+     * @param first  the merge patch applied first
+     * @param second the merge patch applied second
+     * @return the combined merge patch, wrapped in an {@link Optional}; empty if the combination cannot be expressed
+     * as a merge patch, as the second patches an object that the first replaced or removed
+     */
+    public static Optional<JsonObject> combine(@NotNull JsonObject first, @NotNull JsonObject second) {
+        final JsonObject combined = first.deepCopy();
+        for (final Map.Entry<String, JsonElement> change : second.entrySet()) {
+            final JsonElement value = change.getValue();
+            final JsonElement previous = combined.get(change.getKey());
+            if (value.isJsonObject() && previous != null) {
+                if (!previous.isJsonObject()) {
+                    return Optional.empty();
+                }
+                final Optional<JsonObject> merged = combine(previous.getAsJsonObject(), value.getAsJsonObject());
+                if (merged.isEmpty()) {
+                    return Optional.empty();
+                }
+                combined.add(change.getKey(), merged.get());
+            } else {
+                // Removals are kept, rather than applied, so they still remove the property from the target
+                combined.add(change.getKey(), value.deepCopy());
+            }
+        }
+        return Optional.of(combined);
+    }
+
+}
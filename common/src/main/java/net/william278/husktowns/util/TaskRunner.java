@@ -38,4 +38,11 @@ public interface TaskRunner {
      */
     void cancelTask(int taskId);
 
+    /**
+     * Get whether the current thread is the server thread
+     *
+     * @return {@code true} if called from the server thread
+     */
+    boolean isPrimaryThread();
+
 }
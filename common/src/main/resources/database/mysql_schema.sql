@@ -9,16 +9,19 @@ CREATE TABLE IF NOT EXISTS `%user_data%`
 (
     `uuid`        char(36)    NOT NULL UNIQUE PRIMARY KEY,
     `username`    varchar(16) NOT NULL,
-    `preferences` longblob    NOT NULL
+    `preferences` longblob    NOT NULL,
+
+    INDEX `username` (`username`)
 ) CHARACTER SET utf8
   COLLATE utf8_unicode_ci;
 
 # Create the towns table if it does not exist
 CREATE TABLE IF NOT EXISTS `%town_data%`
 (
-    `id`   int         NOT NULL AUTO_INCREMENT PRIMARY KEY,
-    `name` varchar(16) NOT NULL,
-    `data` longblob    NOT NULL
+    `id`      int         NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    `name`    varchar(16) NOT NULL,
+    `data`    longblob    NOT NULL,
+    `version` bigint      NOT NULL DEFAULT 0
 ) CHARACTER SET utf8
   COLLATE utf8_unicode_ci;
 
@@ -30,6 +33,35 @@ CREATE TABLE IF NOT EXISTS `%claim_data%`
     `world_uuid`        char(36)     NOT NULL,
     `world_name`        varchar(128) NOT NULL,
     `world_environment` varchar(16)  NOT NULL,
-    `claims`            longblob     NOT NULL
+    `claims`            longblob     NOT NULL,
+    `claims_migrated`   boolean      NOT NULL DEFAULT FALSE
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the claims table if it does not exist
+CREATE TABLE IF NOT EXISTS `%claims%`
+(
+    `world_id`     int         NOT NULL,
+    `chunk_x`      int         NOT NULL,
+    `chunk_z`      int         NOT NULL,
+    `town_id`      int         NOT NULL,
+    `type`         varchar(16) NOT NULL,
+    `plot_members` longblob,
+
+    PRIMARY KEY (`world_id`, `chunk_x`, `chunk_z`),
+    INDEX `town_id` (`town_id`),
+    FOREIGN KEY (`world_id`) REFERENCES `%claim_data%` (`id`) ON DELETE CASCADE
+) CHARACTER SET utf8
+  COLLATE utf8_unicode_ci;
+
+# Create the town audit log table if it does not exist
+CREATE TABLE IF NOT EXISTS `%town_audit%`
+(
+    `town_id`    int      NOT NULL,
+    `timestamp`  bigint   NOT NULL,
+    `utc_offset` int      NOT NULL DEFAULT 0,
+    `data`       longblob NOT NULL,
+
+    PRIMARY KEY (`town_id`, `timestamp`)
 ) CHARACTER SET utf8
   COLLATE utf8_unicode_ci;
\ No newline at end of file
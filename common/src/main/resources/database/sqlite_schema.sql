@@ -7,13 +7,15 @@ CREATE TABLE IF NOT EXISTS `%user_data%`
 
     PRIMARY KEY (`uuid`)
 );
+CREATE INDEX IF NOT EXISTS `%user_data%_username` ON `%user_data%` (`username` COLLATE NOCASE);
 
 -- Create the towns table if it does not exist
 CREATE TABLE IF NOT EXISTS `%town_data%`
 (
-    `id`   integer     NOT NULL PRIMARY KEY AUTOINCREMENT,
-    `name` varchar(16) NOT NULL,
-    `data` longblob    NOT NULL
+    `id`      integer     NOT NULL PRIMARY KEY AUTOINCREMENT,
+    `name`    varchar(16) NOT NULL,
+    `data`    longblob    NOT NULL,
+    `version` integer     NOT NULL DEFAULT 0
 );
 
 -- Create the claim worlds table if it does not exist
@@ -24,5 +26,32 @@ CREATE TABLE IF NOT EXISTS `%claim_data%`
     `world_uuid`        char(36)     NOT NULL,
     `world_name`        varchar(128) NOT NULL,
     `world_environment` varchar(16)  NOT NULL,
-    `claims`            longblob     NOT NULL
+    `claims`            longblob     NOT NULL,
+    `claims_migrated`   boolean      NOT NULL DEFAULT 0
+);
+
+-- Create the claims table if it does not exist
+CREATE TABLE IF NOT EXISTS `%claims%`
+(
+    `world_id`     integer     NOT NULL,
+    `chunk_x`      integer     NOT NULL,
+    `chunk_z`      integer     NOT NULL,
+    `town_id`      integer     NOT NULL,
+    `type`         varchar(16) NOT NULL,
+    `plot_members` longblob,
+
+    PRIMARY KEY (`world_id`, `chunk_x`, `chunk_z`),
+    FOREIGN KEY (`world_id`) REFERENCES `%claim_data%` (`id`) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS `%claims%_town_id` ON `%claims%` (`town_id`);
+
+-- Create the town audit log table if it does not exist
+CREATE TABLE IF NOT EXISTS `%town_audit%`
+(
+    `town_id`    integer  NOT NULL,
+    `timestamp`  bigint   NOT NULL,
+    `utc_offset` integer  NOT NULL DEFAULT 0,
+    `data`       longblob NOT NULL,
+
+    PRIMARY KEY (`town_id`, `timestamp`)
 );
\ No newline at end of file
@@ -0,0 +1,72 @@
+package net.william278.husktowns.audit;
+
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import net.william278.husktowns.user.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public class LogTests {
+
+    @Test
+    public void testTrimArchivesOldestActions() {
+        final User creator = User.of(UUID.randomUUID(), "Mayor");
+        final Log log = Log.newTownLog(creator);
+        final OffsetDateTime founded = log.getFoundedTime();
+        for (int i = 0; i < Log.RECENT_ACTIONS + 10; i++) {
+            log.log(Action.of(creator, Action.Type.UPDATE_BIO, Integer.toString(i)));
+        }
+
+        // The founding action is archived, but the town remembers when it was founded
+        Assertions.assertEquals(Log.RECENT_ACTIONS, log.getActions().size());
+        Assertions.assertEquals(founded, log.getFoundedTime());
+        final List<Map.Entry<OffsetDateTime, Action>> recent = log.getRecentActions();
+        Assertions.assertEquals(Log.RECENT_ACTIONS + 11, recent.size());
+        Assertions.assertEquals(Action.Type.CREATE_TOWN, recent.get(recent.size() - 1).getValue().getType());
+
+        final List<Map.Entry<OffsetDateTime, Action>> archived = log.takeArchivableActions();
+        Assertions.assertEquals(11, archived.size());
+        Assertions.assertTrue(log.takeArchivableActions().isEmpty());
+        Assertions.assertEquals(Log.RECENT_ACTIONS, log.getRecentActions().size());
+        Assertions.assertTrue(archived.stream().allMatch(action -> action.getKey()
+                .isBefore(log.getRecentActions().get(Log.RECENT_ACTIONS - 1).getKey())));
+
+        // Actions that failed to be archived are archived with the next update
+        log.restoreArchivableActions(archived);
+        Assertions.assertEquals(archived, log.takeArchivableActions());
+    }
+
+    @Test
+    public void testChangesRemoveTrimmedActions() {
+        final Gson gson = Converters.registerOffsetDateTime(new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()).create();
+        final User creator = User.of(UUID.randomUUID(), "Mayor");
+        final Log log = Log.newTownLog(creator);
+        for (int i = 1; i < Log.RECENT_ACTIONS; i++) {
+            log.log(Action.of(creator, Action.Type.UPDATE_BIO, Integer.toString(i)));
+        }
+        final OffsetDateTime founding = log.getRecentActions().get(Log.RECENT_ACTIONS - 1).getKey();
+        log.clearChanges();
+        Assertions.assertTrue(log.takeChanges(gson).isEmpty());
+
+        // The new action is added, and the trimmed founding action removed, keyed as Gson writes them
+        log.log(Action.of(creator, Action.Type.UPDATE_BIO, "trimmed"));
+        final Optional<JsonObject> changes = log.takeChanges(gson);
+        Assertions.assertTrue(changes.isPresent());
+        final JsonObject actions = changes.get().getAsJsonObject("actions");
+        Assertions.assertEquals(2, actions.size());
+        Assertions.assertTrue(actions.get(founding.toString()).isJsonNull());
+        Assertions.assertTrue(gson.toJsonTree(log).getAsJsonObject().getAsJsonObject("actions").keySet()
+                .containsAll(actions.keySet().stream().filter(key -> !actions.get(key).isJsonNull()).toList()));
+        Assertions.assertTrue(log.takeChanges(gson).isEmpty());
+    }
+
+}
@@ -0,0 +1,156 @@
+package net.william278.husktowns.claim;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ClaimIndexTests {
+
+    @Test
+    public void testChunkKeysAreDistinct() {
+        Assertions.assertNotEquals(Chunk.key(1, -1), Chunk.key(-1, 1));
+        Assertions.assertNotEquals(Chunk.key(0, -1), Chunk.key(-1, 0));
+        Assertions.assertEquals(Chunk.key(-5, 12), Chunk.at(-5, 12).getKey());
+    }
+
+    @Test
+    public void testRegionBitmapAcrossTileBoundaries() {
+        final RegionBitmap bitmap = new RegionBitmap();
+        final int[] coordinates = {-33, -32, -31, -1, 0, 1, 31, 32, 33, 1000};
+        for (int x : coordinates) {
+            bitmap.set(x, -x);
+        }
+        for (int x : coordinates) {
+            Assertions.assertTrue(bitmap.isSet(x, -x));
+            Assertions.assertFalse(bitmap.isSet(x, x + 1));
+        }
+        bitmap.clear(-32, 32);
+        Assertions.assertFalse(bitmap.isSet(-32, 32));
+        Assertions.assertTrue(bitmap.isSet(-33, 33));
+    }
+
+    @Test
+    public void testIndexMatchesReferenceMap() {
+        final ClaimIndex index = new ClaimIndex();
+        final Map<Long, Integer> reference = new HashMap<>();
+        final Random random = new Random(278);
+        for (int i = 0; i < 20000; i++) {
+            final int x = random.nextInt(200) - 100;
+            final int z = random.nextInt(200) - 100;
+            final long key = Chunk.key(x, z);
+            if (random.nextInt(3) == 0) {
+                index.remove(key);
+                reference.remove(key);
+            } else {
+                final int townId = random.nextInt(50);
+                index.put(key, townId, Claim.at(Chunk.at(x, z)));
+                reference.put(key, townId);
+            }
+        }
+
+        Assertions.assertEquals(reference.size(), index.size());
+        for (int x = -100; x < 100; x++) {
+            for (int z = -100; z < 100; z++) {
+                final long key = Chunk.key(x, z);
+                final ClaimIndex.Entry entry = index.get(key);
+                Assertions.assertEquals(reference.containsKey(key), index.isClaimed(x, z));
+                if (reference.containsKey(key)) {
+                    Assertions.assertNotNull(entry);
+                    Assertions.assertEquals(reference.get(key), entry.townId());
+                    Assertions.assertEquals(Chunk.at(x, z), entry.claim().getChunk());
+                } else {
+                    Assertions.assertNull(entry);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRectangleQueryMatchesPointLookups() {
+        final ClaimIndex index = new ClaimIndex();
+        final Random random = new Random(2780);
+        for (int i = 0; i < 400; i++) {
+            final int x = random.nextInt(300) - 150;
+            final int z = random.nextInt(300) - 150;
+            index.put(Chunk.key(x, z), 1, Claim.at(Chunk.at(x, z)));
+        }
+
+        // Covers both the region walk (small rectangles) and the table scan (large rectangles)
+        final int[][] rectangles = {{-3, -3, 3, 3}, {-40, 10, -20, 70}, {-150, -150, 150, 150}, {5, 5, 4, 4}};
+        for (int[] rectangle : rectangles) {
+            final Set<Long> expected = new HashSet<>();
+            for (int x = rectangle[0]; x <= rectangle[2]; x++) {
+                for (int z = rectangle[1]; z <= rectangle[3]; z++) {
+                    if (index.get(Chunk.key(x, z)) != null) {
+                        expected.add(Chunk.key(x, z));
+                    }
+                }
+            }
+            final Set<Long> actual = new HashSet<>();
+            index.forEachWithin(rectangle[0], rectangle[1], rectangle[2], rectangle[3],
+                    entry -> Assertions.assertTrue(actual.add(entry.claim().getChunk().getKey())));
+            Assertions.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsSeeConsistentEntries() throws InterruptedException {
+        // Churned claims are made first, so removing them shifts the stable claims after them back along their chains
+        final ClaimIndex index = new ClaimIndex();
+        for (int x = 1; x < 24; x += 2) {
+            index.put(Chunk.key(x, 0), -x, Claim.at(Chunk.at(x, 0)));
+        }
+        for (int x = 0; x < 24; x += 2) {
+            index.put(Chunk.key(x, 0), x + 1, Claim.at(Chunk.at(x, 0)));
+        }
+
+        final Thread writer = new Thread(() -> {
+            final Random random = new Random(27);
+            for (int i = 0; i < 2_000_000; i++) {
+                final int x = random.nextInt(12) * 2 + 1;
+                if (random.nextBoolean()) {
+                    index.put(Chunk.key(x, 0), -x, Claim.at(Chunk.at(x, 0)));
+                } else {
+                    index.remove(Chunk.key(x, 0));
+                }
+            }
+        });
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while (writer.isAlive()) {
+                        for (int x = 0; x < 24; x++) {
+                            final ClaimIndex.Entry entry = index.get(Chunk.key(x, 0));
+                            if (x % 2 == 0) {
+                                Assertions.assertNotNull(entry, "Claim at " + x + " was hidden");
+                                Assertions.assertEquals(x + 1, entry.townId());
+                            } else if (entry != null) {
+                                Assertions.assertEquals(-x, entry.townId());
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        writer.start();
+        readers.forEach(Thread::start);
+        writer.join();
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        Assertions.assertNull(failure.get());
+    }
+
+}
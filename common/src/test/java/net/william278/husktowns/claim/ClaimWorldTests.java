@@ -0,0 +1,41 @@
+package net.william278.husktowns.claim;
+
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ClaimWorldTests {
+
+    private static final Gson GSON = Converters.registerOffsetDateTime(new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()).create();
+
+    @Test
+    public void testClaimWorldJsonRoundTrip() {
+        final UUID member = UUID.randomUUID();
+        final List<Claim> claims = new ArrayList<>(List.of(
+                Claim.at(Chunk.at(0, -1)),
+                Claim.of(Chunk.at(12, 7), Claim.Type.PLOT, Map.of(member, true))
+        ));
+        final ClaimWorld world = ClaimWorld.of(1, Map.of(3, claims), new ArrayList<>(List.of(Claim.at(Chunk.at(-4, 4)))));
+
+        final String json = GSON.toJson(world);
+        Assertions.assertTrue(json.contains("\"admin_claims\""));
+        Assertions.assertTrue(json.contains("\"plot_members\":{\"" + member + "\":true}"));
+
+        final ClaimWorld read = GSON.fromJson(json, ClaimWorld.class);
+        Assertions.assertEquals(json, GSON.toJson(read));
+        Assertions.assertEquals(3, read.getClaimCount());
+        Assertions.assertEquals(1, read.getAdminClaimCount());
+        Assertions.assertTrue(read.isClaimed(12, 7));
+        Assertions.assertTrue(read.getClaims().get(3).get(1).isPlotManager(member));
+        Assertions.assertEquals(Claim.Type.PLOT, read.getClaims().get(3).get(1).getType());
+    }
+
+}
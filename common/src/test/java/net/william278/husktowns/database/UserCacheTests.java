@@ -0,0 +1,46 @@
+package net.william278.husktowns.database;
+
+import net.william278.husktowns.user.Preferences;
+import net.william278.husktowns.user.SavedUser;
+import net.william278.husktowns.user.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+public class UserCacheTests {
+
+    @Test
+    public void testUsersAreFoundByUuidAndCaseInsensitiveName() {
+        final UserCache cache = new UserCache(10, 60);
+        final UUID uuid = UUID.randomUUID();
+        cache.put(new SavedUser(User.of(uuid, "William278"), Preferences.getDefaults()));
+
+        Assertions.assertNotNull(cache.get(uuid));
+        Assertions.assertNotNull(cache.get("william278"));
+        Assertions.assertNotNull(cache.get("WILLIAM278"));
+
+        // Renaming a user drops their old name
+        cache.put(new SavedUser(User.of(uuid, "Pesto"), Preferences.getDefaults()));
+        Assertions.assertNull(cache.get("William278"));
+        Assertions.assertEquals("Pesto", cache.get("pesto").user().getUsername());
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedUserIsEvicted() {
+        final UserCache cache = new UserCache(2, 60);
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        cache.put(new SavedUser(User.of(first, "First"), Preferences.getDefaults()));
+        cache.put(new SavedUser(User.of(second, "Second"), Preferences.getDefaults()));
+        Assertions.assertNotNull(cache.get(first));
+
+        cache.put(new SavedUser(User.of(UUID.randomUUID(), "Third"), Preferences.getDefaults()));
+        Assertions.assertNotNull(cache.get(first));
+        Assertions.assertNull(cache.get(second));
+        Assertions.assertNull(cache.get("second"));
+        Assertions.assertEquals(2, cache.size());
+    }
+
+}
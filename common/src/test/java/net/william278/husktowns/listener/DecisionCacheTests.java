@@ -0,0 +1,53 @@
+package net.william278.husktowns.listener;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DecisionCacheTests {
+
+    @Test
+    public void testCachedDecisionsAndInvalidation() {
+        final DecisionCache cache = new DecisionCache();
+        final long member = DecisionCache.key(12, 1, 3, 7);
+        final long outsider = DecisionCache.key(12, 1, DecisionCache.OUTSIDER, 7);
+        final long otherTown = DecisionCache.key(13, 1, 3, 7);
+        Assertions.assertNotEquals(member, outsider);
+        Assertions.assertNull(cache.get(member));
+
+        cache.put(member, DecisionCache.Decision.ALLOW, cache.generation(12));
+        cache.put(outsider, DecisionCache.Decision.CANCEL_NOT_MEMBER, cache.generation(12));
+        cache.put(otherTown, DecisionCache.Decision.CANCEL_PRIVILEGES, cache.generation(13));
+        Assertions.assertEquals(DecisionCache.Decision.ALLOW, cache.get(member));
+        Assertions.assertEquals(DecisionCache.Decision.CANCEL_NOT_MEMBER, cache.get(outsider));
+        Assertions.assertEquals(DecisionCache.Decision.CANCEL_PRIVILEGES, cache.get(otherTown));
+
+        cache.invalidate(12);
+        Assertions.assertNull(cache.get(member));
+        Assertions.assertNull(cache.get(outsider));
+        Assertions.assertEquals(DecisionCache.Decision.CANCEL_PRIVILEGES, cache.get(otherTown));
+
+        cache.invalidateAll();
+        Assertions.assertNull(cache.get(otherTown));
+        Assertions.assertEquals(4, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testDecisionsEvaluatedDuringInvalidationAreNotCached() {
+        final DecisionCache cache = new DecisionCache();
+        final long key = DecisionCache.key(12, 1, 3, 7);
+        final long generation = cache.generation(12);
+        cache.invalidate(12);
+        cache.put(key, DecisionCache.Decision.ALLOW, generation);
+        Assertions.assertNull(cache.get(key));
+
+        final long allGeneration = cache.generation(12);
+        cache.invalidateAll();
+        cache.put(key, DecisionCache.Decision.ALLOW, allGeneration);
+        Assertions.assertNull(cache.get(key));
+
+        cache.put(key, DecisionCache.Decision.ALLOW, cache.generation(12));
+        Assertions.assertEquals(DecisionCache.Decision.ALLOW, cache.get(key));
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.william278.husktowns.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+public class JsonMergePatchTests {
+
+    @Test
+    public void testApplyMergesObjectsAndRemovesNulls() {
+        final JsonObject town = parse("{\"name\":\"Town\",\"bio\":\"Bio\",\"members\":{\"a\":1,\"b\":3},\"level\":1}");
+        JsonMergePatch.apply(town, parse("{\"bio\":null,\"members\":{\"a\":null,\"c\":2},\"level\":2}"));
+        Assertions.assertEquals(parse("{\"name\":\"Town\",\"members\":{\"b\":3,\"c\":2},\"level\":2}"), town);
+    }
+
+    @Test
+    public void testCombineMatchesApplyingInTurn() {
+        final JsonObject first = parse("{\"greeting\":\"Hi\",\"members\":{\"a\":null,\"b\":2}}");
+        final JsonObject second = parse("{\"members\":{\"a\":1,\"c\":null},\"money\":10}");
+        final Optional<JsonObject> combined = JsonMergePatch.combine(first, second);
+        Assertions.assertTrue(combined.isPresent());
+
+        final JsonObject inTurn = parse("{\"members\":{\"a\":3,\"c\":1},\"money\":5}");
+        JsonMergePatch.apply(inTurn, first);
+        JsonMergePatch.apply(inTurn, second);
+        final JsonObject atOnce = parse("{\"members\":{\"a\":3,\"c\":1},\"money\":5}");
+        JsonMergePatch.apply(atOnce, combined.get());
+        Assertions.assertEquals(inTurn, atOnce);
+    }
+
+    @Test
+    public void testCombineRejectsPatchingReplacedObject() {
+        // Patching a spawn that was cleared cannot be told apart from patching the stored spawn
+        Assertions.assertTrue(JsonMergePatch.combine(parse("{\"spawn\":null}"),
+                parse("{\"spawn\":{\"public\":true}}")).isEmpty());
+    }
+
+    private static JsonObject parse(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+
+}